@@ -1,14 +1,17 @@
 package com.spring.grpc.gateway;
 
+import com.spring.grpc.gateway.config.NativeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.session.data.redis.config.annotation.web.http.EnableRedisHttpSession;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
 @SpringBootApplication
 @EnableRedisHttpSession(maxInactiveIntervalInSeconds = 1800)
+@ImportRuntimeHints(NativeHints.class)
 public class GatewayApplication {
 
     public static void main(String[] args) {
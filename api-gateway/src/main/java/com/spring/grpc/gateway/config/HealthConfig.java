@@ -0,0 +1,21 @@
+package com.spring.grpc.gateway.config;
+
+import com.spring.grpc.gateway.health.HealthChecks;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Health Configuration
+ *
+ * Redis health from the cached result of {@link HealthChecks}, in place of
+ * Spring Boot's indicator that pings Redis on every probe.
+ */
+@Configuration
+public class HealthConfig {
+
+    @Bean
+    public HealthIndicator redisHealthIndicator(HealthChecks checks) {
+        return checks::redis;
+    }
+}
@@ -0,0 +1,53 @@
+package com.spring.grpc.gateway.config;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.cache.support.NullValue;
+
+import java.util.List;
+
+/**
+ * Native-image hints for what the AOT processing cannot see on its own
+ * (mvn -Pnative native:compile).
+ *
+ * - Spring Session Redis writes session attributes with JDK serialization, so
+ *   every attribute type the gateway stores needs a serialization hint.
+ * - GenericJackson2JsonRedisSerializer reads values back by their @class
+ *   property; NullValue is the one type it writes on its own.
+ * - gRPC falls back to loading its channel, name resolver and load balancer
+ *   providers by class name when the service loader finds none.
+ * - The rate limiter's Lua script and the shared logback include are classpath
+ *   resources.
+ */
+public class NativeHints implements RuntimeHintsRegistrar {
+
+    private static final List<String> GRPC_PROVIDERS = List.of(
+            "io.grpc.netty.shaded.io.grpc.netty.NettyChannelProvider",
+            "io.grpc.netty.shaded.io.grpc.netty.UdsNettyChannelProvider",
+            "io.grpc.internal.DnsNameResolverProvider",
+            "io.grpc.internal.PickFirstLoadBalancerProvider",
+            "io.grpc.util.SecretRoundRobinLoadBalancerProvider$Provider");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Session attributes: userId and role (String), loginTime (Long), plus
+        // the session's own creation/access times and max inactive interval
+        hints.serialization()
+                .registerType(String.class)
+                .registerType(Number.class)
+                .registerType(Long.class)
+                .registerType(Integer.class);
+
+        hints.reflection().registerType(NullValue.class,
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS);
+
+        for (String provider : GRPC_PROVIDERS) {
+            hints.reflection().registerTypeIfPresent(classLoader, provider,
+                    MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+
+        hints.resources().registerPattern("scripts/token_bucket.lua");
+        hints.resources().registerPattern("com/spring/grpc/common/logging/logback-async-console.xml");
+    }
+}
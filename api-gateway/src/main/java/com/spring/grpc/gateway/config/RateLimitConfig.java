@@ -0,0 +1,55 @@
+package com.spring.grpc.gateway.config;
+
+import com.spring.grpc.gateway.ratelimit.AdaptiveConcurrencyLimiter;
+import com.spring.grpc.gateway.ratelimit.LocalRateLimiter;
+import com.spring.grpc.gateway.ratelimit.RateLimitFilter;
+import com.spring.grpc.gateway.ratelimit.RateLimitProperties;
+import com.spring.grpc.gateway.ratelimit.RateLimiter;
+import com.spring.grpc.gateway.ratelimit.RedisRateLimiter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * The filter is always registered and checks gateway.rate-limit.enabled per
+ * request, a runtime flag rather than a condition, so it still applies to an
+ * AOT-processed or native build.
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    /**
+     * After the observation filter (so 429s still show up in http.server.requests)
+     * but before the Spring Session filter (so rejected requests never load a session)
+     */
+    private static final int FILTER_ORDER = Ordered.HIGHEST_PRECEDENCE + 10;
+
+    @Bean
+    public RateLimiter rateLimiter(RateLimitProperties properties, StringRedisTemplate stringRedisTemplate) {
+        RateLimiter local = new LocalRateLimiter(properties.getRoutes(), properties.getMaxTrackedUsers());
+        if (properties.getMode() == RateLimitProperties.Mode.REDIS) {
+            return new RedisRateLimiter(stringRedisTemplate, local);
+        }
+        return local;
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimitProperties properties,
+                                                                   RateLimiter rateLimiter,
+                                                                   MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter concurrencyLimiter = properties.getConcurrency().isEnabled()
+                ? new AdaptiveConcurrencyLimiter(properties.getConcurrency())
+                : null;
+
+        FilterRegistrationBean<RateLimitFilter> registration = new FilterRegistrationBean<>(
+                new RateLimitFilter(properties, rateLimiter, concurrencyLimiter, meterRegistry));
+        registration.setOrder(FILTER_ORDER);
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+}
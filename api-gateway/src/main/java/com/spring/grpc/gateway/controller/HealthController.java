@@ -1,7 +1,8 @@
 package com.spring.grpc.gateway.controller;
 
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.spring.grpc.gateway.health.HealthChecks;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -9,15 +10,24 @@ import org.springframework.web.bind.annotation.RestController;
 import java.util.HashMap;
 import java.util.Map;
 
-@Slf4j
+/**
+ * Health Check Controller
+ *
+ * Reports the last Redis check of {@link HealthChecks}; a probe never opens a
+ * Redis connection. Liveness and readiness probes are under
+ * /actuator/health/liveness and /actuator/health/readiness.
+ *
+ * Lazy: created on the first probe instead of at startup.
+ */
+@Lazy
 @RestController
 @RequestMapping("/api/health")
 public class HealthController {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final HealthChecks healthChecks;
 
-    public HealthController(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public HealthController(HealthChecks healthChecks) {
+        this.healthChecks = healthChecks;
     }
 
     @GetMapping
@@ -26,13 +36,9 @@ public class HealthController {
         health.put("status", "UP");
         health.put("service", "api-gateway");
         
-        // Check Redis connection
-        try {
-            redisTemplate.getConnectionFactory().getConnection().ping();
-            health.put("redis", "UP");
-        } catch (Exception e) {
-            log.error("Redis health check failed", e);
-            health.put("redis", "DOWN");
+        Status redis = healthChecks.redis().getStatus();
+        health.put("redis", redis.getCode());
+        if (!Status.UP.equals(redis)) {
             health.put("status", "DEGRADED");
         }
         
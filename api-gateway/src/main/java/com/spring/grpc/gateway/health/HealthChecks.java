@@ -0,0 +1,96 @@
+package com.spring.grpc.gateway.health;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pings Redis in the background every gateway.health.check-interval and caches
+ * the result, so a probe reads the last result instead of opening a connection
+ * per call.
+ *
+ * Reports OUT_OF_SERVICE until the first ping completes. Overload is not a health
+ * check here: the rate limit filter already rejects excess requests with 429.
+ */
+@Component
+@Slf4j
+public class HealthChecks implements SmartLifecycle {
+
+    public static final String REDIS = "redis";
+
+    private final RedisConnectionFactory connectionFactory;
+    private final Duration checkInterval;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("health-check-"));
+    private volatile Health redis = Health.outOfService().withDetail("reason", "not checked yet").build();
+    private volatile boolean running;
+
+    public HealthChecks(RedisConnectionFactory connectionFactory,
+                        @Value("${gateway.health.check-interval:10s}") Duration checkInterval,
+                        MeterRegistry registry) {
+        this.connectionFactory = connectionFactory;
+        this.checkInterval = checkInterval;
+
+        Gauge.builder("gateway.health.up", this, checks -> Status.UP.equals(checks.redis.getStatus()) ? 1 : 0)
+                .description("1 if the last health check passed")
+                .tag("check", REDIS)
+                .register(registry);
+    }
+
+    /**
+     * The last result of the Redis check; never blocks
+     */
+    public Health redis() {
+        return redis;
+    }
+
+    @Override
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::checkRedis, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    void checkRedis() {
+        Health health;
+        // Bounded by spring.data.redis.timeout
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            health = Health.up().withDetail("ping", connection.ping()).build();
+        } catch (Exception e) {
+            health = Health.down().withException(e).build();
+        }
+
+        Health previous = redis;
+        redis = health;
+        if (!previous.getStatus().equals(health.getStatus())) {
+            log.atInfo()
+                    .addKeyValue("check", REDIS)
+                    .addKeyValue("from", previous.getStatus())
+                    .addKeyValue("to", health.getStatus())
+                    .log("Health check status changed");
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.spring.grpc.gateway.ratelimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AIMD concurrency limit driven by observed latency.
+ *
+ * Requests beyond the current limit are rejected immediately instead of queueing.
+ * Every completed request is a sample: a slow or failed one shrinks the limit
+ * multiplicatively, a fast one grows it by one while the limit is actually in use.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Limit kept as raw double bits so it can be updated with CAS
+    private final AtomicLong limitBits;
+
+    public AdaptiveConcurrencyLimiter(RateLimitProperties.Concurrency settings) {
+        this.minLimit = settings.getMinLimit();
+        this.maxLimit = settings.getMaxLimit();
+        this.latencyThresholdNanos = settings.getLatencyThreshold().toNanos();
+        this.backoffRatio = settings.getBackoffRatio();
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(settings.getInitialLimit()));
+    }
+
+    /**
+     * @return true if the caller may proceed and must later call {@link #release}
+     */
+    public boolean tryAcquire() {
+        int limit = getLimit();
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        boolean congested = failed || latencyNanos > latencyThresholdNanos;
+
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double next;
+            if (congested) {
+                next = Math.max(minLimit, limit * backoffRatio);
+            } else if (current * 2 >= limit) {
+                next = Math.min(maxLimit, limit + 1);
+            } else {
+                // Far below the limit, so this sample says nothing about capacity
+                return;
+            }
+            if (next == limit || limitBits.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
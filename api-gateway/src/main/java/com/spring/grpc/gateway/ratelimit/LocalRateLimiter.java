@@ -0,0 +1,68 @@
+package com.spring.grpc.gateway.ratelimit;
+
+import com.spring.grpc.common.cache.GenerationalCache;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process rate limiter: one route bucket plus one bucket per user and route.
+ * Limits are per replica.
+ */
+public class LocalRateLimiter implements RateLimiter {
+
+    private final Map<RateLimitProperties.Route, RouteBuckets> buckets = new IdentityHashMap<>();
+    private final int maxTrackedUsers;
+
+    public LocalRateLimiter(List<RateLimitProperties.Route> routes, int maxTrackedUsers) {
+        this.maxTrackedUsers = maxTrackedUsers;
+        long now = System.nanoTime();
+        // Built once and only read afterwards, so the identity map needs no locking
+        for (RateLimitProperties.Route route : routes) {
+            buckets.put(route, new RouteBuckets(route, now));
+        }
+    }
+
+    @Override
+    public long tryAcquire(RateLimitProperties.Route route, String userKey) {
+        RouteBuckets routeBuckets = buckets.get(route);
+        if (routeBuckets == null) {
+            return 0L;
+        }
+
+        long now = System.nanoTime();
+        TokenBucket userBucket = routeBuckets.userBucket(userKey, now);
+
+        long wait = userBucket.tryAcquire(now);
+        if (wait > 0) {
+            return wait;
+        }
+
+        wait = routeBuckets.routeBucket.tryAcquire(now);
+        if (wait > 0) {
+            // The route is saturated; don't charge the user for a request that never ran
+            userBucket.refund();
+            return wait;
+        }
+        return 0L;
+    }
+
+    private final class RouteBuckets {
+
+        private final RateLimitProperties.Route route;
+        private final TokenBucket routeBucket;
+        // Users not seen for a while are dropped first once max-tracked-users is reached
+        private final GenerationalCache<String, TokenBucket> userBuckets = new GenerationalCache<>(maxTrackedUsers);
+
+        RouteBuckets(RateLimitProperties.Route route, long now) {
+            this.route = route;
+            this.routeBucket = new TokenBucket(route.getRoutePermitsPerSecond(), route.getRouteBurst(), now);
+        }
+
+        TokenBucket userBucket(String userKey, long now) {
+            return userBuckets.computeIfAbsent(userKey, key ->
+                    new TokenBucket(route.getUserPermitsPerSecond(), route.getUserBurst(), now));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.spring.grpc.gateway.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control in front of every gateway route.
+ *
+ * Runs before the Spring Session filter so that rejected requests never touch
+ * Redis for session loading. A request first has to pass the route and user token
+ * buckets (otherwise it is throttled), then fit under the adaptive concurrency
+ * limit (otherwise it is shed). Both rejections answer 429 immediately.
+ */
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private static final String UNROUTED = "none";
+
+    private final RateLimitProperties properties;
+    private final RateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    private final Map<RateLimitProperties.Route, Outcomes> outcomes = new IdentityHashMap<>();
+    private final Outcomes unroutedOutcomes;
+
+    public RateLimitFilter(RateLimitProperties properties,
+                           RateLimiter rateLimiter,
+                           AdaptiveConcurrencyLimiter concurrencyLimiter,
+                           MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimiter = concurrencyLimiter;
+
+        for (RateLimitProperties.Route route : properties.getRoutes()) {
+            outcomes.put(route, new Outcomes(meterRegistry, route.getName()));
+        }
+        this.unroutedOutcomes = new Outcomes(meterRegistry, UNROUTED);
+
+        if (concurrencyLimiter != null) {
+            Gauge.builder("gateway.concurrency.limit", concurrencyLimiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .description("Current adaptive concurrency limit")
+                    .register(meterRegistry);
+            Gauge.builder("gateway.concurrency.in_flight", concurrencyLimiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .description("Requests currently admitted")
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        for (String excluded : properties.getExcludedPaths()) {
+            if (path.startsWith(excluded)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        RateLimitProperties.Route route = resolveRoute(request.getRequestURI());
+        Outcomes counters = route != null ? outcomes.get(route) : unroutedOutcomes;
+
+        if (route != null) {
+            long waitNanos = rateLimiter.tryAcquire(route, resolveUser(request));
+            if (waitNanos > 0) {
+                counters.throttled.increment();
+                reject(response, "throttled", waitNanos);
+                return;
+            }
+        }
+
+        if (concurrencyLimiter == null) {
+            counters.allowed.increment();
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        if (!concurrencyLimiter.tryAcquire()) {
+            counters.shed.increment();
+            reject(response, "overloaded", TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+
+        counters.allowed.increment();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            concurrencyLimiter.release(System.nanoTime() - start, failed);
+        }
+    }
+
+    private RateLimitProperties.Route resolveRoute(String path) {
+        List<RateLimitProperties.Route> routes = properties.getRoutes();
+        for (int i = 0; i < routes.size(); i++) {
+            RateLimitProperties.Route route = routes.get(i);
+            if (path.startsWith(route.getPathPrefix())) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Identify the caller without loading the session: the authenticated principal
+     * when the container has one, otherwise the client address. Client-supplied
+     * headers and cookies are never used, since a new value per request would get
+     * a fresh bucket every time.
+     */
+    private String resolveUser(HttpServletRequest request) {
+        Principal principal = request.getUserPrincipal();
+        if (principal != null) {
+            return principal.getName();
+        }
+        return request.getRemoteAddr();
+    }
+
+    private void reject(HttpServletResponse response, String reason, long retryAfterNanos) throws IOException {
+        long retryAfterSeconds = Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(retryAfterNanos + 999_999_999L));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"Too Many Requests\",\"reason\":\"" + reason + "\"}");
+    }
+
+    private static final class Outcomes {
+        private final Counter allowed;
+        private final Counter throttled;
+        private final Counter shed;
+
+        Outcomes(MeterRegistry registry, String route) {
+            this.allowed = counter(registry, route, "allowed");
+            this.throttled = counter(registry, route, "throttled");
+            this.shed = counter(registry, route, "shed");
+        }
+
+        private static Counter counter(MeterRegistry registry, String route, String outcome) {
+            return Counter.builder("gateway.ratelimit.requests")
+                    .description("Gateway admission decisions")
+                    .tag("route", route)
+                    .tag("outcome", outcome)
+                    .register(registry);
+        }
+    }
+}
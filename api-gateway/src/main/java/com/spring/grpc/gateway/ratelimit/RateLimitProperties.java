@@ -0,0 +1,65 @@
+package com.spring.grpc.gateway.ratelimit;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Rate limiting and admission control settings (gateway.rate-limit.*)
+ */
+@Data
+@ConfigurationProperties(prefix = "gateway.rate-limit")
+public class RateLimitProperties {
+
+    public enum Mode {
+        LOCAL,  // per-replica buckets, no network hop
+        REDIS   // buckets shared by all replicas through Redis
+    }
+
+    private boolean enabled = true;
+
+    private Mode mode = Mode.LOCAL;
+
+    /**
+     * Paths that are never limited or shed (health checks, metrics scraping)
+     */
+    private List<String> excludedPaths = new ArrayList<>(List.of("/actuator", "/api/health"));
+
+    /**
+     * Upper bound on per-user buckets kept by one replica before idle ones are evicted
+     */
+    private int maxTrackedUsers = 100_000;
+
+    private List<Route> routes = new ArrayList<>();
+
+    private Concurrency concurrency = new Concurrency();
+
+    @Data
+    public static class Route {
+        private String name;
+        private String pathPrefix;
+        private double userPermitsPerSecond = 20;
+        private int userBurst = 40;
+        private double routePermitsPerSecond = 500;
+        private int routeBurst = 1000;
+    }
+
+    @Data
+    public static class Concurrency {
+        private boolean enabled = true;
+        private int initialLimit = 100;
+        private int minLimit = 10;
+        private int maxLimit = 1000;
+        /**
+         * Requests slower than this count as congestion and shrink the limit
+         */
+        private Duration latencyThreshold = Duration.ofMillis(500);
+        /**
+         * Multiplicative decrease applied on congestion
+         */
+        private double backoffRatio = 0.9;
+    }
+}
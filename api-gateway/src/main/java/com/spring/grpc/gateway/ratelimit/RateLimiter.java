@@ -0,0 +1,13 @@
+package com.spring.grpc.gateway.ratelimit;
+
+/**
+ * Rate limiter checked once per request, against both the route-wide bucket and
+ * the caller's own bucket for that route.
+ */
+public interface RateLimiter {
+
+    /**
+     * @return 0 if the request may proceed, otherwise nanoseconds until it may retry
+     */
+    long tryAcquire(RateLimitProperties.Route route, String userKey);
+}
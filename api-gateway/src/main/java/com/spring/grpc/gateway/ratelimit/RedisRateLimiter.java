@@ -0,0 +1,61 @@
+package com.spring.grpc.gateway.ratelimit;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Global rate limiter shared by all gateway replicas.
+ *
+ * Both buckets are checked and charged by one Lua script, so a decision is a single
+ * atomic round trip. If Redis is unreachable the decision falls back to the local
+ * limiter instead of failing the request.
+ */
+@Slf4j
+public class RedisRateLimiter implements RateLimiter {
+
+    private static final String KEY_PREFIX = "gateway:ratelimit:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RateLimiter fallback;
+    private final DefaultRedisScript<Long> script;
+    private volatile boolean degraded;
+
+    public RedisRateLimiter(StringRedisTemplate redisTemplate, RateLimiter fallback) {
+        this.redisTemplate = redisTemplate;
+        this.fallback = fallback;
+        this.script = new DefaultRedisScript<>();
+        this.script.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/token_bucket.lua")));
+        this.script.setResultType(Long.class);
+    }
+
+    @Override
+    public long tryAcquire(RateLimitProperties.Route route, String userKey) {
+        // Hash tag keeps both keys in the same slot when Redis runs as a cluster
+        String slot = KEY_PREFIX + "{" + route.getName() + "}:";
+        try {
+            Long waitMicros = redisTemplate.execute(script,
+                    List.of(slot + "route", slot + "user:" + userKey),
+                    Double.toString(route.getRoutePermitsPerSecond()),
+                    Integer.toString(route.getRouteBurst()),
+                    Double.toString(route.getUserPermitsPerSecond()),
+                    Integer.toString(route.getUserBurst()));
+            if (degraded) {
+                degraded = false;
+                log.info("Redis rate limiter recovered");
+            }
+            return waitMicros == null ? 0L : TimeUnit.MICROSECONDS.toNanos(waitMicros);
+        } catch (Exception e) {
+            if (!degraded) {
+                degraded = true;
+                log.warn("Redis rate limiter unavailable, using local limits: {}", e.getMessage());
+            }
+            return fallback.tryAcquire(route, userKey);
+        }
+    }
+}
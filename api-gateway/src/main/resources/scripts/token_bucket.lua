@@ -0,0 +1,42 @@
+-- Atomic two-level token bucket (route-wide + per-user) shared by all gateway replicas.
+--
+-- KEYS[1] route bucket, KEYS[2] user bucket
+-- ARGV[1] route permits/sec, ARGV[2] route burst
+-- ARGV[3] user permits/sec,  ARGV[4] user burst
+--
+-- Returns 0 when both buckets had a token (and both are charged), otherwise the
+-- number of microseconds until the request may be retried. Nothing is charged on
+-- rejection.
+
+local now_parts = redis.call('TIME')
+local now = tonumber(now_parts[1]) * 1000000 + tonumber(now_parts[2])
+
+local function refill(key, rate, burst)
+  local state = redis.call('HMGET', key, 'tokens', 'ts')
+  local tokens = tonumber(state[1]) or burst
+  local ts = tonumber(state[2]) or now
+  return math.min(burst, tokens + math.max(0, now - ts) * rate / 1000000)
+end
+
+local function wait_micros(tokens, rate)
+  return math.ceil((1 - tokens) * 1000000 / rate)
+end
+
+local route_rate, route_burst = tonumber(ARGV[1]), tonumber(ARGV[2])
+local user_rate, user_burst = tonumber(ARGV[3]), tonumber(ARGV[4])
+
+local route_tokens = refill(KEYS[1], route_rate, route_burst)
+local user_tokens = refill(KEYS[2], user_rate, user_burst)
+
+if user_tokens < 1 then
+  return wait_micros(user_tokens, user_rate)
+end
+if route_tokens < 1 then
+  return wait_micros(route_tokens, route_rate)
+end
+
+redis.call('HSET', KEYS[1], 'tokens', route_tokens - 1, 'ts', now)
+redis.call('PEXPIRE', KEYS[1], math.ceil(route_burst / route_rate * 1000) + 1000)
+redis.call('HSET', KEYS[2], 'tokens', user_tokens - 1, 'ts', now)
+redis.call('PEXPIRE', KEYS[2], math.ceil(user_burst / user_rate * 1000) + 1000)
+return 0
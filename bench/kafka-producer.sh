@@ -0,0 +1,43 @@
+#!/usr/bin/env bash
+# Events/sec and bytes on the wire for the order event producer settings.
+#
+#   bench/kafka-producer.sh [records]
+#
+# Needs the compose stack's kafka container. Sends the same order.created-shaped
+# JSON events with kafka-producer-perf-test, once per producer setting, to a
+# scratch topic with the partition count of order.created.
+set -euo pipefail
+
+records=${1:-500000}
+topic=bench.order-events
+payloads=/tmp/order-events.json
+
+# Distinct ids and amounts so compression sees realistic, not identical, records
+for i in $(seq 1 1000); do
+  printf '{"orderId":"0190f3a2-7c1e-7b4a-9d2e-%012d","userId":"user-%d","productId":"prod-%d","productName":"Product %d","quantity":%d,"priceMinor":%d,"totalAmountMinor":%d,"currency":"USD","lines":[{"lineNo":1,"productId":"prod-%d","productName":"Product %d","quantity":%d,"priceMinor":%d,"totalAmountMinor":%d}],"status":"PENDING","createdAt":"2026-01-15T10:%02d:%02d","version":0,"eventType":"CREATED"}\n' \
+    "$i" $((i % 97)) $((i % 50)) $((i % 50)) $((i % 5 + 1)) $((i * 37 % 10000)) $((i * 37 % 10000 * (i % 5 + 1))) \
+    $((i % 50)) $((i % 50)) $((i % 5 + 1)) $((i * 37 % 10000)) $((i * 37 % 10000 * (i % 5 + 1))) $((i % 60)) $((i * 7 % 60))
+done | docker exec -i kafka sh -c "cat > $payloads"
+
+docker exec kafka kafka-topics --bootstrap-server localhost:9092 --create --if-not-exists \
+  --topic "$topic" --partitions 3 --replication-factor 1 >/dev/null
+
+run() {
+  local name=$1
+  shift
+  echo "== $name"
+  docker exec kafka kafka-producer-perf-test --topic "$topic" --num-records "$records" \
+      --throughput -1 --payload-file "$payloads" --print-metrics \
+      --producer-props bootstrap.servers=localhost:9092 "$@" \
+    | grep -E 'records/sec|producer-metrics:(outgoing-byte-total|compression-rate-avg|record-size-avg)' \
+    | sed -E 's/\{client-id=[^}]*\}//'
+}
+
+# Before tuning: client defaults
+run baseline   linger.ms=0 compression.type=none
+# application.yml defaults
+run default    linger.ms=5 batch.size=32768 compression.type=lz4 enable.idempotence=true acks=all
+# kafka-throughput profile
+run throughput linger.ms=20 batch.size=131072 compression.type=zstd buffer.memory=67108864 enable.idempotence=true acks=all
+
+docker exec kafka kafka-topics --bootstrap-server localhost:9092 --delete --topic "$topic" >/dev/null
@@ -0,0 +1,137 @@
+package com.spring.grpc.bench.logging;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time a request thread spends logging one key/value event, with the console
+ * appender called directly (sync, the Spring Boot default) or behind the
+ * AsyncAppender of common/.../logback-async-console.xml (async).
+ *
+ * The console is a sink that takes sinkNanos per write, standing in for a
+ * terminal or a log pipe that is slower than the callers. Eight threads log at
+ * once, as request threads do under load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class LoggingBenchmark {
+
+    // logging.pattern.console of the services
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss} - %msg %kvp%n";
+
+    @Param({"sync", "async"})
+    public String appender;
+
+    @Param({"0", "20000"})
+    public long sinkNanos;
+
+    private LoggerContext context;
+    private Logger logger;
+
+    @Setup
+    public void setUp() {
+        context = new LoggerContext();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> console = new OutputStreamAppender<>();
+        console.setContext(context);
+        console.setName("CONSOLE");
+        console.setEncoder(encoder);
+        console.setOutputStream(new SlowSink(sinkNanos));
+        console.start();
+
+        Appender<ILoggingEvent> target = console;
+        if ("async".equals(appender)) {
+            // Same settings as the services
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setName("ASYNC_CONSOLE");
+            async.setQueueSize(8192);
+            async.setNeverBlock(true);
+            async.setIncludeCallerData(false);
+            async.setMaxFlushTime(2000);
+            async.addAppender(console);
+            async.start();
+            target = async;
+        }
+
+        logger = context.getLogger("bench");
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        logger.addAppender(target);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.stop();
+    }
+
+    @Benchmark
+    public void logEvent() {
+        logger.atInfo()
+                .addKeyValue("orderId", "0190f3a2-7c1e-7b4a-9d2e-5f8a1c3b6d70")
+                .addKeyValue("status", "CONFIRMED")
+                .addKeyValue("amountMinor", 12_345L)
+                .log("Order updated");
+    }
+
+    /**
+     * Discards its input after spinning for a fixed time per write
+     */
+    private static final class SlowSink extends OutputStream {
+
+        private final long nanosPerWrite;
+
+        SlowSink(long nanosPerWrite) {
+            this.nanosPerWrite = nanosPerWrite;
+        }
+
+        @Override
+        public void write(int b) {
+            spin();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            spin();
+        }
+
+        private void spin() {
+            long end = System.nanoTime() + nanosPerWrite;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+-- Tables and helpers for the order id / insert benchmarks (see README.md).
+-- Run against a scratch database: psql -d bench -f setup.sql
+
+DROP TABLE IF EXISTS bench_varchar_v4, bench_uuid_v4, bench_uuid_v7;
+
+-- UUID version 7, same layout as UuidV7Generator: 48-bit ms timestamp, version 7, random bits
+CREATE OR REPLACE FUNCTION bench_uuid_v7() RETURNS uuid AS $$
+    SELECT encode(
+        set_bit(set_bit(
+            overlay(uuid_send(gen_random_uuid())
+                    PLACING substring(int8send((extract(epoch FROM clock_timestamp()) * 1000)::bigint) FROM 3)
+                    FROM 1 FOR 6),
+            52, 1), 53, 1),
+        'hex')::uuid
+$$ LANGUAGE sql VOLATILE;
+
+-- Before: random UUID strings in varchar
+CREATE TABLE bench_varchar_v4 (
+    order_id   varchar(255) PRIMARY KEY,
+    user_id    varchar(255) NOT NULL,
+    status     varchar(255) NOT NULL,
+    created_at timestamp(6) NOT NULL
+);
+
+-- Native uuid, still random
+CREATE TABLE bench_uuid_v4 (LIKE bench_varchar_v4);
+ALTER TABLE bench_uuid_v4 ALTER COLUMN order_id TYPE uuid USING order_id::uuid, ADD PRIMARY KEY (order_id);
+
+-- After: native uuid, time-ordered
+CREATE TABLE bench_uuid_v7 (LIKE bench_uuid_v4 INCLUDING ALL);
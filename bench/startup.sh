@@ -0,0 +1,55 @@
+#!/usr/bin/env bash
+# Time from container start to the first successful call, per service.
+#
+#   bench/startup.sh [runs] [service...]
+#
+# Needs the compose stack up (postgres, kafka, redis), grpcurl and curl.
+# Each run recreates the service container and polls its probe call every 20ms.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+runs=${1:-5}
+shift || true
+services=("$@")
+[ ${#services[@]} -gt 0 ] || services=(order-service payment-service api-gateway)
+
+probe() {
+  case "$1" in
+    order-service)
+      grpcurl -plaintext -import-path proto -proto order.proto \
+        -d '{"page": 0, "size": 1}' localhost:9091 order.OrderService/ListOrders ;;
+    payment-service)
+      curl -fsS http://localhost:8082/api/payments/stats ;;
+    api-gateway)
+      curl -fsS -X POST http://localhost:8080/api/session/login \
+        -H "Content-Type: application/json" -d '{"username":"bench","password":"bench"}' ;;
+    api-gateway-native)
+      curl -fsS -X POST http://localhost:8090/api/session/login \
+        -H "Content-Type: application/json" -d '{"username":"bench","password":"bench"}' ;;
+    *)
+      echo "unknown service: $1" >&2; exit 2 ;;
+  esac
+}
+
+now_ms() { date +%s%3N; }
+
+for service in "${services[@]}"; do
+  times=()
+  for ((run = 1; run <= runs; run++)); do
+    docker compose --profile native stop "$service" >/dev/null 2>&1
+    start=$(now_ms)
+    docker compose --profile native up -d --no-deps --force-recreate "$service" >/dev/null 2>&1
+    until probe "$service" >/dev/null 2>&1; do
+      if (( $(now_ms) - start > 120000 )); then
+        echo "$service: no successful call within 120s" >&2; exit 1
+      fi
+      sleep 0.02
+    done
+    elapsed=$(( $(now_ms) - start ))
+    times+=("$elapsed")
+    echo "$service run $run: ${elapsed}ms"
+  done
+  median=$(printf '%s\n' "${times[@]}" | sort -n | awk '{a[NR]=$1} END {print (NR % 2) ? a[(NR+1)/2] : int((a[NR/2] + a[NR/2+1]) / 2)}')
+  echo "$service median: ${median}ms"
+done
@@ -0,0 +1,33 @@
+-- Insert the same number of rows with each id type and compare time and primary key size.
+-- psql -d bench -f setup.sql && psql -d bench -v rows=2000000 -f uuid-index.sql
+
+\if :{?rows}
+\else
+\set rows 1000000
+\endif
+\timing on
+
+\echo 'varchar, random UUID (before)'
+INSERT INTO bench_varchar_v4
+SELECT gen_random_uuid()::text, 'user-' || (i % 10000), 'PENDING', clock_timestamp()
+FROM generate_series(1, :rows) i;
+
+\echo 'uuid, random (version 4)'
+INSERT INTO bench_uuid_v4
+SELECT gen_random_uuid(), 'user-' || (i % 10000), 'PENDING', clock_timestamp()
+FROM generate_series(1, :rows) i;
+
+\echo 'uuid, time-ordered (version 7, after)'
+INSERT INTO bench_uuid_v7
+SELECT bench_uuid_v7(), 'user-' || (i % 10000), 'PENDING', clock_timestamp()
+FROM generate_series(1, :rows) i;
+
+\timing off
+
+SELECT c.relname AS primary_key,
+       pg_size_pretty(pg_relation_size(c.oid)) AS index_size,
+       pg_size_pretty(pg_relation_size(i.indrelid)) AS table_size
+FROM pg_index i
+JOIN pg_class c ON c.oid = i.indexrelid
+WHERE i.indisprimary AND i.indrelid::regclass::text LIKE 'bench_%'
+ORDER BY pg_relation_size(c.oid) DESC;
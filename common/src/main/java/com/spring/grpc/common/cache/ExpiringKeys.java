@@ -0,0 +1,76 @@
+package com.spring.grpc.common.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A concurrent set of keys that are forgotten a fixed time after they were last
+ * added, holding at most maxEntries.
+ *
+ * Every add also appends to a queue in time order, so expiry only looks at the
+ * head of that queue: each add removes the marks that have expired, plus the
+ * oldest ones while there are more than maxEntries. Nothing ever scans the set.
+ * A key added again leaves its older mark in the queue; that mark no longer
+ * matches when it reaches the head and only counts towards maxEntries until then.
+ */
+public class ExpiringKeys<K> {
+
+    private final ConcurrentHashMap<K, Long> addedAt = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Mark<K>> marks = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger markCount = new AtomicInteger();
+    private final long ttlMillis;
+    private final int maxEntries;
+
+    public ExpiringKeys(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    public void add(K key) {
+        long now = System.currentTimeMillis();
+        addedAt.put(key, now);
+        marks.add(new Mark<>(key, now));
+        markCount.incrementAndGet();
+        expire(now);
+    }
+
+    public boolean contains(K key) {
+        Long at = addedAt.get(key);
+        if (at == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - at > ttlMillis) {
+            addedAt.remove(key, at);
+            return false;
+        }
+        return true;
+    }
+
+    public int size() {
+        return addedAt.size();
+    }
+
+    private void expire(long now) {
+        Mark<K> oldest;
+        while ((oldest = marks.peek()) != null
+                && (now - oldest.at > ttlMillis || markCount.get() > maxEntries)) {
+            // False if another thread took it first; marks compare by identity
+            if (marks.remove(oldest)) {
+                markCount.decrementAndGet();
+                // Unless the key was added again since
+                addedAt.remove(oldest.key, oldest.at);
+            }
+        }
+    }
+
+    private static final class Mark<K> {
+        final K key;
+        final Long at;
+
+        Mark(K key, long at) {
+            this.key = key;
+            this.at = at;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.spring.grpc.common.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * A concurrent map holding at most maxEntries, evicting roughly the least recently
+ * used entries in O(1).
+ *
+ * Entries live in two generations. New entries go into the current one, and an
+ * entry found only in the previous one is moved forward when read. Once the
+ * current generation holds half of maxEntries it becomes the previous one, and
+ * whatever was still left in the old previous one is dropped: only entries not
+ * touched for a whole generation are lost, and nothing ever scans the map.
+ *
+ * Like any cache, an entry may be recreated by a concurrent computeIfAbsent while
+ * it moves between generations; callers must tolerate that.
+ */
+public class GenerationalCache<K, V> {
+
+    private final int generationSize;
+    private volatile ConcurrentHashMap<K, V> current = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<K, V> previous = new ConcurrentHashMap<>();
+
+    public GenerationalCache(int maxEntries) {
+        this.generationSize = Math.max(1, maxEntries / 2);
+    }
+
+    public V get(K key) {
+        V value = current.get(key);
+        if (value != null) {
+            return value;
+        }
+        value = previous.remove(key);
+        if (value == null) {
+            return null;
+        }
+        V raced = admit().putIfAbsent(key, value);
+        return raced != null ? raced : value;
+    }
+
+    public V computeIfAbsent(K key, Function<? super K, ? extends V> factory) {
+        V value = get(key);
+        return value != null ? value : admit().computeIfAbsent(key, factory);
+    }
+
+    public void put(K key, V value) {
+        previous.remove(key);
+        admit().put(key, value);
+    }
+
+    public V remove(K key) {
+        V value = current.remove(key);
+        V old = previous.remove(key);
+        return value != null ? value : old;
+    }
+
+    public int size() {
+        return current.size() + previous.size();
+    }
+
+    private ConcurrentHashMap<K, V> admit() {
+        ConcurrentHashMap<K, V> generation = current;
+        if (generation.size() >= generationSize) {
+            rotate(generation);
+            generation = current;
+        }
+        return generation;
+    }
+
+    private synchronized void rotate(ConcurrentHashMap<K, V> full) {
+        if (current == full) {
+            // Otherwise another thread rotated first
+            previous = full;
+            current = new ConcurrentHashMap<>();
+        }
+    }
+}
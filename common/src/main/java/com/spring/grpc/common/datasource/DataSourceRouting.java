@@ -0,0 +1,36 @@
+package com.spring.grpc.common.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-thread override that keeps read-only work on the primary.
+ *
+ * Only affects connections obtained inside {@link #onPrimary}: a read-only
+ * transaction that already holds a replica connection keeps it.
+ */
+public final class DataSourceRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    /**
+     * Run work with every connection it opens taken from the primary
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        if (isPrimaryForced()) {
+            return work.get();
+        }
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            PRIMARY_FORCED.remove();
+        }
+    }
+
+    static boolean isPrimaryForced() {
+        return Boolean.TRUE.equals(PRIMARY_FORCED.get());
+    }
+}
@@ -0,0 +1,89 @@
+package com.spring.grpc.common.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read-your-writes tracking for every service with a data source, plus read
+ * replica routing when datasource.replicas.urls is set.
+ *
+ * Read-only transactions go to the replicas, everything else to the primary pool
+ * configured under spring.datasource. The routing data source is always defined
+ * and passes every connection through to the primary when there are no replica
+ * URLs: a runtime decision rather than a condition, so an AOT-processed build
+ * still follows datasource.replicas.urls. Runs before Spring Boot's data source
+ * configuration, which backs off once the routing data source is defined.
+ */
+@AutoConfiguration(before = DataSourceAutoConfiguration.class)
+@ConditionalOnClass(HikariDataSource.class)
+public class DataSourceRoutingAutoConfiguration {
+
+    @Bean
+    public ReadYourWritesGuard readYourWritesGuard(
+            @Value("${datasource.read-your-writes.enabled:true}") boolean enabled,
+            @Value("${datasource.read-your-writes.window:5s}") Duration window,
+            @Value("${datasource.read-your-writes.max-entries:100000}") int maxEntries) {
+        return new ReadYourWritesGuard(enabled, window, maxEntries);
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            MeterRegistry meterRegistry,
+            @Value("${datasource.replicas.urls:}") List<String> replicaUrls,
+            @Value("${datasource.replicas.username:}") String replicaUsername,
+            @Value("${datasource.replicas.password:}") String replicaPassword,
+            @Value("${datasource.replicas.pool-size:10}") int replicaPoolSize,
+            @Value("${datasource.replicas.health-check-interval:5s}") Duration healthCheckInterval,
+            @Value("${datasource.replicas.max-lag:0s}") Duration maxLag) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (String url : replicaUrls) {
+            if (url.isBlank()) {
+                continue;
+            }
+            String name = "replica-" + (replicas.size() + 1);
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName(name);
+            replica.setJdbcUrl(url.trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(replicaUsername.isEmpty() ? properties.determineUsername() : replicaUsername);
+            replica.setPassword(replicaPassword.isEmpty() ? properties.determinePassword() : replicaPassword);
+            replica.setMaximumPoolSize(replicaPoolSize);
+            replica.setReadOnly(true);
+            // Same driver settings (statement caching) as the primary
+            replica.setDataSourceProperties(primaryDataSource.getDataSourceProperties());
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.put(name, replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, healthCheckInterval, maxLag, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
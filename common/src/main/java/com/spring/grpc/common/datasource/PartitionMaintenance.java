@@ -0,0 +1,254 @@
+package com.spring.grpc.common.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the monthly partitions of the datasource.partitioning.tables rolling.
+ *
+ * Each table is range-partitioned by created_at (see the service's schema.sql),
+ * one partition per month named TABLE_pYYYYMM. Tables that belong together (orders
+ * and order_lines) share created_at values, so their rows are archived in the same
+ * month. Each run:
+ * <ul>
+ *   <li>creates the partitions for the current month and the next premake-months,</li>
+ *   <li>detaches partitions older than retention-months (CONCURRENTLY, so inserts
+ *       into the current month are not blocked),</li>
+ *   <li>writes each detached partition to archive-dir as gzipped CSV and drops it.</li>
+ * </ul>
+ * A run interrupted between steps is finished by the next one: pending detaches
+ * are finalized and detached partitions still present are archived again.
+ *
+ * Runs once at startup, before the service takes traffic, then every
+ * check-interval, unless datasource.partitioning.enabled is false (a runtime flag
+ * rather than a condition, so it still applies to an AOT-processed build).
+ * Replicas of the service coordinate through an advisory lock.
+ */
+@Slf4j
+public class PartitionMaintenance {
+
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final List<String> tables;
+    private final String lockName;
+    private final boolean enabled;
+    private final DataSource dataSource;
+    private final int premakeMonths;
+    private final int retentionMonths;
+    private final Path archiveDir;
+    private final Duration checkInterval;
+    private final Map<String, Counter> created = new HashMap<>();
+    private final Map<String, Counter> archived = new HashMap<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("partition-maintenance-"));
+
+    public PartitionMaintenance(List<String> tables,
+                                boolean enabled,
+                                DataSource dataSource,
+                                int premakeMonths,
+                                int retentionMonths,
+                                Path archiveDir,
+                                Duration checkInterval,
+                                MeterRegistry registry) {
+        this.tables = List.copyOf(tables);
+        // Named after the first table, so replicas of one service share it
+        this.lockName = tables.get(0) + "-partition-maintenance";
+        this.enabled = enabled;
+        this.dataSource = dataSource;
+        this.premakeMonths = premakeMonths;
+        this.retentionMonths = retentionMonths;
+        this.archiveDir = archiveDir;
+        this.checkInterval = checkInterval;
+        for (String table : this.tables) {
+            created.put(table, partitionCounter(registry, table, "created"));
+            archived.put(table, partitionCounter(registry, table, "archived"));
+        }
+    }
+
+    @PostConstruct
+    public void start() throws SQLException {
+        if (!enabled) {
+            return;
+        }
+        // Synchronously, so the current month's partition exists before the first insert
+        run();
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                run();
+            } catch (Exception e) {
+                log.atError().addKeyValue("tables", tables).setCause(e).log("Partition maintenance failed");
+            }
+        }, checkInterval.toMillis(), checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    void run() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            if (!tryLock(connection)) {
+                log.atDebug().addKeyValue("tables", tables).log("Partition maintenance running elsewhere");
+                return;
+            }
+            try {
+                YearMonth current = YearMonth.now();
+                YearMonth oldestKept = current.minusMonths(retentionMonths);
+                for (String table : tables) {
+                    for (int i = 0; i <= premakeMonths; i++) {
+                        createPartition(connection, table, current.plusMonths(i));
+                    }
+                    for (Partition partition : partitions(connection, table)) {
+                        if (partition.month.isBefore(oldestKept)) {
+                            archive(connection, partition);
+                        }
+                    }
+                }
+            } finally {
+                unlock(connection);
+            }
+        }
+    }
+
+    private void createPartition(Connection connection, String table, YearMonth month) throws SQLException {
+        String name = partitionName(table, month);
+        try (PreparedStatement exists = connection.prepareStatement("SELECT to_regclass(?) IS NOT NULL")) {
+            exists.setString(1, name);
+            try (ResultSet rs = exists.executeQuery()) {
+                if (rs.next() && rs.getBoolean(1)) {
+                    return;
+                }
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + name + " PARTITION OF " + table +
+                    " FOR VALUES FROM ('" + month.atDay(1) + "') TO ('" + month.plusMonths(1).atDay(1) + "')");
+        }
+        created.get(table).increment();
+        log.atInfo().addKeyValue("partition", name).log("Partition created");
+    }
+
+    private void archive(Connection connection, Partition partition) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            if (partition.detachPending) {
+                statement.execute("ALTER TABLE " + partition.table + " DETACH PARTITION " + partition.name + " FINALIZE");
+            } else if (partition.attached) {
+                statement.execute("ALTER TABLE " + partition.table + " DETACH PARTITION " + partition.name + " CONCURRENTLY");
+            }
+        }
+
+        Path target = archiveDir.resolve(partition.table).resolve(partition.name + ".csv.gz");
+        long rows;
+        try {
+            Files.createDirectories(target.getParent());
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp))) {
+                rows = connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyOut("COPY " + partition.name + " TO STDOUT WITH (FORMAT csv, HEADER true)", out);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Keep the detached table; the next run archives it again
+            throw new SQLException("Could not archive " + partition.name + " to " + target, e);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE " + partition.name);
+        }
+        archived.get(partition.table).increment();
+        log.atInfo()
+                .addKeyValue("partition", partition.name)
+                .addKeyValue("rows", rows)
+                .addKeyValue("file", target)
+                .log("Partition archived");
+    }
+
+    /**
+     * Monthly partitions of the table, attached or left detached by an earlier run
+     */
+    private List<Partition> partitions(Connection connection, String table) throws SQLException {
+        Pattern partitionName = Pattern.compile(table + "_p(\\d{6})");
+        List<Partition> partitions = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT c.relname, i.inhrelid IS NOT NULL, COALESCE(i.inhdetachpending, false) " +
+                        "FROM pg_class c LEFT JOIN pg_inherits i ON i.inhrelid = c.oid " +
+                        "WHERE c.relkind = 'r' AND c.relnamespace = current_schema()::regnamespace " +
+                        "AND c.relname ~ ? AND (i.inhparent IS NULL OR i.inhparent = ?::regclass)")) {
+            statement.setString(1, "^" + partitionName.pattern() + "$");
+            statement.setString(2, table);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    Matcher matcher = partitionName.matcher(rs.getString(1));
+                    if (matcher.matches()) {
+                        partitions.add(new Partition(table, rs.getString(1), YearMonth.parse(matcher.group(1), SUFFIX),
+                                rs.getBoolean(2), rs.getBoolean(3)));
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(hashtext(?))")) {
+            statement.setString(1, lockName);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(hashtext(?))")) {
+            statement.setString(1, lockName);
+            statement.execute();
+        }
+    }
+
+    static String partitionName(String table, YearMonth month) {
+        return table + "_p" + month.format(SUFFIX);
+    }
+
+    private static Counter partitionCounter(MeterRegistry registry, String table, String action) {
+        return Counter.builder("db.partitions")
+                .description("Monthly partitions created and archived by maintenance")
+                .tag("table", table)
+                .tag("action", action)
+                .register(registry);
+    }
+
+    private record Partition(String table, String name, YearMonth month, boolean attached, boolean detachPending) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.spring.grpc.common.datasource;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.context.annotation.Bean;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Partition maintenance for the tables a service lists under
+ * datasource.partitioning.tables.
+ */
+@AutoConfiguration(after = DataSourceAutoConfiguration.class)
+@ConditionalOnClass(PGConnection.class)
+@ConditionalOnProperty("datasource.partitioning.tables")
+public class PartitionMaintenanceAutoConfiguration {
+
+    // Its first run needs the parent tables from schema.sql
+    @Bean
+    @DependsOnDatabaseInitialization
+    public PartitionMaintenance partitionMaintenance(
+            @Value("${datasource.partitioning.tables}") List<String> tables,
+            @Value("${datasource.partitioning.enabled:true}") boolean enabled,
+            DataSource dataSource,
+            @Value("${datasource.partitioning.premake-months:3}") int premakeMonths,
+            @Value("${datasource.partitioning.retention-months:12}") int retentionMonths,
+            @Value("${datasource.partitioning.archive-dir:./archive}") Path archiveDir,
+            @Value("${datasource.partitioning.check-interval:6h}") Duration checkInterval,
+            MeterRegistry registry) {
+        return new PartitionMaintenance(tables, enabled, dataSource, premakeMonths, retentionMonths,
+                archiveDir, checkInterval, registry);
+    }
+}
@@ -0,0 +1,45 @@
+package com.spring.grpc.common.datasource;
+
+import com.spring.grpc.common.cache.ExpiringKeys;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Remembers recently written keys (orderIds) so reads of them go to the primary
+ * until the replicas have had time to catch up.
+ *
+ * Writers call {@link #recordWrite} after changing an order or its payment; keyed
+ * reads go through {@link #read}. The window should cover the usual replication
+ * lag; reads of other keys, and unkeyed reads such as listings, still go to the
+ * replicas.
+ * Keys leave the guard when their window ends, or oldest first beyond maxEntries,
+ * without scanning it (see {@link ExpiringKeys}).
+ */
+public class ReadYourWritesGuard {
+
+    private final ExpiringKeys<String> written;
+    private final boolean enabled;
+
+    public ReadYourWritesGuard(boolean enabled, Duration window, int maxEntries) {
+        this.enabled = enabled;
+        this.written = new ExpiringKeys<>(window.toMillis(), maxEntries);
+    }
+
+    public void recordWrite(String key) {
+        if (enabled) {
+            written.add(key);
+        }
+    }
+
+    /**
+     * Run a read of the given key, on the primary if the key was written within the window
+     */
+    public <T> T read(String key, Supplier<T> read) {
+        return isRecent(key) ? DataSourceRouting.onPrimary(read) : read.get();
+    }
+
+    boolean isRecent(String key) {
+        return written.contains(key);
+    }
+}
@@ -0,0 +1,190 @@
+package com.spring.grpc.common.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends connections for read-only transactions to a read replica and everything
+ * else to the primary.
+ *
+ * Must sit behind a LazyConnectionDataSourceProxy: the transaction manager asks
+ * for a connection before the transaction is marked read-only, and the proxy
+ * defers fetching it until the first statement, when the flag is set.
+ *
+ * Replicas are picked round-robin among those that passed the last health check
+ * (valid connection and, if max lag is set, replaying within it). A replica that
+ * fails to hand out a connection is marked down until a later check passes. With
+ * no healthy replica, reads fall back to the primary. With no replicas at all,
+ * every connection comes straight from the primary.
+ */
+@Slf4j
+public class ReplicaRoutingDataSource extends AbstractDataSource implements InitializingBean, DisposableBean {
+
+    // 0 on a primary, so a plain Postgres instance can stand in for a replica
+    private static final String LAG_QUERY = "SELECT CASE WHEN pg_is_in_recovery() " +
+            "THEN COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) ELSE 0 END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Duration checkInterval;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final ScheduledExecutorService checker =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("replica-health-"));
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+    private final Counter pinnedRoutes;
+    private final Counter fallbackRoutes;
+
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                    Duration checkInterval, Duration maxLag, MeterRegistry registry) {
+        this.primary = primary;
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.checkInterval = checkInterval;
+        this.maxLag = maxLag;
+
+        this.primaryRoutes = routeCounter(registry, "primary");
+        this.replicaRoutes = routeCounter(registry, "replica");
+        this.pinnedRoutes = routeCounter(registry, "pinned");
+        this.fallbackRoutes = routeCounter(registry, "fallback");
+        Gauge.builder("db.replicas.healthy", this, ds -> ds.healthyReplicas().size())
+                .description("Read replicas that passed the last health check")
+                .register(registry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (replicas.isEmpty()) {
+            return;
+        }
+        // Replicas start out down, so reads stay on the primary until the first check passes
+        checker.scheduleWithFixedDelay(this::checkReplicas, 0, checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        checker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return primary.getConnection();
+        }
+        if (DataSourceRouting.isPrimaryForced()) {
+            pinnedRoutes.increment();
+            return primary.getConnection();
+        }
+
+        List<Replica> healthy = healthyReplicas();
+        for (int i = 0; i < healthy.size(); i++) {
+            Replica replica = healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size()));
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                replicaRoutes.increment();
+                return connection;
+            } catch (SQLException e) {
+                markHealthy(replica, false, e.getMessage());
+            }
+        }
+        fallbackRoutes.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Routing data source only uses the configured credentials");
+    }
+
+    void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet lag = statement.executeQuery(LAG_QUERY)) {
+                lag.next();
+                long lagMillis = (long) (lag.getDouble(1) * 1000);
+                if (!maxLag.isZero() && lagMillis > maxLag.toMillis()) {
+                    markHealthy(replica, false, "replication lag " + lagMillis + "ms");
+                } else {
+                    markHealthy(replica, true, null);
+                }
+            } catch (SQLException e) {
+                markHealthy(replica, false, e.getMessage());
+            } catch (RuntimeException e) {
+                log.atError().addKeyValue("replica", replica.name).setCause(e).log("Replica health check failed");
+            }
+        }
+    }
+
+    private List<Replica> healthyReplicas() {
+        List<Replica> healthy = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy.add(replica);
+            }
+        }
+        return healthy;
+    }
+
+    private void markHealthy(Replica replica, boolean healthy, String reason) {
+        if (replica.healthy == healthy) {
+            return;
+        }
+        replica.healthy = healthy;
+        if (healthy) {
+            log.atInfo().addKeyValue("replica", replica.name).log("Read replica up");
+        } else {
+            log.atWarn().addKeyValue("replica", replica.name).addKeyValue("reason", reason).log("Read replica down");
+        }
+    }
+
+    private static Counter routeCounter(MeterRegistry registry, String target) {
+        return Counter.builder("db.routing")
+                .description("Connections handed out, by target: primary (read-write), replica, " +
+                        "pinned (read-only kept on primary for read-your-writes), fallback (no healthy replica)")
+                .tag("target", target)
+                .register(registry);
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
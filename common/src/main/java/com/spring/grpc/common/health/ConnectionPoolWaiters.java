@@ -0,0 +1,44 @@
+package com.spring.grpc.common.health;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.util.Map;
+
+/**
+ * Requests waiting for a database connection, per pooled connection. Fits a
+ * service whose database work comes from the traffic readiness controls.
+ */
+public class ConnectionPoolWaiters implements OverloadSignal {
+
+    private final HikariDataSource pool;
+
+    /**
+     * @param pool the primary pool, or null when the data source is not Hikari
+     */
+    public ConnectionPoolWaiters(HikariDataSource pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public double saturation() {
+        HikariPoolMXBean poolBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        if (poolBean == null) {
+            // Not pooled by Hikari, or no connection taken yet
+            return 0;
+        }
+        return (double) poolBean.getThreadsAwaitingConnection() / pool.getMaximumPoolSize();
+    }
+
+    @Override
+    public Map<String, Object> details() {
+        HikariPoolMXBean poolBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        if (poolBean == null) {
+            return Map.of();
+        }
+        return Map.of(
+                "waitingForConnection", poolBean.getThreadsAwaitingConnection(),
+                "poolSize", pool.getMaximumPoolSize(),
+                "activeConnections", poolBean.getActiveConnections());
+    }
+}
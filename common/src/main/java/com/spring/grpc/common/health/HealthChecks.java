@@ -0,0 +1,279 @@
+package com.spring.grpc.common.health;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.DescribeClusterResult;
+import org.apache.kafka.clients.admin.ListOffsetsResult.ListOffsetsResultInfo;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the health checks in the background and caches their results, so a probe
+ * reads the last result instead of reaching out to every dependency per call.
+ *
+ * Every check-interval:
+ * - database: a connection from the primary pool, validated with isValid. Skipped
+ *   while requests are queueing for connections, so the check never takes one
+ *   from them; the last result stands until it is older than
+ *   database-stale-after, then the database is reported DOWN.
+ * - kafka: broker metadata (describeCluster) through an admin client.
+ * - consumerLag: committed offsets of the consumer group against the end offsets
+ *   of its partitions. Reported only; it never takes the service out of rotation.
+ * Every overload.sample-interval:
+ * - overload: the service's {@link OverloadSignal}. OUT_OF_SERVICE from
+ *   high-water until it falls back to low-water, so readiness sheds traffic while
+ *   the service is saturated.
+ *
+ * Each check runs on its own thread, so a hanging dependency only delays its own
+ * result, and the remote ones are bounded by check-timeout. A check that fails
+ * reports DOWN; one that has not completed yet reports OUT_OF_SERVICE. Checks
+ * start with the other lifecycle beans, after the context is refreshed.
+ */
+@Slf4j
+public class HealthChecks implements SmartLifecycle {
+
+    public static final String DATABASE = "database";
+    public static final String KAFKA = "kafka";
+    public static final String CONSUMER_LAG = "consumerLag";
+    public static final String OVERLOAD = "overload";
+
+    private static final Health PENDING = Health.outOfService().withDetail("reason", "not checked yet").build();
+
+    private final DataSource dataSource;
+    private final HikariDataSource pool;
+    private final KafkaAdmin kafkaAdmin;
+    private final String groupId;
+    private final OverloadSignal overload;
+    private final Duration checkInterval;
+    private final Duration checkTimeout;
+    private final long databaseStaleAfterNanos;
+    private final Duration overloadInterval;
+    private final double highWater;
+    private final double lowWater;
+    private final Map<String, Health> results = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newScheduledThreadPool(4, new CustomizableThreadFactory("health-check-"));
+    private volatile AdminClient admin;
+    private volatile double consumerLag = Double.NaN;
+    private volatile long lastDatabaseUp;
+    private volatile boolean shedding;
+    private volatile boolean running;
+
+    /**
+     * @param service prefix of the meters: SERVICE.health.up, SERVICE.consumer.lag
+     * @param pool    the primary pool, also behind the routing data source when
+     *                replicas are set; null when the data source is not Hikari
+     */
+    public HealthChecks(String service,
+                        HealthProperties properties,
+                        DataSource dataSource,
+                        HikariDataSource pool,
+                        KafkaAdmin kafkaAdmin,
+                        String groupId,
+                        OverloadSignal overload,
+                        MeterRegistry registry) {
+        this.dataSource = dataSource;
+        this.pool = pool;
+        this.kafkaAdmin = kafkaAdmin;
+        this.groupId = groupId;
+        this.overload = overload;
+        this.checkInterval = properties.getCheckInterval();
+        this.checkTimeout = properties.getCheckTimeout();
+        this.databaseStaleAfterNanos = properties.getDatabaseStaleAfter().toNanos();
+        this.overloadInterval = properties.getOverload().getSampleInterval();
+        this.highWater = properties.getOverload().getHighWater();
+        this.lowWater = properties.getOverload().getLowWater();
+
+        for (String check : new String[]{DATABASE, KAFKA, CONSUMER_LAG, OVERLOAD}) {
+            results.put(check, PENDING);
+            Gauge.builder(service + ".health.up", results, r -> Status.UP.equals(r.get(check).getStatus()) ? 1 : 0)
+                    .description("1 if the last health check passed")
+                    .tag("check", check)
+                    .register(registry);
+        }
+        Gauge.builder(service + ".consumer.lag", this, checks -> checks.consumerLag)
+                .description("Records not yet consumed by the consumer group, as of the last check")
+                .tag("group", groupId)
+                .register(registry);
+    }
+
+    /**
+     * The last result of a check; never blocks
+     */
+    public Health get(String check) {
+        return results.get(check);
+    }
+
+    @Override
+    public void start() {
+        Map<String, Object> config = new HashMap<>(kafkaAdmin.getConfigurationProperties());
+        config.put(AdminClientConfig.CLIENT_ID_CONFIG, groupId + "-health");
+        config.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) checkTimeout.toMillis());
+        config.put(AdminClientConfig.DEFAULT_API_TIMEOUT_MS_CONFIG, (int) checkTimeout.toMillis());
+        admin = AdminClient.create(config);
+        lastDatabaseUp = System.nanoTime();
+
+        schedule(DATABASE, checkInterval, this::checkDatabase);
+        schedule(KAFKA, checkInterval, this::checkKafka);
+        schedule(CONSUMER_LAG, checkInterval, this::checkConsumerLag);
+        schedule(OVERLOAD, overloadInterval, this::checkOverload);
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        if (admin != null) {
+            admin.close(Duration.ZERO);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void schedule(String check, Duration interval, Callable<Health> probe) {
+        scheduler.scheduleWithFixedDelay(() -> run(check, probe), 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void run(String check, Callable<Health> probe) {
+        Health health;
+        try {
+            health = probe.call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            health = Health.down().withException(e.getCause()).build();
+        } catch (Exception e) {
+            health = Health.down().withException(e).build();
+        }
+        if (health == null) {
+            return;
+        }
+
+        Health previous = results.put(check, health);
+        if (!previous.getStatus().equals(health.getStatus())) {
+            log.atInfo()
+                    .addKeyValue("check", check)
+                    .addKeyValue("from", previous.getStatus())
+                    .addKeyValue("to", health.getStatus())
+                    .log("Health check status changed");
+        }
+    }
+
+    /**
+     * null (keep the last result) while requests are waiting for a connection,
+     * unless the last success is too old to stand for the database any more
+     */
+    Health checkDatabase() throws Exception {
+        HikariPoolMXBean poolBean = pool != null ? pool.getHikariPoolMXBean() : null;
+        if (poolBean != null && poolBean.getThreadsAwaitingConnection() > 0) {
+            long sinceUp = System.nanoTime() - lastDatabaseUp;
+            if (sinceUp < databaseStaleAfterNanos) {
+                return null;
+            }
+            return Health.down()
+                    .withDetail("reason", "connections exhausted, no successful check since " +
+                            Duration.ofNanos(sinceUp).toSeconds() + "s")
+                    .withDetail("waitingForConnection", poolBean.getThreadsAwaitingConnection())
+                    .build();
+        }
+        try (Connection connection = (pool != null ? pool : dataSource).getConnection()) {
+            if (!connection.isValid((int) Math.max(1, checkTimeout.toSeconds()))) {
+                return Health.down().withDetail("reason", "connection not valid").build();
+            }
+        }
+        lastDatabaseUp = System.nanoTime();
+        return Health.up().build();
+    }
+
+    Health checkKafka() throws Exception {
+        DescribeClusterResult cluster = admin.describeCluster();
+        Collection<Node> nodes = cluster.nodes().get(checkTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        if (nodes.isEmpty()) {
+            return Health.down().withDetail("reason", "no brokers").build();
+        }
+        return Health.up()
+                .withDetail("brokers", nodes.size())
+                .withDetail("clusterId", cluster.clusterId().get(checkTimeout.toMillis(), TimeUnit.MILLISECONDS))
+                .build();
+    }
+
+    /**
+     * UNKNOWN rather than DOWN when the offsets cannot be read; the kafka check
+     * reports the broker itself
+     */
+    Health checkConsumerLag() throws InterruptedException {
+        try {
+            Map<TopicPartition, OffsetAndMetadata> committed = admin.listConsumerGroupOffsets(groupId)
+                    .partitionsToOffsetAndMetadata().get(checkTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            Map<TopicPartition, OffsetSpec> latest = new HashMap<>();
+            committed.forEach((partition, offset) -> {
+                if (offset != null) {
+                    latest.put(partition, OffsetSpec.latest());
+                }
+            });
+            Map<TopicPartition, ListOffsetsResultInfo> ends = admin.listOffsets(latest)
+                    .all().get(checkTimeout.toMillis(), TimeUnit.MILLISECONDS);
+
+            long lag = 0;
+            for (Map.Entry<TopicPartition, ListOffsetsResultInfo> end : ends.entrySet()) {
+                lag += Math.max(0, end.getValue().offset() - committed.get(end.getKey()).offset());
+            }
+            consumerLag = lag;
+            return Health.up()
+                    .withDetail("group", groupId)
+                    .withDetail("partitions", ends.size())
+                    .withDetail("lag", lag)
+                    .build();
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            consumerLag = Double.NaN;
+            return Health.unknown().withException(e instanceof ExecutionException ? e.getCause() : e).build();
+        }
+    }
+
+    Health checkOverload() {
+        double saturation = overload.saturation();
+        if (!shedding && saturation >= highWater) {
+            shedding = true;
+            log.atWarn().addKeyValue("saturation", saturation).log("Overloaded, refusing traffic");
+        } else if (shedding && saturation <= lowWater) {
+            shedding = false;
+            log.atInfo().addKeyValue("saturation", saturation).log("Load back to normal, accepting traffic");
+        }
+        return (shedding ? Health.outOfService() : Health.up())
+                .withDetail("saturation", saturation)
+                .withDetails(overload.details())
+                .build();
+    }
+}
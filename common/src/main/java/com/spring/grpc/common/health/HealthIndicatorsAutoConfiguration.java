@@ -0,0 +1,38 @@
+package com.spring.grpc.common.health;
+
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Health indicators backed by the cached results of the service's
+ * {@link HealthChecks}, grouped into the liveness and readiness probes in
+ * application.yml.
+ */
+@AutoConfiguration
+@ConditionalOnClass(HealthIndicator.class)
+@ConditionalOnBean(HealthChecks.class)
+public class HealthIndicatorsAutoConfiguration {
+
+    @Bean
+    public HealthIndicator databaseHealthIndicator(HealthChecks checks) {
+        return () -> checks.get(HealthChecks.DATABASE);
+    }
+
+    @Bean
+    public HealthIndicator kafkaHealthIndicator(HealthChecks checks) {
+        return () -> checks.get(HealthChecks.KAFKA);
+    }
+
+    @Bean
+    public HealthIndicator consumerLagHealthIndicator(HealthChecks checks) {
+        return () -> checks.get(HealthChecks.CONSUMER_LAG);
+    }
+
+    @Bean
+    public HealthIndicator overloadHealthIndicator(HealthChecks checks) {
+        return () -> checks.get(HealthChecks.OVERLOAD);
+    }
+}
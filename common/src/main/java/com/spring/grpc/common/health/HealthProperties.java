@@ -0,0 +1,44 @@
+package com.spring.grpc.common.health;
+
+import lombok.Data;
+
+import java.time.Duration;
+
+/**
+ * Settings of {@link HealthChecks}, bound by each service under its own prefix
+ * (order.health.*, payment.health.*)
+ */
+@Data
+public class HealthProperties {
+
+    /**
+     * How often the database, kafka and consumer lag checks run
+     */
+    private Duration checkInterval = Duration.ofSeconds(10);
+
+    /**
+     * Bound on each remote call of a check
+     */
+    private Duration checkTimeout = Duration.ofSeconds(2);
+
+    /**
+     * The database check is skipped while requests queue for connections; once the
+     * last successful one is older than this, the database is reported DOWN
+     */
+    private Duration databaseStaleAfter = Duration.ofSeconds(30);
+
+    private Overload overload = new Overload();
+
+    @Data
+    public static class Overload {
+        private Duration sampleInterval = Duration.ofSeconds(1);
+        /**
+         * Saturation at which readiness goes OUT_OF_SERVICE
+         */
+        private double highWater = 1.0;
+        /**
+         * Saturation at or below which readiness comes back
+         */
+        private double lowWater = 0.25;
+    }
+}
@@ -0,0 +1,48 @@
+package com.spring.grpc.common.health;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * HTTP requests in flight against the request threads of the server. Fits a
+ * service whose HTTP API shares it with other work, such as Kafka consumers: only
+ * the HTTP part goes away when readiness takes the service out of rotation.
+ */
+public class InFlightRequests extends OncePerRequestFilter implements OverloadSignal {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxThreads;
+
+    public InFlightRequests(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        inFlight.incrementAndGet();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public double saturation() {
+        return (double) inFlight.get() / maxThreads;
+    }
+
+    @Override
+    public Map<String, Object> details() {
+        return Map.of("inFlight", inFlight.get(), "maxThreads", maxThreads);
+    }
+}
@@ -0,0 +1,20 @@
+package com.spring.grpc.common.health;
+
+import java.util.Map;
+
+/**
+ * The load the overload check samples. It should be one that taking the service
+ * out of rotation relieves, or readiness sheds traffic without helping.
+ */
+public interface OverloadSignal {
+
+    /**
+     * Load against capacity, where 1.0 is full
+     */
+    double saturation();
+
+    /**
+     * Reported with the overload check
+     */
+    Map<String, Object> details();
+}
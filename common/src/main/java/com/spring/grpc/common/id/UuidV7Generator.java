@@ -0,0 +1,36 @@
+package com.spring.grpc.common.id;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+
+import java.util.EnumSet;
+import java.util.UUID;
+
+/**
+ * UUID version 7 (RFC 9562): 48-bit Unix millisecond timestamp, version, then
+ * random bits from {@link UUID#randomUUID()}.
+ */
+public class UuidV7Generator implements BeforeExecutionGenerator {
+
+    public static UUID next() {
+        UUID random = UUID.randomUUID();
+        long msb = (System.currentTimeMillis() << 16)
+                | 0x7000L
+                | (random.getMostSignificantBits() & 0x0FFFL);
+        // Variant bits are already set in the random half
+        return new UUID(msb, random.getLeastSignificantBits());
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue,
+                           EventType eventType) {
+        return next();
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+}
@@ -0,0 +1,202 @@
+package com.spring.grpc.common.kafka;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Re-drives dead-lettered records.
+ *
+ * One replay runs at a time on a background thread, reading the DLTs with its own
+ * consumer group and handing at most ratePerSecond records per second to the
+ * {@link Target}, so a large backlog does not swamp the main consumers or the
+ * database. DLT offsets are committed after the target has taken each polled
+ * batch, so a replay that stops part way resumes from there next time.
+ */
+@Slf4j
+public class DeadLetterReplayer {
+
+    private static final int MAX_IDLE_POLLS = 3;
+
+    private final ConsumerFactory<String, Object> consumerFactory;
+    private final String replayGroupId;
+    private final List<String> dltTopics;
+    private final Target target;
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("dlt-replay-"));
+    private final AtomicReference<ReplayJob> current = new AtomicReference<>();
+
+    /**
+     * @param groupId   the service's consumer group; replays commit under groupId-dlt-replay
+     * @param dltTopics topics to replay from
+     * @param target    where replayed records go
+     */
+    public DeadLetterReplayer(ConsumerFactory<String, Object> consumerFactory,
+                              String groupId,
+                              Collection<String> dltTopics,
+                              Target target) {
+        this.consumerFactory = consumerFactory;
+        this.replayGroupId = groupId + "-dlt-replay";
+        this.dltTopics = List.copyOf(dltTopics);
+        this.target = target;
+    }
+
+    /**
+     * Start a replay of up to maxRecords records.
+     *
+     * @throws IllegalStateException if a replay is already running
+     */
+    public ReplayStatus start(int maxRecords, int ratePerSecond) {
+        ReplayJob job = new ReplayJob(maxRecords, ratePerSecond);
+        ReplayJob previous = current.get();
+        if ((previous != null && previous.running()) || !current.compareAndSet(previous, job)) {
+            throw new IllegalStateException("A DLT replay is already running");
+        }
+        executor.execute(() -> run(job));
+        return job.status();
+    }
+
+    /**
+     * Status of the running or most recent replay, or null if none has run
+     */
+    public ReplayStatus status() {
+        ReplayJob job = current.get();
+        return job == null ? null : job.status();
+    }
+
+    public void stop() {
+        ReplayJob job = current.get();
+        if (job != null) {
+            job.stopRequested = true;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    private void run(ReplayJob job) {
+        Properties overrides = new Properties();
+        overrides.setProperty(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        overrides.setProperty(ConsumerConfig.MAX_POLL_RECORDS_CONFIG,
+                Integer.toString(Math.min(job.maxRecords, 500)));
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / job.ratePerSecond;
+        long nextSendAt = System.nanoTime();
+        int idlePolls = 0;
+
+        try (Consumer<String, Object> consumer =
+                     consumerFactory.createConsumer(replayGroupId, null, "-dlt-replay", overrides)) {
+            consumer.subscribe(dltTopics);
+
+            while (!job.stopRequested && job.replayed < job.maxRecords) {
+                ConsumerRecords<String, Object> records = consumer.poll(Duration.ofSeconds(1));
+                if (records.isEmpty()) {
+                    // Polls before the group assignment completes are empty too
+                    if (!consumer.assignment().isEmpty() && ++idlePolls >= MAX_IDLE_POLLS) {
+                        break;
+                    }
+                    continue;
+                }
+                idlePolls = 0;
+
+                List<ConsumerRecord<String, Object>> batch = new ArrayList<>();
+                Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+                for (ConsumerRecord<String, Object> record : records) {
+                    if (job.stopRequested || job.replayed + batch.size() >= job.maxRecords) {
+                        break;
+                    }
+                    long wait = nextSendAt - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    nextSendAt = Math.max(nextSendAt, System.nanoTime() - intervalNanos) + intervalNanos;
+
+                    batch.add(record);
+                    offsets.put(new TopicPartition(record.topic(), record.partition()),
+                            new OffsetAndMetadata(record.offset() + 1));
+                }
+
+                // Only commit once the target has taken every record of the batch
+                target.replay(batch);
+                consumer.commitSync(offsets);
+                job.replayed += batch.size();
+            }
+            job.finish(null);
+        } catch (Exception e) {
+            log.atError().addKeyValue("replayed", job.replayed).setCause(e).log("DLT replay failed");
+            job.finish(e.getMessage());
+        }
+
+        log.atInfo()
+                .addKeyValue("replayed", job.replayed)
+                .addKeyValue("ratePerSecond", job.ratePerSecond)
+                .log("DLT replay finished");
+    }
+
+    /**
+     * Takes a batch of dead-lettered records, e.g. by publishing them to their
+     * original topics or by applying them directly. Returns once they are done;
+     * throwing stops the replay before the batch's DLT offsets are committed.
+     */
+    @FunctionalInterface
+    public interface Target {
+        void replay(List<ConsumerRecord<String, Object>> records) throws Exception;
+    }
+
+    public record ReplayStatus(String state, long replayed, int maxRecords, int ratePerSecond,
+                               Instant startedAt, Instant finishedAt, String error) {
+    }
+
+    private static final class ReplayJob {
+        private final int maxRecords;
+        private final int ratePerSecond;
+        private final Instant startedAt = Instant.now();
+        private volatile long replayed;
+        private volatile boolean stopRequested;
+        private volatile Instant finishedAt;
+        private volatile String error;
+
+        ReplayJob(int maxRecords, int ratePerSecond) {
+            this.maxRecords = maxRecords;
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        boolean running() {
+            return finishedAt == null;
+        }
+
+        void finish(String error) {
+            this.error = error;
+            this.finishedAt = Instant.now();
+        }
+
+        ReplayStatus status() {
+            String state = running() ? "RUNNING" : error != null ? "FAILED" : stopRequested ? "STOPPED" : "COMPLETED";
+            return new ReplayStatus(state, replayed, maxRecords, ratePerSecond, startedAt, finishedAt, error);
+        }
+    }
+}
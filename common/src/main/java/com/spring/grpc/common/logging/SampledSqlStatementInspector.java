@@ -0,0 +1,35 @@
+package com.spring.grpc.common.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logs one in every N SQL statements instead of all of them, as a cheap
+ * replacement for show-sql / org.hibernate.SQL=DEBUG under load.
+ */
+@Slf4j
+public class SampledSqlStatementInspector implements StatementInspector {
+
+    private final int sampleRate;
+    private final AtomicLong counter = new AtomicLong();
+
+    /**
+     * @param sampleRate log every Nth statement; 0 disables SQL logging
+     */
+    public SampledSqlStatementInspector(int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        if (sampleRate > 0 && counter.incrementAndGet() % sampleRate == 0 && log.isInfoEnabled()) {
+            log.atInfo()
+                    .addKeyValue("sampleRate", sampleRate)
+                    .addKeyValue("sql", sql)
+                    .log("Sampled SQL statement");
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,27 @@
+package com.spring.grpc.common.logging;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Sampled SQL logging for every service that uses Hibernate
+ * (logging.sql.sample-rate).
+ */
+@AutoConfiguration
+@ConditionalOnClass(StatementInspector.class)
+public class SqlLoggingAutoConfiguration {
+
+    @Value("${logging.sql.sample-rate:100}")
+    private int sqlSampleRate;
+
+    @Bean
+    public HibernatePropertiesCustomizer sampledSqlLogging() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR,
+                new SampledSqlStatementInspector(sqlSampleRate));
+    }
+}
@@ -0,0 +1,63 @@
+package com.spring.grpc.common.money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Money as long minor units (cents for USD) plus an ISO 4217 currency code.
+ *
+ * Amounts are carried and summed as primitive longs, so arithmetic on the hot
+ * path is exact and allocation-free; overflow throws instead of wrapping.
+ * Conversions from and to doubles only exist for the legacy double fields of the
+ * APIs and events, which are still read and written during the migration.
+ */
+public final class Money {
+
+    private static final double[] POWERS_OF_TEN = {1, 10, 100, 1000, 10000};
+
+    private Money() {
+    }
+
+    /**
+     * Validated, upper-cased currency code, or the default if none is given
+     *
+     * @throws IllegalArgumentException if the code is not an ISO 4217 currency
+     */
+    public static String currencyOr(String currency, String defaultCurrency) {
+        if (currency == null || currency.isBlank()) {
+            return defaultCurrency;
+        }
+        return Currency.getInstance(currency.trim().toUpperCase()).getCurrencyCode();
+    }
+
+    public static int fractionDigits(String currency) {
+        return Math.max(Currency.getInstance(currency).getDefaultFractionDigits(), 0);
+    }
+
+    /**
+     * Unit price times quantity
+     *
+     * @throws ArithmeticException on overflow
+     */
+    public static long times(long unitMinor, int quantity) {
+        return Math.multiplyExact(unitMinor, quantity);
+    }
+
+    /**
+     * Legacy double amount in major units to minor units, rounded half-even
+     */
+    public static long toMinor(double amount, String currency) {
+        return BigDecimal.valueOf(amount)
+                .movePointRight(fractionDigits(currency))
+                .setScale(0, RoundingMode.HALF_EVEN)
+                .longValueExact();
+    }
+
+    /**
+     * Minor units to a double in major units, for the legacy fields only
+     */
+    public static double toMajor(long minor, String currency) {
+        return minor / POWERS_OF_TEN[fractionDigits(currency)];
+    }
+}
@@ -0,0 +1,40 @@
+package com.spring.grpc.common.tracing;
+
+import brave.Span;
+import brave.Tracer;
+import brave.propagation.TraceContext;
+
+/**
+ * Makes the rate-limited head sampling decision for a trace entering this service
+ * and stores it in the {@code sampling-keep} baggage field, which is propagated
+ * over HTTP, gRPC and Kafka so downstream services reach the same decision.
+ * A decision already made upstream is never overridden.
+ */
+public class HeadSamplingDecider {
+
+    private final Tracer tracer;
+    private final SamplingRateLimiter rateLimiter;
+
+    public HeadSamplingDecider(Tracer tracer, SamplingRateLimiter rateLimiter) {
+        this.tracer = tracer;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * @param key route or gRPC method the trace entered through
+     */
+    public void decide(String key) {
+        Span span = tracer.currentSpan();
+        if (span == null) {
+            return;
+        }
+        TraceContext context = span.context();
+        if (TailSamplingSpanHandler.SAMPLING_KEEP.getValue(context) != null) {
+            return;
+        }
+        String decision = rateLimiter.tryAcquire(key)
+                ? TailSamplingSpanHandler.KEEP
+                : TailSamplingSpanHandler.DROP;
+        TailSamplingSpanHandler.SAMPLING_KEEP.updateValue(context, decision);
+    }
+}
@@ -0,0 +1,39 @@
+package com.spring.grpc.common.tracing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Head sampling for HTTP requests, keyed by the first two path segments
+ * (e.g. /api/orders). Must run inside the server observation so a span is current.
+ */
+public class HeadSamplingFilter extends OncePerRequestFilter {
+
+    private final HeadSamplingDecider decider;
+
+    public HeadSamplingFilter(HeadSamplingDecider decider) {
+        this.decider = decider;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        decider.decide(routeKey(request.getRequestURI()));
+        filterChain.doFilter(request, response);
+    }
+
+    static String routeKey(String path) {
+        int first = path.indexOf('/', 1);
+        if (first < 0) {
+            return path;
+        }
+        int second = path.indexOf('/', first + 1);
+        return second < 0 ? path : path.substring(0, second);
+    }
+}
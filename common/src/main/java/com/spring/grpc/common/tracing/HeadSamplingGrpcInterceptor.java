@@ -0,0 +1,37 @@
+package com.spring.grpc.common.tracing;
+
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+
+/**
+ * Head sampling for gRPC calls, keyed by full method name.
+ *
+ * The decision is taken when the request message arrives rather than in
+ * interceptCall, because the tracing interceptor only puts the server span in
+ * scope around listener callbacks.
+ */
+public class HeadSamplingGrpcInterceptor implements ServerInterceptor {
+
+    private final HeadSamplingDecider decider;
+
+    public HeadSamplingGrpcInterceptor(HeadSamplingDecider decider) {
+        this.decider = decider;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        String method = call.getMethodDescriptor().getFullMethodName();
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(next.startCall(call, headers)) {
+            @Override
+            public void onMessage(ReqT message) {
+                decider.decide(method);
+                super.onMessage(message);
+            }
+        };
+    }
+}
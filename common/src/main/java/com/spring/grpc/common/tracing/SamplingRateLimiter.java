@@ -0,0 +1,46 @@
+package com.spring.grpc.common.tracing;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps how many traces per second are kept for each key (route, gRPC method or
+ * root span name).
+ */
+public class SamplingRateLimiter {
+
+    private static final long WINDOW_NANOS = 1_000_000_000L;
+    private static final int MAX_KEYS = 1000;
+    private static final String OVERFLOW_KEY = "_other";
+
+    private final int tracesPerSecond;
+    private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+    public SamplingRateLimiter(int tracesPerSecond) {
+        this.tracesPerSecond = tracesPerSecond;
+    }
+
+    public boolean tryAcquire(String key) {
+        Window window = windows.get(key);
+        if (window == null) {
+            // Keys come from span names, so guard against unbounded cardinality
+            String effectiveKey = windows.size() >= MAX_KEYS ? OVERFLOW_KEY : key;
+            window = windows.computeIfAbsent(effectiveKey, k -> new Window());
+        }
+        return window.tryAcquire(System.nanoTime(), tracesPerSecond);
+    }
+
+    private static final class Window {
+        private final AtomicLong start = new AtomicLong(System.nanoTime());
+        private final AtomicInteger count = new AtomicInteger();
+
+        boolean tryAcquire(long now, int limit) {
+            long windowStart = start.get();
+            if (now - windowStart >= WINDOW_NANOS && start.compareAndSet(windowStart, now)) {
+                count.set(0);
+            }
+            return count.incrementAndGet() <= limit;
+        }
+    }
+}
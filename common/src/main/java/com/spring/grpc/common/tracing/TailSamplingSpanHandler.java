@@ -0,0 +1,153 @@
+package com.spring.grpc.common.tracing;
+
+import brave.baggage.BaggageField;
+import brave.handler.MutableSpan;
+import brave.handler.SpanHandler;
+import brave.propagation.TraceContext;
+import com.spring.grpc.common.cache.GenerationalCache;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tail-based sampling in front of the Zipkin reporter.
+ *
+ * Spans are buffered per trace until the local root span finishes, then the whole
+ * local trace is either forwarded to the reporting handlers or dropped:
+ * <ul>
+ *   <li>kept if any span recorded an error</li>
+ *   <li>kept if the local root took longer than the slow threshold</li>
+ *   <li>otherwise the head decision carried in the {@code sampling-keep} baggage
+ *       field wins, so every service on the trace agrees</li>
+ *   <li>with no head decision, a per-root-name rate limit decides</li>
+ * </ul>
+ * Registered first among the span handlers; returning false stops Brave from
+ * passing the span on, and kept spans are replayed to the other handlers later.
+ *
+ * Both the buffered traces and the decisions are bounded by max-pending-traces;
+ * once full, the traces untouched the longest are dropped first.
+ */
+public class TailSamplingSpanHandler extends SpanHandler {
+
+    public static final BaggageField SAMPLING_KEEP = BaggageField.create("sampling-keep");
+    public static final String KEEP = "1";
+    public static final String DROP = "0";
+
+    private final SamplingRateLimiter rateLimiter;
+    private final long slowThresholdMicros;
+    private final int maxSpansPerTrace;
+    private final ObjectProvider<SpanHandler> spanHandlers;
+
+    private final GenerationalCache<Long, PendingTrace> pending;
+    // Decisions for recently finished roots, for child spans that end after their root
+    private final GenerationalCache<Long, Boolean> decided;
+    private volatile List<SpanHandler> downstream;
+
+    public TailSamplingSpanHandler(SamplingRateLimiter rateLimiter,
+                                   long slowThresholdMillis,
+                                   int maxPendingTraces,
+                                   int maxSpansPerTrace,
+                                   ObjectProvider<SpanHandler> spanHandlers) {
+        this.rateLimiter = rateLimiter;
+        this.slowThresholdMicros = TimeUnit.MILLISECONDS.toMicros(slowThresholdMillis);
+        this.maxSpansPerTrace = maxSpansPerTrace;
+        this.spanHandlers = spanHandlers;
+        this.pending = new GenerationalCache<>(maxPendingTraces);
+        this.decided = new GenerationalCache<>(maxPendingTraces);
+    }
+
+    @Override
+    public boolean end(TraceContext context, MutableSpan span, Cause cause) {
+        if (cause != Cause.FINISHED) {
+            return true;
+        }
+
+        Long traceId = context.traceId();
+        Boolean decision = decided.get(traceId);
+        if (decision != null) {
+            if (decision) {
+                forward(context, span);
+            }
+            return false;
+        }
+
+        if (context.isLocalRoot()) {
+            PendingTrace trace = pending.remove(traceId);
+            boolean keep = shouldKeep(context, span, trace);
+            decided.put(traceId, keep);
+            if (keep) {
+                if (trace != null) {
+                    trace.forwardTo(this);
+                }
+                forward(context, span);
+            }
+            return false;
+        }
+
+        pending.computeIfAbsent(traceId, id -> new PendingTrace()).add(context, span, maxSpansPerTrace);
+        return false;
+    }
+
+    private boolean shouldKeep(TraceContext context, MutableSpan root, PendingTrace trace) {
+        if (isError(root) || (trace != null && trace.hasError())) {
+            return true;
+        }
+        if (root.finishTimestamp() - root.startTimestamp() >= slowThresholdMicros) {
+            return true;
+        }
+        String headDecision = SAMPLING_KEEP.getValue(context);
+        if (headDecision != null) {
+            return KEEP.equals(headDecision);
+        }
+        String name = root.name();
+        return rateLimiter.tryAcquire(name != null ? name : "unknown");
+    }
+
+    void forward(TraceContext context, MutableSpan span) {
+        for (SpanHandler handler : downstream()) {
+            if (!handler.end(context, span, Cause.FINISHED)) {
+                return;
+            }
+        }
+    }
+
+    private List<SpanHandler> downstream() {
+        List<SpanHandler> handlers = downstream;
+        if (handlers == null) {
+            // Resolved lazily: the reporting handlers and this one are all built for the same Tracing bean
+            handlers = spanHandlers.orderedStream().filter(handler -> handler != this).toList();
+            downstream = handlers;
+        }
+        return handlers;
+    }
+
+    private static boolean isError(MutableSpan span) {
+        return span.error() != null || span.tag("error") != null;
+    }
+
+    private static final class PendingTrace {
+        private final List<TraceContext> contexts = new ArrayList<>();
+        private final List<MutableSpan> spans = new ArrayList<>();
+        private boolean error;
+
+        synchronized void add(TraceContext context, MutableSpan span, int maxSpans) {
+            error |= isError(span);
+            if (spans.size() < maxSpans) {
+                contexts.add(context);
+                spans.add(span);
+            }
+        }
+
+        synchronized boolean hasError() {
+            return error;
+        }
+
+        synchronized void forwardTo(TailSamplingSpanHandler handler) {
+            for (int i = 0; i < spans.size(); i++) {
+                handler.forward(contexts.get(i), spans.get(i));
+            }
+        }
+    }
+}
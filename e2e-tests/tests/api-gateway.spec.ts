@@ -0,0 +1,140 @@
+import { test, expect } from '@playwright/test';
+import { GatewayClient } from '../utils/fixtures';
+import { generateUserId } from '../utils/test-helpers';
+
+/**
+ * API Gateway Session E2E Tests
+ *
+ * Tests the Redis-backed session API:
+ * - POST /api/session/login - Create session
+ * - GET /api/session/info - Get session info
+ * - PUT /api/session/attribute - Set session attribute
+ * - GET /api/session/attribute/{key} - Get session attribute
+ * - GET /api/session/count - Count active sessions
+ * - POST /api/session/logout - Invalidate session
+ *
+ * Run against the JVM gateway (default, port 8080) and against the native image
+ * with GATEWAY_URL=http://localhost:8090; both must pass the same suite.
+ */
+
+test.describe('API Gateway Session API', () => {
+
+  test.beforeAll(async ({ request }) => {
+    // Health check before running tests
+    const gateway = new GatewayClient(request);
+    const health = await gateway.healthCheck();
+    expect(health.redis).toBe('UP');
+  });
+
+  test.describe('Health Check', () => {
+
+    test('should return healthy status with Redis up', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+      const health = await gateway.healthCheck();
+
+      expect(health.status).toBe('UP');
+      expect(health.redis).toBe('UP');
+    });
+
+  });
+
+  test.describe('Login', () => {
+
+    test('should create a session on login', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+      const userId = generateUserId();
+
+      const login = await gateway.login(userId);
+
+      expect(login.sessionId).toBeDefined();
+      expect(login.userId).toBe(userId);
+      expect(login.message).toBe('Login successful');
+    });
+
+    test('should store user info in the session', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+      const userId = generateUserId();
+      const before = Date.now();
+
+      const login = await gateway.login(userId);
+      const info = await gateway.getSessionInfo();
+
+      // Read back from Redis through the session cookie
+      expect(info.sessionId).toBe(login.sessionId);
+      expect(info.userId).toBe(userId);
+      expect(info.role).toBe('USER');
+      expect(info.loginTime).toBeGreaterThanOrEqual(before - 5000);
+      expect(info.maxInactiveInterval).toBe(1800);
+      expect(info.lastAccessedTime).toBeGreaterThanOrEqual(info.creationTime);
+    });
+
+    test('should count the new session as active', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+
+      await gateway.login(generateUserId());
+      const count = await gateway.getSessionCount();
+
+      expect(count).toBeGreaterThan(0);
+    });
+
+  });
+
+  test.describe('Session Attributes', () => {
+
+    test('should set and get an attribute', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+      await gateway.login(generateUserId());
+
+      const set = await gateway.setAttribute('theme', 'dark');
+      expect(set.key).toBe('theme');
+      expect(set.value).toBe('dark');
+
+      const attribute = await gateway.getAttribute('theme');
+      expect(attribute.key).toBe('theme');
+      expect(attribute.value).toBe('dark');
+    });
+
+    test('should overwrite an attribute', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+      await gateway.login(generateUserId());
+
+      await gateway.setAttribute('theme', 'dark');
+      await gateway.setAttribute('theme', 'light');
+
+      const attribute = await gateway.getAttribute('theme');
+      expect(attribute.value).toBe('light');
+    });
+
+    test('should return null for an unknown attribute', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+      await gateway.login(generateUserId());
+
+      const attribute = await gateway.getAttribute('missing');
+      expect(attribute.value).toBeNull();
+    });
+
+  });
+
+  test.describe('Logout', () => {
+
+    test('should invalidate the session', async ({ request }) => {
+      const gateway = new GatewayClient(request);
+      const login = await gateway.login(generateUserId());
+      await gateway.setAttribute('theme', 'dark');
+
+      const logout = await gateway.logout();
+      expect(logout.message).toBe('Logout successful');
+      expect(logout.sessionId).toBe(login.sessionId);
+
+      // The next call starts a fresh session without the old attributes
+      const info = await gateway.getSessionInfo();
+      expect(info.sessionId).not.toBe(login.sessionId);
+      expect(info.userId).toBeNull();
+
+      const attribute = await gateway.getAttribute('theme');
+      expect(attribute.value).toBeNull();
+    });
+
+  });
+
+});
@@ -159,14 +159,22 @@ test.describe('E2E Integration Tests', () => {
       
       console.log(`📦 Order created: ${order.id}, Status: ${order.status}`);
       
-      // Wait for payment
-      await sleep(5000);
+      // Wait for the payment result to move the order out of PENDING
+      let status = order.status;
+      await waitFor(async () => {
+        status = (await orderService.getOrderById(order.id)).status;
+        return status !== 'PENDING';
+      }, 30000, 500);
+      
+      // The simulated gateway declines some payments, which cancels the order
+      test.skip(status === 'CANCELLED', 'Payment failed, order was cancelled');
+      expect(status).toBe('CONFIRMED');
       
       // Update order status to PROCESSING
       const processingOrder = await orderService.updateOrderStatus(order.id, 'PROCESSING');
       expect(processingOrder.status).toBe('PROCESSING');
       
-      console.log(`🔄 Order status updated: PENDING → PROCESSING`);
+      console.log(`🔄 Order status updated: CONFIRMED → PROCESSING`);
       
       // Update order status to COMPLETED
       const completedOrder = await orderService.updateOrderStatus(order.id, 'COMPLETED');
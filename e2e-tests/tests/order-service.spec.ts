@@ -213,6 +213,8 @@ test.describe('Order Service API', () => {
     test('should get orders by COMPLETED status', async ({ orderService }) => {
       // Create and complete an order
       const order = await orderService.createOrder(TestDataFactory.createOrderRequest());
+      await orderService.updateOrderStatus(order.id, 'CONFIRMED');
+      await orderService.updateOrderStatus(order.id, 'PROCESSING');
       await orderService.updateOrderStatus(order.id, 'COMPLETED');
       
       // Get completed orders
@@ -229,22 +231,24 @@ test.describe('Order Service API', () => {
   
   test.describe('Update Order Status', () => {
     
-    test('should update order status from PENDING to PROCESSING', async ({ orderService }) => {
+    test('should update order status from PENDING to CONFIRMED', async ({ orderService }) => {
       // Create order
       const order = await orderService.createOrder(TestDataFactory.createOrderRequest());
       expect(order.status).toBe('PENDING');
       
       // Update status
-      const updated = await orderService.updateOrderStatus(order.id, 'PROCESSING');
+      const updated = await orderService.updateOrderStatus(order.id, 'CONFIRMED');
       
       // Assert
       expect(updated.id).toBe(order.id);
-      expect(updated.status).toBe('PROCESSING');
+      expect(updated.status).toBe('CONFIRMED');
       expect(updated.updatedAt).not.toBe(order.updatedAt);
     });
     
     test('should update order status to COMPLETED', async ({ orderService }) => {
       const order = await orderService.createOrder(TestDataFactory.createOrderRequest());
+      await orderService.updateOrderStatus(order.id, 'CONFIRMED');
+      await orderService.updateOrderStatus(order.id, 'PROCESSING');
       const updated = await orderService.updateOrderStatus(order.id, 'COMPLETED');
       
       expect(updated.status).toBe('COMPLETED');
@@ -257,6 +261,15 @@ test.describe('Order Service API', () => {
       expect(updated.status).toBe('CANCELLED');
     });
     
+    test('should return 409 when skipping a status', async ({ orderService, request }) => {
+      const order = await orderService.createOrder(TestDataFactory.createOrderRequest());
+      const response = await request.put(`http://localhost:8081/api/orders/${order.id}/status`, {
+        data: { status: 'COMPLETED' }
+      });
+      
+      expect(response.status()).toBe(409);
+    });
+    
     test('should return 404 when updating non-existent order', async ({ request }) => {
       const response = await request.put('http://localhost:8081/api/orders/non-existent/status', {
         data: { status: 'COMPLETED' }
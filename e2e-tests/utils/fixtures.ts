@@ -5,7 +5,9 @@ import {
   CreateOrderRequest, 
   Payment, 
   PaymentStats,
-  PageableResponse 
+  PageableResponse,
+  LoginResponse,
+  SessionInfo
 } from '../utils/types';
 
 /**
@@ -130,6 +132,67 @@ export class PaymentServiceClient {
   }
 }
 
+/**
+ * API Gateway Session Client
+ *
+ * The session lives in the SESSION cookie of the request context, so calls made
+ * with the same context share one session. GATEWAY_URL points the client at
+ * another gateway, e.g. the native image.
+ */
+export class GatewayClient {
+  private baseURL = `${process.env.GATEWAY_URL ?? 'http://localhost:8080'}/api`;
+  
+  constructor(private request: APIRequestContext) {}
+  
+  async login(username: string): Promise<LoginResponse> {
+    const response = await this.request.post(`${this.baseURL}/session/login`, {
+      data: { username, password: 'password' }
+    });
+    
+    expect(response.ok()).toBeTruthy();
+    return await response.json();
+  }
+  
+  async getSessionInfo(): Promise<SessionInfo> {
+    const response = await this.request.get(`${this.baseURL}/session/info`);
+    expect(response.ok()).toBeTruthy();
+    return await response.json();
+  }
+  
+  async logout(): Promise<{ message: string; sessionId: string }> {
+    const response = await this.request.post(`${this.baseURL}/session/logout`);
+    expect(response.ok()).toBeTruthy();
+    return await response.json();
+  }
+  
+  async setAttribute(key: string, value: string): Promise<{ message: string; key: string; value: string }> {
+    const response = await this.request.put(`${this.baseURL}/session/attribute`, {
+      params: { key, value }
+    });
+    
+    expect(response.ok()).toBeTruthy();
+    return await response.json();
+  }
+  
+  async getAttribute(key: string): Promise<{ key: string; value: unknown }> {
+    const response = await this.request.get(`${this.baseURL}/session/attribute/${key}`);
+    expect(response.ok()).toBeTruthy();
+    return await response.json();
+  }
+  
+  async getSessionCount(): Promise<number> {
+    const response = await this.request.get(`${this.baseURL}/session/count`);
+    expect(response.ok()).toBeTruthy();
+    return (await response.json()).activeSessionCount;
+  }
+  
+  async healthCheck(): Promise<{ status: string; redis: string }> {
+    const response = await this.request.get(`${this.baseURL}/health`);
+    expect(response.ok()).toBeTruthy();
+    return await response.json();
+  }
+}
+
 /**
  * Test data factories
  */
@@ -80,6 +80,26 @@ export interface PaymentStats {
   successRate: number;
 }
 
+/**
+ * API gateway session types
+ */
+
+export interface LoginResponse {
+  sessionId: string;
+  userId: string;
+  message: string;
+}
+
+export interface SessionInfo {
+  sessionId: string;
+  userId: string | null;
+  loginTime: number | null;
+  role: string | null;
+  maxInactiveInterval: number;
+  creationTime: number;
+  lastAccessedTime: number;
+}
+
 /**
  * Common error response
  */
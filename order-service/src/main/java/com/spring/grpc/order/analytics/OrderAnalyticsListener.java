@@ -0,0 +1,113 @@
+package com.spring.grpc.order.analytics;
+
+import com.spring.grpc.common.money.Money;
+import com.spring.grpc.order.analytics.OrderWindowStore.ProductAmount;
+import com.spring.grpc.order.dto.OrderEvent;
+import com.spring.grpc.order.dto.PaymentResultEvent;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds order and payment events into the {@link OrderWindowStore}.
+ *
+ * Like the watch listener, every replica reads the topics under its own
+ * throwaway consumer group and never commits, so each replica holds the full
+ * windows and can answer queries alone. On assignment it seeks back by the
+ * analytics horizon, which refills the windows after a restart without touching
+ * the database.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderAnalyticsListener implements ConsumerSeekAware {
+
+    private final OrderWindowStore store;
+
+    @Value("${order.money.default-currency:USD}")
+    private String defaultCurrency;
+
+    @KafkaListener(
+            topics = {"${kafka.topics.order-created}", "${kafka.topics.order-updated}"},
+            groupId = "${spring.application.name}-analytics-${random.uuid}",
+            containerFactory = "orderUpdateListenerContainerFactory"
+    )
+    public void handleOrderEvents(List<OrderEvent> events) {
+        for (OrderEvent event : events) {
+            if (event == null || event.getStatus() == null) {
+                continue;
+            }
+            List<ProductAmount> products = products(event);
+            if ("CREATED".equals(event.getEventType())) {
+                store.recordCreated(products, instantOf(event.getCreatedAt()));
+            } else {
+                store.recordStatus(products, event.getStatus(), instantOf(event.getUpdatedAt()));
+            }
+        }
+    }
+
+    @KafkaListener(
+            topics = {"${kafka.topics.payment-completed}", "${kafka.topics.payment-failed}"},
+            groupId = "${spring.application.name}-analytics-${random.uuid}",
+            containerFactory = "orderUpdateListenerContainerFactory",
+            properties = "spring.json.value.default.type=com.spring.grpc.order.dto.PaymentResultEvent"
+    )
+    public void handlePaymentResults(List<PaymentResultEvent> events) {
+        for (PaymentResultEvent event : events) {
+            if (event == null || event.getStatus() == null) {
+                continue;
+            }
+            store.recordPayment("COMPLETED".equals(event.getStatus()), instantOf(event.getProcessedAt()));
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToTimestamp(assignments.keySet(), System.currentTimeMillis() - store.horizon().toMillis());
+    }
+
+    /**
+     * The order's amount per product, from its lines. Events without lines (from
+     * before lines, or updates from before they carried them) put the whole order
+     * on its first product.
+     */
+    private List<ProductAmount> products(OrderEvent event) {
+        if (event.getLines() == null || event.getLines().isEmpty()) {
+            return List.of(new ProductAmount(event.getProductId(), amountMinor(event)));
+        }
+        boolean counted = defaultCurrency.equals(event.getCurrency());
+        // A product on several lines counts once, with the sum of its lines
+        Map<String, Long> byProduct = new LinkedHashMap<>();
+        for (OrderEvent.Line line : event.getLines()) {
+            byProduct.merge(line.getProductId(), counted ? line.getTotalAmountMinor() : 0L, Long::sum);
+        }
+        List<ProductAmount> products = new ArrayList<>(byProduct.size());
+        byProduct.forEach((productId, amountMinor) -> products.add(new ProductAmount(productId, amountMinor)));
+        return products;
+    }
+
+    /**
+     * Amount in minor units of the default currency; orders in other currencies
+     * are counted but add no amount
+     */
+    private long amountMinor(OrderEvent event) {
+        if (event.getCurrency() == null) {
+            return event.getTotalAmount() != null ? Money.toMinor(event.getTotalAmount(), defaultCurrency) : 0L;
+        }
+        return defaultCurrency.equals(event.getCurrency()) ? event.getTotalAmountMinor() : 0L;
+    }
+
+    private static Instant instantOf(LocalDateTime time) {
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant() : Instant.now();
+    }
+}
@@ -0,0 +1,347 @@
+package com.spring.grpc.order.analytics;
+
+import com.spring.grpc.common.money.Money;
+import com.spring.grpc.order.analytics.WindowSnapshot.Counts;
+import com.spring.grpc.order.analytics.WindowSnapshot.ProductCounts;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Windowed order and payment counters, kept off-heap.
+ *
+ * Time is cut into fixed buckets (order.analytics.bucket-size) held in a ring that
+ * covers order.analytics.horizon. Each bucket is a flat block of longs in one
+ * direct buffer: a few global payment counters, a row of order counters, then one
+ * row of counters per product slot. Products are mapped to int slots on first
+ * sight; beyond order.analytics.max-products they share the "(other)" slot. Memory
+ * is fixed at startup, buckets x (products x fields) longs, whatever the event rate.
+ *
+ * An order of several products counts once in the order row and once in the row
+ * of each of its products, each with that product's share of the amount. So the
+ * product rows do not add up to the order row.
+ *
+ * Events are bucketed by their own timestamp. A bucket is zeroed when the ring
+ * wraps onto it; events older than the horizon are counted as late and dropped.
+ * Sliding windows sum the buckets ending now, tumbling windows the last complete
+ * aligned window. Amounts are kept in minor units of order.money.default-currency.
+ *
+ * Writes come from the consumer threads one batch at a time and reads are rare,
+ * so a single monitor guards the buffer.
+ */
+@Component
+public class OrderWindowStore {
+
+    public static final String OTHER_PRODUCT = "(other)";
+
+    // Per product fields, also the fields of the order row
+    private static final int CREATED = 0;
+    private static final int CONFIRMED = 1;
+    private static final int PROCESSING = 2;
+    private static final int COMPLETED = 3;
+    private static final int CANCELLED = 4;
+    private static final int BOOKED_MINOR = 5;
+    private static final int REVENUE_MINOR = 6;
+    private static final int PRODUCT_FIELDS = 7;
+
+    // Global fields, at the start of each bucket
+    private static final int PAYMENTS_COMPLETED = 0;
+    private static final int PAYMENTS_FAILED = 1;
+    private static final int GLOBAL_FIELDS = 2;
+    // The order row follows the global fields, the product rows follow it
+    private static final int ORDER_ROW = GLOBAL_FIELDS;
+
+    private final long bucketMillis;
+    private final int bucketCount;
+    private final int maxProducts;
+    private final int bucketStride;
+    private final LongBuffer cells;
+    private final long[] bucketNumbers;
+    private final Map<String, Integer> productSlots = new HashMap<>();
+    private final String[] productIds;
+    private final Counter lateEvents;
+    private final String currency;
+
+    public OrderWindowStore(@Value("${order.analytics.bucket-size:10s}") Duration bucketSize,
+                            @Value("${order.analytics.horizon:15m}") Duration horizon,
+                            @Value("${order.analytics.max-products:1024}") int maxProducts,
+                            @Value("${order.analytics.gauge-window:1m}") Duration gaugeWindow,
+                            @Value("${order.money.default-currency:USD}") String currency,
+                            MeterRegistry registry) {
+        this.currency = currency;
+        this.bucketMillis = bucketSize.toMillis();
+        this.bucketCount = (int) Math.max(1, horizon.toMillis() / bucketMillis);
+        this.maxProducts = maxProducts;
+        this.bucketStride = GLOBAL_FIELDS + (1 + maxProducts) * PRODUCT_FIELDS;
+        this.cells = ByteBuffer.allocateDirect(Math.multiplyExact(Math.multiplyExact(bucketCount, bucketStride), Long.BYTES))
+                .order(ByteOrder.nativeOrder())
+                .asLongBuffer();
+        this.bucketNumbers = new long[bucketCount];
+        Arrays.fill(bucketNumbers, -1L);
+        this.productIds = new String[maxProducts];
+        productIds[0] = OTHER_PRODUCT;
+        productSlots.put(OTHER_PRODUCT, 0);
+
+        this.lateEvents = Counter.builder("order.analytics.late.events")
+                .description("Events older than the analytics horizon, dropped")
+                .register(registry);
+        registerGauges(registry, gaugeWindow);
+    }
+
+    /**
+     * Count a new order
+     *
+     * @param products the order's amount per product, one entry per product
+     */
+    public synchronized void recordCreated(List<ProductAmount> products, Instant at) {
+        int base = bucketBase(at);
+        if (base >= 0) {
+            count(base, products, CREATED, BOOKED_MINOR);
+        }
+    }
+
+    /**
+     * Count a status change. CONFIRMED means the order was paid, so its amount
+     * counts as revenue.
+     *
+     * @param products the order's amount per product, one entry per product
+     */
+    public synchronized void recordStatus(List<ProductAmount> products, String status, Instant at) {
+        int field = switch (status) {
+            case "CONFIRMED" -> CONFIRMED;
+            case "PROCESSING" -> PROCESSING;
+            case "COMPLETED" -> COMPLETED;
+            case "CANCELLED" -> CANCELLED;
+            default -> -1;
+        };
+        if (field < 0) {
+            return;
+        }
+        int base = bucketBase(at);
+        if (base >= 0) {
+            count(base, products, field, field == CONFIRMED ? REVENUE_MINOR : -1);
+        }
+    }
+
+    /**
+     * Count the order once in the order row and once per product, adding the
+     * amounts to amountField unless it is -1
+     */
+    private void count(int base, List<ProductAmount> products, int field, int amountField) {
+        int orderRow = base + ORDER_ROW;
+        add(orderRow + field, 1);
+        for (ProductAmount product : products) {
+            int row = productRow(base, slotOf(product.productId()));
+            add(row + field, 1);
+            if (amountField >= 0) {
+                add(orderRow + amountField, product.amountMinor());
+                add(row + amountField, product.amountMinor());
+            }
+        }
+    }
+
+    public synchronized void recordPayment(boolean completed, Instant at) {
+        int base = bucketBase(at);
+        if (base >= 0) {
+            add(base + (completed ? PAYMENTS_COMPLETED : PAYMENTS_FAILED), 1);
+        }
+    }
+
+    public Duration horizon() {
+        return Duration.ofMillis(bucketMillis * bucketCount);
+    }
+
+    /**
+     * Window of the given length ending now. The current bucket is included, so
+     * the window reaches back by whole buckets.
+     *
+     * @throws IllegalArgumentException if the window is not positive or exceeds the horizon
+     */
+    public WindowSnapshot sliding(Duration window, int topProducts) {
+        int buckets = bucketsIn(window);
+        long now = System.currentTimeMillis();
+        long current = now / bucketMillis;
+        return aggregate(current - buckets + 1, current + 1, now, topProducts);
+    }
+
+    /**
+     * Last complete window of the given length, aligned to multiples of it.
+     *
+     * @throws IllegalArgumentException if the window is not a multiple of the bucket size
+     *                                  or is longer than half the horizon
+     */
+    public WindowSnapshot tumbling(Duration window, int topProducts) {
+        int buckets = bucketsIn(window);
+        if (window.toMillis() % bucketMillis != 0 || buckets * 2L > bucketCount) {
+            throw new IllegalArgumentException("Tumbling window must be a multiple of " + Duration.ofMillis(bucketMillis)
+                    + " and at most " + Duration.ofMillis(bucketMillis * (bucketCount / 2)));
+        }
+        long current = System.currentTimeMillis() / bucketMillis;
+        long end = Math.floorDiv(current, buckets) * buckets;
+        return aggregate(end - buckets, end, end * bucketMillis, topProducts);
+    }
+
+    private int bucketsIn(Duration window) {
+        long millis = window.toMillis();
+        if (millis <= 0 || millis > bucketMillis * bucketCount) {
+            throw new IllegalArgumentException("Window must be between 1ms and " + horizon());
+        }
+        return (int) ((millis + bucketMillis - 1) / bucketMillis);
+    }
+
+    /**
+     * Sum buckets [from, to). Per product rows are only built when topProducts > 0.
+     */
+    private synchronized WindowSnapshot aggregate(long from, long to, long endMillis, int topProducts) {
+        long[] global = new long[GLOBAL_FIELDS];
+        long[] totals = new long[PRODUCT_FIELDS];
+        int products = productSlots.size();
+        long[][] perProduct = topProducts > 0 ? new long[products][PRODUCT_FIELDS] : null;
+
+        for (long bucket = from; bucket < to; bucket++) {
+            int ring = (int) Math.floorMod(bucket, (long) bucketCount);
+            if (bucketNumbers[ring] != bucket) {
+                continue;
+            }
+            int base = ring * bucketStride;
+            for (int field = 0; field < GLOBAL_FIELDS; field++) {
+                global[field] += cells.get(base + field);
+            }
+            for (int field = 0; field < PRODUCT_FIELDS; field++) {
+                totals[field] += cells.get(base + ORDER_ROW + field);
+            }
+            for (int slot = 0; perProduct != null && slot < products; slot++) {
+                int row = productRow(base, slot);
+                for (int field = 0; field < PRODUCT_FIELDS; field++) {
+                    perProduct[slot][field] += cells.get(row + field);
+                }
+            }
+        }
+
+        List<ProductCounts> top = new ArrayList<>();
+        if (perProduct != null) {
+            for (int slot = 0; slot < products; slot++) {
+                if (perProduct[slot][CREATED] > 0 || perProduct[slot][CONFIRMED] > 0 || perProduct[slot][CANCELLED] > 0) {
+                    top.add(new ProductCounts(productIds[slot], counts(perProduct[slot])));
+                }
+            }
+            top.sort(Comparator.comparingLong((ProductCounts p) -> p.counts().created())
+                    .thenComparingLong(p -> p.counts().revenueMinor())
+                    .reversed());
+            if (top.size() > topProducts) {
+                top = new ArrayList<>(top.subList(0, topProducts));
+            }
+        }
+
+        Instant start = Instant.ofEpochMilli(from * bucketMillis);
+        Instant end = Instant.ofEpochMilli(endMillis);
+        long settled = global[PAYMENTS_COMPLETED] + global[PAYMENTS_FAILED];
+        double minutes = Math.max(Duration.between(start, end).toMillis(), 1L) / 60000.0;
+        return new WindowSnapshot(start, end, counts(totals),
+                totals[CREATED] / minutes,
+                global[PAYMENTS_COMPLETED], global[PAYMENTS_FAILED],
+                settled == 0 ? 0.0 : (double) global[PAYMENTS_FAILED] / settled,
+                top);
+    }
+
+    /**
+     * Offset of the bucket holding the given time, zeroing it if the ring has
+     * wrapped onto it; -1 if the time is beyond the horizon
+     */
+    private int bucketBase(Instant at) {
+        long current = System.currentTimeMillis() / bucketMillis;
+        // Clock skew: an event from the future counts now
+        long bucket = Math.min(at.toEpochMilli() / bucketMillis, current);
+        if (bucket <= current - bucketCount) {
+            lateEvents.increment();
+            return -1;
+        }
+        int ring = (int) Math.floorMod(bucket, (long) bucketCount);
+        int base = ring * bucketStride;
+        if (bucketNumbers[ring] != bucket) {
+            for (int i = 0; i < bucketStride; i++) {
+                cells.put(base + i, 0L);
+            }
+            bucketNumbers[ring] = bucket;
+        }
+        return base;
+    }
+
+    private static int productRow(int base, int slot) {
+        return base + ORDER_ROW + (1 + slot) * PRODUCT_FIELDS;
+    }
+
+    private int slotOf(String productId) {
+        if (productId == null) {
+            return 0;
+        }
+        Integer slot = productSlots.get(productId);
+        if (slot != null) {
+            return slot;
+        }
+        if (productSlots.size() >= maxProducts) {
+            return 0;
+        }
+        int next = productSlots.size();
+        productSlots.put(productId, next);
+        productIds[next] = productId;
+        return next;
+    }
+
+    private void add(int index, long delta) {
+        cells.put(index, cells.get(index) + delta);
+    }
+
+    private Counts counts(long[] fields) {
+        return new Counts(fields[CREATED], fields[CONFIRMED], fields[PROCESSING], fields[COMPLETED],
+                fields[CANCELLED], fields[BOOKED_MINOR], fields[REVENUE_MINOR], currency,
+                Money.toMajor(fields[BOOKED_MINOR], currency), Money.toMajor(fields[REVENUE_MINOR], currency));
+    }
+
+    private void registerGauges(MeterRegistry registry, Duration window) {
+        String tag = window.toString();
+        gauge(registry, "order.analytics.orders.rate", "Orders created per minute", tag, window,
+                WindowSnapshot::ordersPerMinute);
+        gauge(registry, "order.analytics.revenue", "Amount of orders confirmed (paid)", tag, window,
+                snapshot -> snapshot.totals().revenue());
+        gauge(registry, "order.analytics.payment.failure.rate", "Failed over settled payments", tag, window,
+                WindowSnapshot::paymentFailureRate);
+        for (String status : List.of("CONFIRMED", "PROCESSING", "COMPLETED", "CANCELLED")) {
+            Gauge.builder("order.analytics.status.changes", this, store -> store.sliding(window, 0).totals().ofStatus(status))
+                    .description("Orders moved to a status in the sliding window")
+                    .tag("window", tag)
+                    .tag("status", status)
+                    .register(registry);
+        }
+    }
+
+    private void gauge(MeterRegistry registry, String name, String description, String tag, Duration window,
+                       ToDoubleFunction<WindowSnapshot> value) {
+        Gauge.builder(name, this, store -> value.applyAsDouble(store.sliding(window, 0)))
+                .description(description + " in the sliding window")
+                .tag("window", tag)
+                .register(registry);
+    }
+
+    /**
+     * A product of an order and its share of the order amount, in minor units of
+     * order.money.default-currency
+     */
+    public record ProductAmount(String productId, long amountMinor) {
+    }
+}
@@ -0,0 +1,42 @@
+package com.spring.grpc.order.analytics;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Aggregates of one window, as returned by {@link OrderWindowStore}
+ *
+ * @param products busiest products by orders created, empty unless requested
+ */
+public record WindowSnapshot(Instant start,
+                             Instant end,
+                             Counts totals,
+                             double ordersPerMinute,
+                             long paymentsCompleted,
+                             long paymentsFailed,
+                             double paymentFailureRate,
+                             List<ProductCounts> products) {
+
+    /**
+     * Orders created and status changes in the window. booked is the amount of
+     * orders created, revenue the amount of orders confirmed (paid), both in minor
+     * units of currency and, for older clients, as doubles in major units.
+     */
+    public record Counts(long created, long confirmed, long processing, long completed, long cancelled,
+                         long bookedMinor, long revenueMinor, String currency,
+                         double booked, double revenue) {
+
+        public long ofStatus(String status) {
+            return switch (status) {
+                case "CONFIRMED" -> confirmed;
+                case "PROCESSING" -> processing;
+                case "COMPLETED" -> completed;
+                case "CANCELLED" -> cancelled;
+                default -> 0;
+            };
+        }
+    }
+
+    public record ProductCounts(String productId, Counts counts) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.spring.grpc.order.catalog;
+
+import com.spring.grpc.order.entity.Product;
+
+/**
+ * Immutable copy of a {@link Product} as held in the catalog snapshot
+ */
+public record CatalogProduct(String productId, String name, long priceMinor, String currency,
+                             boolean active, long version) {
+
+    static CatalogProduct of(Product product) {
+        return new CatalogProduct(product.getProductId(), product.getName(), product.getPriceMinor(),
+                product.getCurrency(), product.isActive(), product.getVersion() != null ? product.getVersion() : 0L);
+    }
+}
@@ -0,0 +1,191 @@
+package com.spring.grpc.order.catalog;
+
+import com.spring.grpc.order.entity.OrderLine;
+import com.spring.grpc.order.entity.Product;
+import com.spring.grpc.order.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-memory product catalog that orders are validated and priced against
+ * (order.catalog.enabled, off by default).
+ *
+ * The whole products table is held as an immutable snapshot behind a volatile
+ * reference. Reads are a map lookup with no lock and no database access; a
+ * refresh builds a new map and swaps it in (copy-on-write), so a reader always
+ * sees one consistent snapshot.
+ *
+ * The snapshot is loaded in full at startup, before the service takes traffic,
+ * then refreshed every order.catalog.refresh-interval-ms with a delta query on
+ * updatedAt. The delta reaches back order.catalog.delta-overlap before the
+ * previous query started, to pick up rows whose transaction committed after it
+ * ran and to absorb clock skew between writers. Rows seen again with the same
+ * version are skipped, so a quiet catalog is never copied.
+ *
+ * Refreshes run on the scheduler thread only, so the snapshot has a single writer.
+ */
+@Component
+@Slf4j
+public class ProductCatalog {
+
+    private final boolean enabled;
+    private final Duration deltaOverlap;
+    private final ProductRepository productRepository;
+    private volatile Snapshot snapshot = new Snapshot(Map.of(), LocalDateTime.MIN, System.nanoTime());
+
+    public ProductCatalog(@Value("${order.catalog.enabled:false}") boolean enabled,
+                          @Value("${order.catalog.delta-overlap:30s}") Duration deltaOverlap,
+                          ProductRepository productRepository,
+                          MeterRegistry registry) {
+        this.enabled = enabled;
+        this.deltaOverlap = deltaOverlap;
+        this.productRepository = productRepository;
+        if (!enabled) {
+            return;
+        }
+
+        Gauge.builder("order.catalog.products", this, catalog -> catalog.snapshot.products.size())
+                .description("Products held in the in-memory catalog")
+                .register(registry);
+        Gauge.builder("order.catalog.age", this,
+                        catalog -> (System.nanoTime() - catalog.snapshot.refreshedNanos) / 1e9)
+                .description("Time since the catalog last refreshed")
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    /**
+     * Load the whole catalog; synchronously, so orders are never priced against an
+     * empty one
+     */
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime started = LocalDateTime.now();
+        Map<String, CatalogProduct> products = new HashMap<>();
+        for (Product product : productRepository.findAll()) {
+            products.put(product.getProductId(), CatalogProduct.of(product));
+        }
+        snapshot = new Snapshot(Map.copyOf(products), started, System.nanoTime());
+        log.atInfo().addKeyValue("products", products.size()).log("Product catalog loaded");
+    }
+
+    /**
+     * Apply the products changed since the last refresh
+     */
+    @Scheduled(fixedDelayString = "${order.catalog.refresh-interval-ms:5000}",
+            initialDelayString = "${order.catalog.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        Snapshot current = snapshot;
+        LocalDateTime started = LocalDateTime.now();
+        List<Product> changed;
+        try {
+            changed = productRepository.findByUpdatedAtGreaterThanEqualOrderByUpdatedAt(
+                    current.since.minus(deltaOverlap));
+        } catch (Exception e) {
+            // Keep serving the current snapshot; order_catalog_age shows how stale it gets
+            log.atWarn().setCause(e).log("Product catalog refresh failed");
+            return;
+        }
+
+        Map<String, CatalogProduct> products = null;
+        for (Product product : changed) {
+            CatalogProduct known = current.products.get(product.getProductId());
+            if (known != null && product.getVersion() != null && known.version() == product.getVersion()) {
+                continue;
+            }
+            if (products == null) {
+                products = new HashMap<>(current.products);
+            }
+            products.put(product.getProductId(), CatalogProduct.of(product));
+        }
+
+        if (products == null) {
+            snapshot = new Snapshot(current.products, started, System.nanoTime());
+            return;
+        }
+        snapshot = new Snapshot(Map.copyOf(products), started, System.nanoTime());
+        log.atDebug().addKeyValue("products", products.size()).log("Product catalog refreshed");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<CatalogProduct> get(String productId) {
+        return Optional.ofNullable(snapshot.products.get(productId));
+    }
+
+    public Collection<CatalogProduct> products() {
+        return snapshot.products.values();
+    }
+
+    /**
+     * Create or change a product in the database. Catalogs on every replica,
+     * this one included, pick it up with their next refresh.
+     *
+     * @throws org.springframework.dao.OptimisticLockingFailureException if another save
+     *         changed the product since it was read
+     * @throws org.springframework.dao.DataIntegrityViolationException if another save
+     *         created the product since it was read
+     */
+    @Transactional
+    public Product save(String productId, String name, long priceMinor, String currency, boolean active) {
+        Product product = productRepository.findById(productId)
+                .orElseGet(() -> Product.builder().productId(productId).build());
+        product.setName(name);
+        product.setPriceMinor(priceMinor);
+        product.setCurrency(currency);
+        product.setActive(active);
+        return productRepository.save(product);
+    }
+
+    /**
+     * The item with the catalog's name and unit price; what the client sent for
+     * them is ignored
+     *
+     * @throws IllegalArgumentException if the product is unknown, inactive or priced
+     *                                  in another currency than the order's
+     */
+    public OrderLine price(OrderLine item, String currency) {
+        CatalogProduct product = snapshot.products.get(item.getProductId());
+        if (product == null || !product.active()) {
+            throw new IllegalArgumentException("Unknown product: " + item.getProductId());
+        }
+        if (!product.currency().equals(currency)) {
+            throw new IllegalArgumentException("Product " + item.getProductId() + " is priced in " + product.currency());
+        }
+        return OrderLine.builder()
+                .productId(product.productId())
+                .productName(product.name())
+                .quantity(item.getQuantity())
+                .priceMinor(product.priceMinor())
+                .build();
+    }
+
+    /**
+     * Products by id, the time the query that produced them started, and when the
+     * snapshot was taken
+     */
+    private record Snapshot(Map<String, CatalogProduct> products, LocalDateTime since, long refreshedNanos) {
+    }
+}
@@ -0,0 +1,46 @@
+package com.spring.grpc.order.config;
+
+import com.spring.grpc.common.health.ConnectionPoolWaiters;
+import com.spring.grpc.common.health.HealthChecks;
+import com.spring.grpc.common.health.HealthProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import javax.sql.DataSource;
+
+/**
+ * Health Configuration
+ *
+ * Cached health checks (order.health.*); the health indicators on top of them
+ * come from the common module. Overload is measured as requests queueing for a
+ * database connection: nearly all of the database work comes from the gRPC and
+ * HTTP traffic that readiness turns away.
+ */
+@Configuration
+public class HealthConfig {
+
+    @Bean
+    @ConfigurationProperties("order.health")
+    public HealthProperties healthProperties() {
+        return new HealthProperties();
+    }
+
+    @Bean
+    public HealthChecks healthChecks(HealthProperties healthProperties,
+                                     DataSource dataSource,
+                                     ObjectProvider<HikariDataSource> pools,
+                                     KafkaAdmin kafkaAdmin,
+                                     @Value("${spring.kafka.consumer.group-id}") String groupId,
+                                     MeterRegistry meterRegistry) {
+        // The primary pool, also behind the routing data source when replicas are set
+        HikariDataSource pool = pools.getIfUnique();
+        return new HealthChecks("order", healthProperties, dataSource, pool, kafkaAdmin, groupId,
+                new ConnectionPoolWaiters(pool), meterRegistry);
+    }
+}
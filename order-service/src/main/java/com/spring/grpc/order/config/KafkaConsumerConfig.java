@@ -0,0 +1,176 @@
+package com.spring.grpc.order.config;
+
+import com.spring.grpc.common.kafka.DeadLetterReplayer;
+import com.spring.grpc.order.consumer.PaymentResultConsumer;
+import com.spring.grpc.order.dto.PaymentResultEvent;
+import com.spring.grpc.order.metrics.OrderMetrics;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.kafka.annotation.EnableKafka;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaAdmin;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kafka Consumer Configuration
+ *
+ * Payment results are consumed as batches so a whole poll updates orders with a
+ * few bulk statements instead of one transaction per event. A batch that still
+ * fails after its retries goes to payment.completed.DLT / payment.failed.DLT,
+ * from where it can be replayed. order.updated is read separately by every
+ * replica to feed the watch hub.
+ */
+@Configuration
+@EnableKafka
+public class KafkaConsumerConfig {
+
+    private static final String DLT_SUFFIX = ".DLT";
+
+    @Value("${spring.kafka.bootstrap-servers}")
+    private String bootstrapServers;
+
+    @Value("${spring.kafka.consumer.group-id}")
+    private String groupId;
+
+    @Value("${kafka.consumer.concurrency:1}")
+    private int concurrency;
+
+    @Value("${kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    @Value("${kafka.topics.payment-completed}")
+    private String paymentCompletedTopic;
+
+    @Value("${kafka.topics.payment-failed}")
+    private String paymentFailedTopic;
+
+    @Bean
+    public ConsumerFactory<String, Object> consumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+        config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.spring.grpc.order.dto.PaymentResultEvent");
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+
+        return new DefaultKafkaConsumerFactory<>(config);
+    }
+
+    /**
+     * Consumer factory for order.updated. No offsets are committed: each replica
+     * starts from the latest record and only needs updates from then on.
+     */
+    @Bean
+    public ConsumerFactory<String, Object> orderUpdateConsumerFactory() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        config.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
+        config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
+        config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
+        config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.spring.grpc.order.dto.OrderEvent");
+        config.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+
+        return new DefaultKafkaConsumerFactory<>(config);
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> orderUpdateListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(orderUpdateConsumerFactory());
+        factory.setBatchListener(true);
+        // MANUAL without ever acknowledging: nothing is committed for the throwaway group
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        return factory;
+    }
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> kafkaListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(true);
+        // Offsets are committed once the batch's bulk update has committed
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+        // A failed batch (e.g. database unavailable) is retried as a whole before being skipped
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000L, 10)));
+        return factory;
+    }
+
+    /**
+     * Container factory for the payment results. A batch that still fails after its
+     * retries is written to the DLTs record by record, and only then are its offsets
+     * committed; a failed DLT write retries the batch again.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> paymentResultListenerContainerFactory(
+            KafkaTemplate<String, Object> kafkaTemplate, OrderMetrics orderMetrics) {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setConcurrency(concurrency);
+        factory.setBatchListener(true);
+        // Offsets are committed once the batch's bulk update has committed
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.BATCH);
+
+        // Partition -1: the producer picks one by key, whatever the DLT's partition count
+        DeadLetterPublishingRecoverer deadLetters = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, e) -> new TopicPartition(record.topic() + DLT_SUFFIX, -1));
+        factory.setCommonErrorHandler(new DefaultErrorHandler((record, e) -> {
+            deadLetters.accept(record, e);
+            orderMetrics.recordPaymentResultsDeadLettered(1);
+        }, new FixedBackOff(1000L, 10)));
+        return factory;
+    }
+
+    @Bean
+    public KafkaAdmin.NewTopics paymentResultDeadLetterTopics() {
+        return new KafkaAdmin.NewTopics(
+                TopicBuilder.name(paymentCompletedTopic + DLT_SUFFIX).partitions(3).replicas(1).build(),
+                TopicBuilder.name(paymentFailedTopic + DLT_SUFFIX).partitions(3).replicas(1).build());
+    }
+
+    /**
+     * Applies dead-lettered payment results directly, through the same handler as
+     * the listener, so the other consumers of payment.* do not see them twice.
+     * Lazy, like the controller in front of it: created on the first call instead
+     * of at startup.
+     */
+    @Lazy
+    @Bean
+    public DeadLetterReplayer deadLetterReplayer(PaymentResultConsumer paymentResultConsumer,
+                                                 OrderMetrics orderMetrics) {
+        List<String> dltTopics = List.of(paymentCompletedTopic + DLT_SUFFIX, paymentFailedTopic + DLT_SUFFIX);
+        return new DeadLetterReplayer(consumerFactory(), groupId, dltTopics, records -> {
+            paymentResultConsumer.handlePaymentResults(records.stream()
+                    .map(record -> (PaymentResultEvent) record.value())
+                    .toList());
+            orderMetrics.recordPaymentResultsReplayed(records.size());
+        });
+    }
+}
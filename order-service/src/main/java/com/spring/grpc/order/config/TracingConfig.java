@@ -0,0 +1,74 @@
+package com.spring.grpc.order.config;
+
+import brave.Tracer;
+import brave.handler.SpanHandler;
+import com.spring.grpc.common.tracing.HeadSamplingDecider;
+import com.spring.grpc.common.tracing.HeadSamplingFilter;
+import com.spring.grpc.common.tracing.HeadSamplingGrpcInterceptor;
+import com.spring.grpc.common.tracing.SamplingRateLimiter;
+import com.spring.grpc.common.tracing.TailSamplingSpanHandler;
+import net.devh.boot.grpc.common.util.InterceptorOrder;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+/**
+ * Trace Sampling Configuration
+ *
+ * Spans are still recorded locally for every request (management.tracing.sampling),
+ * but only traces picked by the head/tail rules are exported.
+ */
+@Configuration
+public class TracingConfig {
+
+    @Value("${tracing.sampling.traces-per-second:5}")
+    private int tracesPerSecond;
+
+    @Value("${tracing.sampling.slow-threshold-ms:500}")
+    private long slowThresholdMillis;
+
+    @Value("${tracing.sampling.max-pending-traces:10000}")
+    private int maxPendingTraces;
+
+    @Value("${tracing.sampling.max-spans-per-trace:256}")
+    private int maxSpansPerTrace;
+
+    @Bean
+    public SamplingRateLimiter samplingRateLimiter() {
+        return new SamplingRateLimiter(tracesPerSecond);
+    }
+
+    @Bean
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public TailSamplingSpanHandler tailSamplingSpanHandler(SamplingRateLimiter samplingRateLimiter,
+                                                           ObjectProvider<SpanHandler> spanHandlers) {
+        return new TailSamplingSpanHandler(samplingRateLimiter, slowThresholdMillis,
+                maxPendingTraces, maxSpansPerTrace, spanHandlers);
+    }
+
+    @Bean
+    public HeadSamplingDecider headSamplingDecider(Tracer tracer, SamplingRateLimiter samplingRateLimiter) {
+        return new HeadSamplingDecider(tracer, samplingRateLimiter);
+    }
+
+    @Bean
+    public FilterRegistrationBean<HeadSamplingFilter> headSamplingFilter(HeadSamplingDecider decider) {
+        FilterRegistrationBean<HeadSamplingFilter> registration =
+                new FilterRegistrationBean<>(new HeadSamplingFilter(decider));
+        // Just inside ServerHttpObservationFilter, so the request span is current
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 5);
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+
+    @GrpcGlobalServerInterceptor
+    @Order(InterceptorOrder.ORDER_TRACING_METRICS + 1)
+    public HeadSamplingGrpcInterceptor headSamplingGrpcInterceptor(HeadSamplingDecider decider) {
+        return new HeadSamplingGrpcInterceptor(decider);
+    }
+}
@@ -0,0 +1,53 @@
+package com.spring.grpc.order.consumer;
+
+import com.spring.grpc.order.dto.PaymentResultEvent;
+import com.spring.grpc.order.service.OrderBusinessService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Kafka Consumer for Payment Result Events
+ *
+ * Moves orders out of PENDING once their payment settles: COMPLETED confirms the
+ * order, FAILED cancels it. Each poll is applied as one batch; duplicates (the
+ * payment side publishes at least once) collapse to the last result per order.
+ *
+ * A batch that keeps failing is dead-lettered (see KafkaConsumerConfig) and can be
+ * re-applied with POST /api/orders/dlt/replay.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PaymentResultConsumer {
+
+    private final OrderBusinessService orderBusinessService;
+
+    @KafkaListener(
+            topics = {"${kafka.topics.payment-completed}", "${kafka.topics.payment-failed}"},
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "paymentResultListenerContainerFactory"
+    )
+    public void handlePaymentResults(List<PaymentResultEvent> events) {
+        Map<String, String> statusByOrderId = new LinkedHashMap<>();
+        for (PaymentResultEvent event : events) {
+            if (event == null || event.getOrderId() == null) {
+                continue;
+            }
+            statusByOrderId.put(event.getOrderId(), "COMPLETED".equals(event.getStatus()) ? "CONFIRMED" : "CANCELLED");
+        }
+
+        int updated = orderBusinessService.applyPaymentResults(statusByOrderId);
+
+        log.atDebug()
+                .addKeyValue("events", events.size())
+                .addKeyValue("orders", statusByOrderId.size())
+                .addKeyValue("updated", updated)
+                .log("Payment results applied");
+    }
+}
@@ -0,0 +1,54 @@
+package com.spring.grpc.order.consumer;
+
+import com.spring.grpc.order.dto.OrderEvent;
+import com.spring.grpc.order.dto.PaymentResultEvent;
+import com.spring.grpc.order.service.UserSummaryService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Kafka Consumer feeding the per-user summaries
+ *
+ * Runs in its own consumer group so the read model sees every order and payment
+ * event, independently of the payment result consumer. Batches are applied in one
+ * transaction and committed afterwards; a redelivered batch is skipped by the
+ * version and payment status checks in {@link UserSummaryService}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class UserSummaryConsumer {
+
+    private final UserSummaryService userSummaryService;
+
+    @KafkaListener(
+            topics = {"${kafka.topics.order-created}", "${kafka.topics.order-updated}"},
+            groupId = "${order.summary.group-id:${spring.application.name}-user-summary}",
+            properties = "spring.json.value.default.type=com.spring.grpc.order.dto.OrderEvent"
+    )
+    public void handleOrderEvents(List<OrderEvent> events) {
+        int applied = userSummaryService.applyOrderEvents(events);
+
+        log.atDebug()
+                .addKeyValue("events", events.size())
+                .addKeyValue("applied", applied)
+                .log("Order events applied to user summaries");
+    }
+
+    @KafkaListener(
+            topics = {"${kafka.topics.payment-completed}", "${kafka.topics.payment-failed}"},
+            groupId = "${order.summary.group-id:${spring.application.name}-user-summary}"
+    )
+    public void handlePaymentResults(List<PaymentResultEvent> events) {
+        int applied = userSummaryService.applyPaymentResults(events);
+
+        log.atDebug()
+                .addKeyValue("events", events.size())
+                .addKeyValue("applied", applied)
+                .log("Payment results applied to user summaries");
+    }
+}
@@ -0,0 +1,47 @@
+package com.spring.grpc.order.controller;
+
+import com.spring.grpc.order.analytics.OrderWindowStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Real-time order analytics REST Controller
+ *
+ * Served from the in-memory windows of {@link OrderWindowStore}; nothing here
+ * queries the database.
+ */
+@Lazy
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class AnalyticsController {
+
+    private final OrderWindowStore orderWindowStore;
+
+    /**
+     * Orders, revenue per product and payment failure rate over a sliding window
+     * ending now, or over the last complete tumbling window
+     */
+    @GetMapping("/orders")
+    public ResponseEntity<?> getOrderAnalytics(@RequestParam(defaultValue = "60") long windowSeconds,
+                                               @RequestParam(defaultValue = "false") boolean tumbling,
+                                               @RequestParam(defaultValue = "10") int topProducts) {
+        Duration window = Duration.ofSeconds(windowSeconds);
+        try {
+            return ResponseEntity.ok(tumbling
+                    ? orderWindowStore.tumbling(window, Math.max(topProducts, 0))
+                    : orderWindowStore.sliding(window, Math.max(topProducts, 0)));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+}
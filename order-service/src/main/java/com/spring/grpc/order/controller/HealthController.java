@@ -1,53 +1,47 @@
 package com.spring.grpc.order.controller;
 
+import com.spring.grpc.common.health.HealthChecks;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
-import javax.sql.DataSource;
-import java.sql.Connection;
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * Health Check Controller
+ *
+ * Reports the last results of {@link HealthChecks}; a probe never touches the
+ * database or the broker. Liveness and readiness probes are under
+ * /actuator/health/liveness and /actuator/health/readiness.
+ *
+ * Lazy: created on the first probe instead of at startup.
  */
+@Lazy
 @RestController
 @RequestMapping("/api/health")
 @RequiredArgsConstructor
 public class HealthController {
 
-    private final DataSource dataSource;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final HealthChecks healthChecks;
 
     @GetMapping
     public ResponseEntity<Map<String, String>> health() {
+        Status database = healthChecks.get(HealthChecks.DATABASE).getStatus();
+        Status kafka = healthChecks.get(HealthChecks.KAFKA).getStatus();
+        boolean up = Status.UP.equals(database) && Status.UP.equals(kafka);
+
         Map<String, String> health = new HashMap<>();
         health.put("service", "order-service");
-        health.put("status", "UP");
-        health.put("database", checkDatabase());
-        health.put("kafka", checkKafka());
-
-        return ResponseEntity.ok(health);
-    }
-
-    private String checkDatabase() {
-        try (Connection connection = dataSource.getConnection()) {
-            return connection.isValid(1) ? "UP" : "DOWN";
-        } catch (Exception e) {
-            return "DOWN";
-        }
-    }
+        health.put("status", up ? "UP" : "DOWN");
+        health.put("database", database.getCode());
+        health.put("kafka", kafka.getCode());
 
-    private String checkKafka() {
-        try {
-            // Simple check if KafkaTemplate is available
-            return kafkaTemplate != null ? "UP" : "DOWN";
-        } catch (Exception e) {
-            return "DOWN";
-        }
+        return ResponseEntity.status(up ? HttpStatus.OK : HttpStatus.SERVICE_UNAVAILABLE).body(health);
     }
 }
@@ -0,0 +1,57 @@
+package com.spring.grpc.order.controller;
+
+import com.spring.grpc.order.dto.RestockRequest;
+import com.spring.grpc.order.inventory.StockReservations;
+import com.spring.grpc.order.repository.InventoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Inventory REST Controller
+ */
+@RestController
+@RequestMapping("/api/inventory")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class InventoryController {
+
+    private final InventoryRepository inventoryRepository;
+    private final StockReservations stockReservations;
+
+    /**
+     * Stock of a product: available in the database (not reserved nor allocated
+     * to a replica) and allocated to this replica
+     */
+    @GetMapping("/{productId}")
+    public ResponseEntity<Map<String, Object>> getInventory(@PathVariable String productId) {
+        return inventoryRepository.findById(productId)
+                .map(inventory -> {
+                    Map<String, Object> body = new HashMap<>();
+                    body.put("productId", productId);
+                    body.put("available", inventory.getAvailable());
+                    body.put("allocatedHere", stockReservations.allocatedHere(productId));
+                    body.put("updatedAt", inventory.getUpdatedAt());
+                    return ResponseEntity.ok(body);
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Add stock; the first restock of a product makes it stock-limited
+     */
+    @PostMapping("/{productId}/restock")
+    public ResponseEntity<?> restock(@PathVariable String productId,
+                                     @Valid @RequestBody RestockRequest request) {
+        log.info("Restocking {} with {}", productId, request.getQuantity());
+        inventoryRepository.restock(productId, request.getQuantity(), LocalDateTime.now());
+        return getInventory(productId);
+    }
+}
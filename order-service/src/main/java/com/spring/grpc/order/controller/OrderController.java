@@ -1,20 +1,24 @@
 package com.spring.grpc.order.controller;
 
+import com.spring.grpc.common.money.Money;
 import com.spring.grpc.order.dto.CreateOrderRequest;
 import com.spring.grpc.order.dto.UpdateOrderStatusRequest;
 import com.spring.grpc.order.entity.Order;
-import com.spring.grpc.order.repository.OrderRepository;
+import com.spring.grpc.order.entity.OrderLine;
+import com.spring.grpc.order.inventory.InsufficientStockException;
 import com.spring.grpc.order.service.OrderBusinessService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Order REST Controller
@@ -27,24 +31,28 @@ import java.util.List;
 public class OrderController {
 
     private final OrderBusinessService orderBusinessService;
-    private final OrderRepository orderRepository;
 
     /**
-     * Create new order
+     * Create new order of one or more items
      */
     @PostMapping
-    public ResponseEntity<Order> createOrder(@Valid @RequestBody CreateOrderRequest request) {
+    public ResponseEntity<?> createOrder(@Valid @RequestBody CreateOrderRequest request) {
         log.info("Creating order for user: {}", request.getUserId());
-        
-        Order order = orderBusinessService.createOrder(
-                request.getUserId(),
-                request.getProductId(),
-                request.getProductName(),
-                request.getQuantity(),
-                request.getPrice()
-        );
-        
-        return ResponseEntity.status(HttpStatus.CREATED).body(order);
+
+        try {
+            String currency = orderBusinessService.currencyOf(request.getCurrency());
+            Order order = orderBusinessService.createOrder(request.getUserId(), itemsOf(request, currency), currency);
+
+            return ResponseEntity.status(HttpStatus.CREATED).body(order);
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid items, price or currency: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (InsufficientStockException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
     }
 
     /**
@@ -96,8 +104,7 @@ public class OrderController {
             @RequestParam(defaultValue = "10") int size) {
         
         log.info("Getting orders by status: {}", status);
-        PageRequest pageRequest = PageRequest.of(page, size);
-        Page<Order> ordersPage = orderRepository.findByStatus(status, pageRequest);
+        Page<Order> ordersPage = orderBusinessService.listOrdersByStatus(status, page, size);
         return ResponseEntity.ok(ordersPage.getContent());
     }
 
@@ -105,7 +112,7 @@ public class OrderController {
      * Update order status
      */
     @PutMapping("/{orderId}/status")
-    public ResponseEntity<Order> updateOrderStatus(
+    public ResponseEntity<?> updateOrderStatus(
             @PathVariable String orderId,
             @Valid @RequestBody UpdateOrderStatusRequest request) {
         
@@ -114,9 +121,45 @@ public class OrderController {
         try {
             Order updatedOrder = orderBusinessService.updateOrderStatus(orderId, request.getStatus());
             return ResponseEntity.ok(updatedOrder);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (IllegalStateException e) {
+            log.warn("Rejected order status update: {}", e.getMessage());
+            Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
         } catch (RuntimeException e) {
             log.error("Error updating order status: {}", e.getMessage());
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * The request's items, or its single product. Prices without priceMinor are
+     * converted from major units; no price at all is 0, left to the catalog.
+     */
+    private static List<OrderLine> itemsOf(CreateOrderRequest request, String currency) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            return List.of(item(request.getProductId(), request.getProductName(), request.getQuantity(),
+                    request.getPriceMinor(), request.getPrice(), currency));
+        }
+        List<OrderLine> items = new ArrayList<>(request.getItems().size());
+        for (CreateOrderRequest.Item item : request.getItems()) {
+            items.add(item(item.getProductId(), item.getProductName(), item.getQuantity(),
+                    item.getPriceMinor(), item.getPrice(), currency));
+        }
+        return items;
+    }
+
+    private static OrderLine item(String productId, String productName, int quantity,
+                                  Long priceMinor, Double price, String currency) {
+        return OrderLine.builder()
+                .productId(productId)
+                .productName(productName)
+                .quantity(quantity)
+                .priceMinor(priceMinor != null ? priceMinor : price != null ? Money.toMinor(price, currency) : 0L)
+                .build();
+    }
 }
@@ -0,0 +1,79 @@
+package com.spring.grpc.order.controller;
+
+import com.spring.grpc.order.catalog.CatalogProduct;
+import com.spring.grpc.order.catalog.ProductCatalog;
+import com.spring.grpc.order.dto.UpsertProductRequest;
+import com.spring.grpc.order.entity.Product;
+import com.spring.grpc.order.service.OrderBusinessService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.validation.Valid;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Product catalog REST Controller
+ *
+ * Reads are served from the in-memory {@link ProductCatalog}; writes go to the
+ * database and show up in the catalog with its next refresh.
+ */
+@RestController
+@RequestMapping("/api/products")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class ProductController {
+
+    private final ProductCatalog productCatalog;
+    private final OrderBusinessService orderBusinessService;
+
+    /**
+     * All products of the catalog, including inactive ones
+     */
+    @GetMapping
+    public ResponseEntity<Collection<CatalogProduct>> getProducts() {
+        return ResponseEntity.ok(productCatalog.products());
+    }
+
+    /**
+     * Get product by ID
+     */
+    @GetMapping("/{productId}")
+    public ResponseEntity<CatalogProduct> getProduct(@PathVariable String productId) {
+        return productCatalog.get(productId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Create or update product
+     */
+    @PutMapping("/{productId}")
+    public ResponseEntity<?> upsertProduct(@PathVariable String productId,
+                                           @Valid @RequestBody UpsertProductRequest request) {
+        log.info("Saving product: {}", productId);
+
+        try {
+            Product product = productCatalog.save(productId, request.getName(), request.getPriceMinor(),
+                    orderBusinessService.currencyOf(request.getCurrency()),
+                    request.getActive() == null || request.getActive());
+            return ResponseEntity.ok(product);
+        } catch (IllegalArgumentException e) {
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Invalid currency: " + e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        } catch (OptimisticLockingFailureException | DataIntegrityViolationException e) {
+            // Another PUT changed the product (version mismatch) or created it (duplicate key) meanwhile
+            Map<String, String> error = new HashMap<>();
+            error.put("error", "Product " + productId + " was changed concurrently, retry");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(error);
+        }
+    }
+}
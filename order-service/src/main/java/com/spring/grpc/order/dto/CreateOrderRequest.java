@@ -5,13 +5,20 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import javax.validation.Valid;
+import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotBlank;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
+import java.util.List;
 
 /**
  * Create Order Request DTO
+ *
+ * Either items, or a single product given by productId, productName, quantity
+ * and price; items take precedence. Names and prices are only required when the
+ * product catalog is off; with it on they come from the catalog.
  */
 @Data
 @Builder
@@ -22,17 +29,55 @@ public class CreateOrderRequest {
     @NotBlank(message = "User ID is required")
     private String userId;
 
-    @NotBlank(message = "Product ID is required")
+    @Valid
+    private List<Item> items;
+
     private String productId;
 
-    @NotBlank(message = "Product name is required")
     private String productName;
 
-    @NotNull(message = "Quantity is required")
     @Min(value = 1, message = "Quantity must be at least 1")
     private Integer quantity;
 
-    @NotNull(message = "Price is required")
+    // Either price (legacy, major units) or priceMinor
     @Positive(message = "Price must be positive")
     private Double price;
+
+    @Positive(message = "Price must be positive")
+    private Long priceMinor;
+
+    private String currency; // ISO 4217, defaults to order.money.default-currency
+
+    @AssertTrue(message = "Items, or product ID and quantity are required")
+    public boolean isProductGiven() {
+        if (items != null && !items.isEmpty()) {
+            return true;
+        }
+        return productId != null && !productId.isBlank() && quantity != null;
+    }
+
+    /**
+     * One line of the order
+     */
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Item {
+
+        @NotBlank(message = "Product ID is required")
+        private String productId;
+
+        private String productName;
+
+        @NotNull(message = "Quantity is required")
+        @Min(value = 1, message = "Quantity must be at least 1")
+        private Integer quantity;
+
+        @Positive(message = "Price must be positive")
+        private Double price;
+
+        @Positive(message = "Price must be positive")
+        private Long priceMinor;
+    }
 }
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Order Event DTO for Kafka
@@ -20,9 +21,31 @@ public class OrderEvent {
     private String productId;
     private String productName;
     private Integer quantity;
-    private Double price;
-    private Double totalAmount;
+    private Double price;       // legacy, major units
+    private Double totalAmount; // legacy, major units
+    private long priceMinor;
+    private long totalAmountMinor;
+    private String currency;    // null on events from before minor units
+    private List<Line> lines;   // the product fields above are the first line
     private String status;
     private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private Long version; // Order.version, increases with every status change
     private String eventType; // CREATED, UPDATED, CANCELLED
+
+    /**
+     * One line of the order, in minor units of the order's currency
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Line {
+        private int lineNo;
+        private String productId;
+        private String productName;
+        private int quantity;
+        private long priceMinor;
+        private long totalAmountMinor;
+    }
 }
@@ -0,0 +1,28 @@
+package com.spring.grpc.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Payment Result Event DTO (consumed from Kafka)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentResultEvent {
+    private String paymentId;
+    private String orderId;
+    private String userId;
+    private Double amount;      // legacy, major units
+    private long amountMinor;
+    private String currency;    // null on events from before minor units
+    private String status; // COMPLETED, FAILED
+    private String transactionId;
+    private String errorMessage;
+    private LocalDateTime processedAt;
+}
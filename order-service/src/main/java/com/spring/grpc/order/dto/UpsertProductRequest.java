@@ -0,0 +1,31 @@
+package com.spring.grpc.order.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Positive;
+
+/**
+ * Create or Update Product Request DTO
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UpsertProductRequest {
+
+    @NotBlank(message = "Name is required")
+    private String name;
+
+    @NotNull(message = "Price is required")
+    @Positive(message = "Price must be positive")
+    private Long priceMinor;
+
+    private String currency; // ISO 4217, defaults to order.money.default-currency
+
+    private Boolean active; // defaults to true; false takes the product off sale
+}
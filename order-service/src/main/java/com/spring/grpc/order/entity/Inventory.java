@@ -0,0 +1,36 @@
+package com.spring.grpc.order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Stock of a product that is neither reserved nor allocated to a replica.
+ *
+ * Written only by single-statement updates in {@link com.spring.grpc.order.repository.InventoryRepository};
+ * products without a row are not stock-limited.
+ */
+@Entity
+@Table(name = "inventory")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Inventory {
+
+    @Id
+    private String productId;
+
+    @Column(nullable = false)
+    private long available;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,55 @@
+package com.spring.grpc.order.entity;
+
+import com.spring.grpc.common.id.UuidV7;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Stock of one product held for an order.
+ *
+ * HELD until the order's payment succeeds (COMMITTED: the stock is sold), or the
+ * order is cancelled or the hold outlives its expiresAt (RELEASED: the stock is
+ * back in {@link Inventory}).
+ */
+@Entity
+@Table(name = "inventory_reservations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryReservation {
+
+    @Id
+    @UuidV7
+    private UUID reservationId;
+
+    @Column(nullable = false, updatable = false)
+    private UUID orderId;
+
+    @Column(nullable = false, updatable = false)
+    private String productId;
+
+    @Column(nullable = false, updatable = false)
+    private long quantity;
+
+    @Column(nullable = false)
+    private String status; // HELD, COMMITTED, RELEASED
+
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+}
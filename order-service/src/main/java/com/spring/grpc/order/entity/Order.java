@@ -1,22 +1,31 @@
 package com.spring.grpc.order.entity;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
 
+import com.spring.grpc.common.id.UuidV7;
+import com.spring.grpc.common.money.Money;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
 import jakarta.persistence.PreUpdate;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
 
 /**
  * Order Entity
+ *
+ * An order of several items has its {@link OrderLine}s; the product, quantity and
+ * price columns then describe the first line, for readers that predate lines, and
+ * the total covers all of them.
  */
 @Entity
 @Table(name = "orders")
@@ -27,8 +36,8 @@ import lombok.NoArgsConstructor;
 public class Order {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    private String orderId;
+    @UuidV7
+    private UUID orderId;
 
     @Column(nullable = false)
     private String userId;
@@ -42,23 +51,46 @@ public class Order {
     @Column(nullable = false)
     private Integer quantity;
 
+    // Minor units (cents for USD) of currency; numeric in the table so SQL sums cannot overflow
+    @Column(nullable = false, precision = 19)
+    private long priceMinor;
+
+    @Column(nullable = false, precision = 19)
+    private long totalAmountMinor;
+
+    @Column(nullable = false, length = 3)
+    private String currency; // ISO 4217
+
+    // Legacy double columns, derived from the minor units and still written for old readers
     @Column(nullable = false)
-    private Double price;
+    private double price;
 
     @Column(nullable = false)
-    private Double totalAmount;
+    private double totalAmount;
 
     @Column(nullable = false)
     private String status; // PENDING, CONFIRMED, PROCESSING, COMPLETED, CANCELLED
 
+    // Default lets ddl-auto add the column to existing rows
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
     @Column(nullable = false)
     private LocalDateTime updatedAt;
 
+    // Set on create, on single-order reads and on status updates, not on listings
+    @Transient
+    private List<OrderLine> lines;
+
     @PrePersist
     protected void onCreate() {
+        price = Money.toMajor(priceMinor, currency);
+        totalAmount = Money.toMajor(totalAmountMinor, currency);
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
         if (status == null) {
@@ -0,0 +1,59 @@
+package com.spring.grpc.order.entity;
+
+import com.spring.grpc.common.id.UuidV7;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * One line of an order with more than one item.
+ *
+ * Amounts are minor units of the order's currency. A line has the createdAt of
+ * its order, which puts it in the same monthly partition and lets lookups by
+ * order skip the others. Orders of a single item have no lines: the order row
+ * is its only line.
+ */
+@Entity
+@Table(name = "order_lines")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class OrderLine {
+
+    @Id
+    @UuidV7
+    private UUID lineId;
+
+    @Column(nullable = false, updatable = false)
+    private UUID orderId;
+
+    @Column(nullable = false, updatable = false)
+    private int lineNo; // 1-based, in request order
+
+    @Column(nullable = false, updatable = false)
+    private String productId;
+
+    @Column(nullable = false, updatable = false)
+    private String productName;
+
+    @Column(nullable = false, updatable = false)
+    private int quantity;
+
+    @Column(nullable = false, updatable = false, precision = 19)
+    private long priceMinor;
+
+    @Column(nullable = false, updatable = false, precision = 19)
+    private long totalAmountMinor;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,58 @@
+package com.spring.grpc.order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Product of the catalog that orders are validated and priced against.
+ *
+ * Products are never deleted, only deactivated, so the change shows up in the
+ * catalog's delta query on updatedAt.
+ */
+@Entity
+@Table(name = "products")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Product {
+
+    @Id
+    private String productId;
+
+    @Column(nullable = false)
+    private String name;
+
+    // Unit price in minor units of currency
+    @Column(nullable = false, precision = 19)
+    private long priceMinor;
+
+    @Column(nullable = false, length = 3)
+    private String currency; // ISO 4217
+
+    @Column(nullable = false)
+    private boolean active;
+
+    @Version
+    private Long version;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,120 @@
+package com.spring.grpc.order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Per-user order and payment summary (read model).
+ *
+ * One row per user, kept up to date from order and payment events, so a
+ * dashboard reads it with a single key lookup.
+ */
+@Entity
+@Table(name = "user_order_summaries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserOrderSummary {
+
+    @Id
+    private String userId;
+
+    @Column(nullable = false)
+    private long pendingOrders;
+
+    @Column(nullable = false)
+    private long confirmedOrders;
+
+    @Column(nullable = false)
+    private long processingOrders;
+
+    @Column(nullable = false)
+    private long completedOrders;
+
+    @Column(nullable = false)
+    private long cancelledOrders;
+
+    // Minor units of order.money.default-currency
+    @Column(nullable = false, precision = 19)
+    private long totalSpendMinor;
+
+    @Column(nullable = false)
+    private long paymentsCompleted;
+
+    @Column(nullable = false)
+    private long paymentsFailed;
+
+    @Column
+    private UUID lastOrderId;
+
+    @Column
+    private LocalDateTime lastOrderAt;
+
+    @Version
+    private Long version;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * Add (sign 1) or remove (sign -1) an order's contribution to the counters
+     */
+    public void apply(UserSummaryOrder order, int sign) {
+        if (order.getStatus() != null) {
+            switch (order.getStatus()) {
+                case "PENDING" -> pendingOrders += sign;
+                case "CONFIRMED" -> confirmedOrders += sign;
+                case "PROCESSING" -> processingOrders += sign;
+                case "COMPLETED" -> completedOrders += sign;
+                case "CANCELLED" -> cancelledOrders += sign;
+                default -> { }
+            }
+        }
+        if ("COMPLETED".equals(order.getPaymentStatus())) {
+            paymentsCompleted += sign;
+        } else if ("FAILED".equals(order.getPaymentStatus())) {
+            paymentsFailed += sign;
+        }
+        if (order.countsAsSpend()) {
+            totalSpendMinor += sign * order.getTotalAmountMinor();
+        }
+    }
+
+    public void recordOrder(UUID orderId, LocalDateTime createdAt) {
+        if (createdAt != null && (lastOrderAt == null || createdAt.isAfter(lastOrderAt))) {
+            lastOrderId = orderId;
+            lastOrderAt = createdAt;
+        }
+    }
+
+    public long totalOrders() {
+        return pendingOrders + confirmedOrders + processingOrders + completedOrders + cancelledOrders;
+    }
+
+    /**
+     * Completed payments over all settled ones, 0 when none has settled
+     */
+    public double paymentSuccessRate() {
+        long settled = paymentsCompleted + paymentsFailed;
+        return settled == 0 ? 0.0 : (double) paymentsCompleted / settled;
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,70 @@
+package com.spring.grpc.order.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Last state of an order as applied to its user's {@link UserOrderSummary}.
+ *
+ * Lets the summary consumer ignore duplicate and stale events (orderVersion) and
+ * turn each event into a delta: the order's old contribution is subtracted and
+ * its new one added.
+ */
+@Entity
+@Table(name = "user_summary_orders")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserSummaryOrder {
+
+    @Id
+    private UUID orderId;
+
+    @Column(nullable = false)
+    private String userId;
+
+    @Column
+    private String status; // null until an order event arrives (payment result seen first)
+
+    @Column(nullable = false)
+    private Long orderVersion; // Order.version of the last applied event, -1 if none
+
+    // Minor units of the summary currency; 0 for orders in other currencies
+    @Column(nullable = false, precision = 19)
+    private long totalAmountMinor;
+
+    @Column
+    private String paymentStatus; // COMPLETED, FAILED
+
+    @Version
+    private Long version;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    /**
+     * Paid and not cancelled afterwards (a cancelled paid order is refunded)
+     */
+    public boolean countsAsSpend() {
+        return "COMPLETED".equals(paymentStatus) && !"CANCELLED".equals(status);
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onWrite() {
+        updatedAt = LocalDateTime.now();
+    }
+}
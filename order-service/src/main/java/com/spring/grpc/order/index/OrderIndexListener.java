@@ -0,0 +1,58 @@
+package com.spring.grpc.order.index;
+
+import com.spring.grpc.order.dto.OrderEvent;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.ConsumerSeekAware;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Feeds order.created and order.updated into the {@link OrderSnapshotIndex}, so
+ * the index also sees orders created and changed through other replicas.
+ *
+ * Reads under a throwaway consumer group like the watch listener. On assignment
+ * it seeks back a little before startup, so nothing written while the index was
+ * loading from the database is missed; replayed events are harmless because an
+ * order only moves to a higher version.
+ *
+ * Only started with order.index.enabled (autoStartup rather than a condition, so
+ * the flag still applies to an AOT-processed build).
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderIndexListener implements ConsumerSeekAware {
+
+    private static final long REWIND_MILLIS = 60_000L;
+
+    private final OrderSnapshotIndex index;
+    private final long startedAt = System.currentTimeMillis();
+
+    @KafkaListener(
+            topics = {"${kafka.topics.order-created}", "${kafka.topics.order-updated}"},
+            groupId = "${spring.application.name}-index-${random.uuid}",
+            containerFactory = "orderUpdateListenerContainerFactory",
+            autoStartup = "${order.index.enabled:false}"
+    )
+    public void handleOrderEvents(List<OrderEvent> events) {
+        for (OrderEvent event : events) {
+            if (event == null || event.getOrderId() == null) {
+                continue;
+            }
+            try {
+                index.put(UUID.fromString(event.getOrderId()), event);
+            } catch (IllegalArgumentException e) {
+                // Not an order of this service
+            }
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Map<TopicPartition, Long> assignments, ConsumerSeekCallback callback) {
+        callback.seekToTimestamp(assignments.keySet(), startedAt - REWIND_MILLIS);
+    }
+}
@@ -0,0 +1,442 @@
+package com.spring.grpc.order.index;
+
+import com.spring.grpc.common.money.Money;
+import com.spring.grpc.order.dto.OrderEvent;
+import com.spring.grpc.order.entity.Order;
+import com.spring.grpc.order.repository.OrderRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Off-heap index of recent orders, answering listings by user and status without
+ * the database (order.index.enabled, off by default).
+ *
+ * Orders are rows in a ring of order.index.capacity rows, stored column by column
+ * in direct buffers: the id as two longs, user, product, status and currency as
+ * dictionary codes, amounts in minor units and times as epoch micros, about 66 bytes
+ * an order. An open-addressing table of row numbers, also off-heap, finds an order by
+ * id for updates. User ids and products are interned on the heap once each.
+ *
+ * The index is loaded from the database at startup for the last order.index.window
+ * and kept current from this service's writes and from order.created / order.updated
+ * ({@link OrderIndexListener}); an order only moves forward to a higher version.
+ * When the ring is full the oldest row is overwritten and the index no longer
+ * covers orders created before it. Listings whose lower bound is not covered, or
+ * that page too deep, return empty and go to the database.
+ */
+@Component
+@Slf4j
+public class OrderSnapshotIndex {
+
+    private static final List<String> STATUSES = List.of("PENDING", "CONFIRMED", "PROCESSING", "COMPLETED", "CANCELLED");
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final boolean enabled;
+    private final Duration window;
+    private final int capacity;
+    private final int maxPageDepth;
+    private final String defaultCurrency;
+    private final OrderRepository orderRepository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Columns, one entry per row
+    private LongBuffer idMsb;
+    private LongBuffer idLsb;
+    private IntBuffer users;
+    private IntBuffer products;
+    private ByteBuffer statuses;
+    private IntBuffer quantities;
+    private LongBuffer prices;
+    private LongBuffer totals;
+    private ByteBuffer currencies;
+    private LongBuffer createdAt;
+    private LongBuffer updatedAt;
+    private IntBuffer versions;
+
+    // Row number + 1 per slot, 0 = empty; linear probing
+    private IntBuffer slots;
+    private int slotMask;
+
+    private final Dictionary userDictionary = new Dictionary();
+    private final Dictionary productDictionary = new Dictionary();
+    private final Dictionary currencyDictionary = new Dictionary();
+    private int size;
+    private int head;
+    private long coveredSinceMicros = Long.MIN_VALUE;
+    private volatile boolean ready;
+
+    private final ExecutorService loader =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("order-index-"));
+
+    public OrderSnapshotIndex(@Value("${order.index.enabled:false}") boolean enabled,
+                              @Value("${order.index.window:24h}") Duration window,
+                              @Value("${order.index.capacity:1000000}") int capacity,
+                              @Value("${order.index.max-page-depth:1000}") int maxPageDepth,
+                              @Value("${order.money.default-currency:USD}") String defaultCurrency,
+                              OrderRepository orderRepository,
+                              MeterRegistry registry) {
+        this.enabled = enabled;
+        this.window = window;
+        this.capacity = capacity;
+        this.maxPageDepth = maxPageDepth;
+        this.defaultCurrency = defaultCurrency;
+        this.orderRepository = orderRepository;
+        if (!enabled) {
+            return;
+        }
+
+        idMsb = direct(capacity, Long.BYTES).asLongBuffer();
+        idLsb = direct(capacity, Long.BYTES).asLongBuffer();
+        users = direct(capacity, Integer.BYTES).asIntBuffer();
+        products = direct(capacity, Integer.BYTES).asIntBuffer();
+        statuses = direct(capacity, Byte.BYTES);
+        quantities = direct(capacity, Integer.BYTES).asIntBuffer();
+        prices = direct(capacity, Long.BYTES).asLongBuffer();
+        totals = direct(capacity, Long.BYTES).asLongBuffer();
+        currencies = direct(capacity, Byte.BYTES);
+        createdAt = direct(capacity, Long.BYTES).asLongBuffer();
+        updatedAt = direct(capacity, Long.BYTES).asLongBuffer();
+        versions = direct(capacity, Integer.BYTES).asIntBuffer();
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+        slots = direct(tableSize, Integer.BYTES).asIntBuffer();
+        slotMask = tableSize - 1;
+
+        Gauge.builder("order.index.size", this, index -> index.size)
+                .description("Orders held in the off-heap order index")
+                .register(registry);
+    }
+
+    /**
+     * Load the orders of the last window from the database in the background; the
+     * index answers listings once this is done
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        loader.execute(() -> {
+            LocalDateTime since = LocalDateTime.now().minus(window);
+            LocalDateTime after = since.minusNanos(1000);
+            UUID afterId = new UUID(Long.MIN_VALUE, Long.MIN_VALUE);
+            long loaded = 0;
+            try {
+                List<Order> batch;
+                do {
+                    batch = orderRepository.findCreatedAfter(after, afterId, PageRequest.of(0, LOAD_BATCH_SIZE));
+                    for (Order order : batch) {
+                        put(order);
+                        after = order.getCreatedAt();
+                        afterId = order.getOrderId();
+                    }
+                    loaded += batch.size();
+                } while (batch.size() == LOAD_BATCH_SIZE);
+
+                lock.writeLock().lock();
+                try {
+                    coveredSinceMicros = Math.max(coveredSinceMicros, micros(since));
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                ready = true;
+                log.atInfo().addKeyValue("orders", loaded).addKeyValue("window", window).log("Order index loaded");
+            } catch (Exception e) {
+                log.atError().setCause(e).log("Order index load failed; listings stay on the database");
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        loader.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void put(Order order) {
+        if (!enabled || order.getOrderId() == null) {
+            return;
+        }
+        upsert(order.getOrderId(), order.getUserId(), order.getProductId(), order.getProductName(),
+                order.getQuantity(), order.getPriceMinor(), order.getTotalAmountMinor(),
+                Money.currencyOr(order.getCurrency(), defaultCurrency), order.getStatus(),
+                order.getCreatedAt(), order.getUpdatedAt(), order.getVersion());
+    }
+
+    public void put(UUID orderId, OrderEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long priceMinor = event.getPriceMinor();
+        long totalMinor = event.getTotalAmountMinor();
+        String currency = event.getCurrency();
+        if (currency == null) {
+            // Events from before minor units carry only the doubles, in the default currency
+            currency = defaultCurrency;
+            priceMinor = event.getPrice() != null ? Money.toMinor(event.getPrice(), currency) : 0L;
+            totalMinor = event.getTotalAmount() != null ? Money.toMinor(event.getTotalAmount(), currency) : 0L;
+        }
+        upsert(orderId, event.getUserId(), event.getProductId(), event.getProductName(),
+                event.getQuantity(), priceMinor, totalMinor, currency, event.getStatus(),
+                event.getCreatedAt(), event.getUpdatedAt(), event.getVersion());
+    }
+
+    /**
+     * Orders created since the given time, newest first, optionally filtered by
+     * user and status. Empty if the index cannot answer: disabled, still loading,
+     * not covering the time range, or a page deeper than order.index.max-page-depth.
+     */
+    public Optional<Page<Order>> list(String userId, String status, LocalDateTime since, int page, int size) {
+        int limit = (page + 1) * size;
+        if (!ready || limit > maxPageDepth) {
+            return Optional.empty();
+        }
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        long sinceMicros = micros(since);
+
+        lock.readLock().lock();
+        try {
+            if (sinceMicros < coveredSinceMicros) {
+                return Optional.empty();
+            }
+            int userCode = userId == null ? -1 : userDictionary.codeOf(userId);
+            int statusCode = status == null ? -1 : STATUSES.indexOf(status);
+            if ((userId != null && userCode < 0) || (status != null && statusCode < 0)) {
+                return Optional.of(Page.empty(pageRequest));
+            }
+
+            // Column scan keeping the newest `limit` matches in a min-heap on createdAt
+            PriorityQueue<Integer> newest = new PriorityQueue<>(limit,
+                    (a, b) -> Long.compare(createdAt.get(a), createdAt.get(b)));
+            long total = 0;
+            for (int row = 0; row < this.size; row++) {
+                if (createdAt.get(row) < sinceMicros
+                        || (userCode >= 0 && users.get(row) != userCode)
+                        || (statusCode >= 0 && statuses.get(row) != statusCode)) {
+                    continue;
+                }
+                total++;
+                if (newest.size() < limit) {
+                    newest.add(row);
+                } else if (createdAt.get(row) > createdAt.get(newest.peek())) {
+                    newest.poll();
+                    newest.add(row);
+                }
+            }
+
+            // The heap pops oldest first; the page is the slice just below the newest page * size
+            List<Order> content = new ArrayList<>(size);
+            int end = newest.size() - page * size;
+            int start = Math.max(0, end - size);
+            for (int i = 0; !newest.isEmpty(); i++) {
+                int row = newest.poll();
+                if (i >= start && i < end) {
+                    content.add(0, toOrder(row));
+                }
+            }
+            return Optional.of(new PageImpl<>(content, pageRequest, total));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void upsert(UUID orderId, String userId, String productId, String productName, Integer quantity,
+                        long priceMinor, long totalMinor, String currency, String status, LocalDateTime created,
+                        LocalDateTime updated, Long version) {
+        int statusCode = STATUSES.indexOf(status);
+        if (userId == null || created == null || statusCode < 0) {
+            return;
+        }
+        long msb = orderId.getMostSignificantBits();
+        long lsb = orderId.getLeastSignificantBits();
+        int orderVersion = version != null ? version.intValue() : 0;
+        long updatedMicros = micros(updated != null ? updated : created);
+
+        lock.writeLock().lock();
+        try {
+            int slot = findSlot(msb, lsb);
+            if (slot >= 0) {
+                int row = slots.get(slot) - 1;
+                if (orderVersion > versions.get(row)) {
+                    statuses.put(row, (byte) statusCode);
+                    updatedAt.put(row, updatedMicros);
+                    versions.put(row, orderVersion);
+                }
+                return;
+            }
+            long createdMicros = micros(created);
+            if (createdMicros < micros(LocalDateTime.now().minus(window))) {
+                return;
+            }
+
+            int row = head;
+            if (size == capacity) {
+                // Evict the oldest row; orders created up to it are no longer covered
+                deleteSlot(findSlot(idMsb.get(row), idLsb.get(row)));
+                coveredSinceMicros = Math.max(coveredSinceMicros, createdAt.get(row) + 1);
+                slot = findSlot(msb, lsb);
+            } else {
+                size++;
+            }
+            head = (head + 1) % capacity;
+
+            idMsb.put(row, msb);
+            idLsb.put(row, lsb);
+            users.put(row, userDictionary.intern(userId));
+            products.put(row, productDictionary.intern(productId + '\u0000' + productName));
+            statuses.put(row, (byte) statusCode);
+            quantities.put(row, quantity != null ? quantity : 0);
+            prices.put(row, priceMinor);
+            totals.put(row, totalMinor);
+            currencies.put(row, (byte) currencyDictionary.intern(currency));
+            createdAt.put(row, createdMicros);
+            updatedAt.put(row, updatedMicros);
+            versions.put(row, orderVersion);
+            slots.put(-(slot + 1), row + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Order toOrder(int row) {
+        String product = productDictionary.valueOf(products.get(row));
+        int separator = product.indexOf('\u0000');
+        String currency = currencyDictionary.valueOf(currencies.get(row));
+        return Order.builder()
+                .orderId(new UUID(idMsb.get(row), idLsb.get(row)))
+                .userId(userDictionary.valueOf(users.get(row)))
+                .productId(product.substring(0, separator))
+                .productName(product.substring(separator + 1))
+                .quantity(quantities.get(row))
+                .priceMinor(prices.get(row))
+                .totalAmountMinor(totals.get(row))
+                .currency(currency)
+                .price(Money.toMajor(prices.get(row), currency))
+                .totalAmount(Money.toMajor(totals.get(row), currency))
+                .status(STATUSES.get(statuses.get(row)))
+                .version((long) versions.get(row))
+                .createdAt(dateTime(createdAt.get(row)))
+                .updatedAt(dateTime(updatedAt.get(row)))
+                .build();
+    }
+
+    /**
+     * Slot holding the order, or -(insertion slot + 1) if absent
+     */
+    private int findSlot(long msb, long lsb) {
+        int slot = hash(msb, lsb) & slotMask;
+        while (true) {
+            int entry = slots.get(slot);
+            if (entry == 0) {
+                return -(slot + 1);
+            }
+            int row = entry - 1;
+            if (idMsb.get(row) == msb && idLsb.get(row) == lsb) {
+                return slot;
+            }
+            slot = (slot + 1) & slotMask;
+        }
+    }
+
+    /**
+     * Empty a slot, shifting later entries of the probe run back so lookups still find them
+     */
+    private void deleteSlot(int slot) {
+        int next = slot;
+        while (true) {
+            next = (next + 1) & slotMask;
+            int entry = slots.get(next);
+            if (entry == 0) {
+                break;
+            }
+            int row = entry - 1;
+            int home = hash(idMsb.get(row), idLsb.get(row)) & slotMask;
+            boolean reachable = slot <= next ? (slot < home && home <= next) : (slot < home || home <= next);
+            if (!reachable) {
+                slots.put(slot, entry);
+                slot = next;
+            }
+        }
+        slots.put(slot, 0);
+    }
+
+    private static int hash(long msb, long lsb) {
+        long h = msb ^ lsb;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static long micros(LocalDateTime time) {
+        return ChronoUnit.MICROS.between(LocalDateTime.of(1970, 1, 1, 0, 0), time);
+    }
+
+    private static LocalDateTime dateTime(long micros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1000, ZoneOffset.UTC);
+    }
+
+    private static ByteBuffer direct(int entries, int bytes) {
+        return ByteBuffer.allocateDirect(Math.multiplyExact(entries, bytes)).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Strings interned to dense int codes. Guarded by the index lock.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int intern(String value) {
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        int codeOf(String value) {
+            Integer code = codes.get(value);
+            return code != null ? code : -1;
+        }
+
+        String valueOf(int code) {
+            return values.get(code);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.spring.grpc.order.inventory;
+
+/**
+ * Not enough stock of a product to reserve an order's quantity
+ */
+public class InsufficientStockException extends IllegalStateException {
+
+    public InsufficientStockException(String productId, long quantity) {
+        super("Insufficient stock of " + productId + " for quantity " + quantity);
+    }
+}
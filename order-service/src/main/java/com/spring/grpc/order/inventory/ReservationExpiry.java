@@ -0,0 +1,64 @@
+package com.spring.grpc.order.inventory;
+
+import com.spring.grpc.order.repository.InventoryReservationRepository;
+import com.spring.grpc.order.service.OrderBusinessService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cancels orders whose stock holds outlived order.inventory.reservation-ttl.
+ *
+ * Releasing an expired hold alone would leave its order PENDING, and a payment
+ * arriving later (from a retry tier, the payment recovery sweep or a DLT replay)
+ * would confirm it after its stock was sold again. Cancelling the order stops
+ * the payment, and the cancellation releases the hold like any other.
+ *
+ * Runs every order.inventory.reconcile-interval-ms on every replica, one batch of
+ * order.inventory.expiry-batch-size orders per run: the releases are written
+ * behind, so the same orders would still look expired within the run.
+ */
+@Component
+@Slf4j
+public class ReservationExpiry {
+
+    private final StockReservations stockReservations;
+    private final InventoryReservationRepository reservationRepository;
+    private final OrderBusinessService orderBusinessService;
+    private final int batchSize;
+
+    public ReservationExpiry(StockReservations stockReservations,
+                             InventoryReservationRepository reservationRepository,
+                             OrderBusinessService orderBusinessService,
+                             @Value("${order.inventory.expiry-batch-size:500}") int batchSize) {
+        this.stockReservations = stockReservations;
+        this.reservationRepository = reservationRepository;
+        this.orderBusinessService = orderBusinessService;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(fixedDelayString = "${order.inventory.reconcile-interval-ms:30000}",
+            initialDelayString = "${order.inventory.reconcile-interval-ms:30000}")
+    public void cancelExpired() {
+        if (!stockReservations.isEnabled()) {
+            return;
+        }
+        try {
+            List<UUID> orderIds = reservationRepository.findExpiredOrders(LocalDateTime.now(), batchSize);
+            int cancelled = orderBusinessService.cancelExpired(orderIds);
+            if (!orderIds.isEmpty()) {
+                log.atInfo()
+                        .addKeyValue("expiredOrders", orderIds.size())
+                        .addKeyValue("cancelled", cancelled)
+                        .log("Stock holds expired");
+            }
+        } catch (Exception e) {
+            log.atWarn().setCause(e).log("Stock hold expiry failed");
+        }
+    }
+}
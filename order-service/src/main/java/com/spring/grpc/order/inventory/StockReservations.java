@@ -0,0 +1,489 @@
+package com.spring.grpc.order.inventory;
+
+import com.spring.grpc.order.entity.OrderLine;
+import com.spring.grpc.order.repository.InventoryRepository;
+import com.spring.grpc.order.repository.InventoryReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stock reservations for orders (order.inventory.enabled, off by default).
+ *
+ * Each replica takes stock out of the inventory table in chunks of
+ * order.inventory.allocation-chunk units (an allocation, recorded per replica in
+ * inventory_allocations) and reserves from it in memory with lock-free
+ * {@link StripedStock} counters. A hot product costs the database one row update
+ * per chunk instead of one row lock per order. Products without an inventory row
+ * are not stock-limited.
+ *
+ * Stock is taken before the order's transaction starts ({@link #reserve}), since
+ * topping up the counters from the inventory table needs a connection of its own.
+ * The order's transaction then {@link #hold}s it; if the order is not created the
+ * units go back to the counters.
+ *
+ * Holds are written behind: they are queued when the order's transaction commits
+ * and persisted every order.inventory.flush-interval-ms, in batches until nothing
+ * is pending, together with the commits (payment succeeded) and releases (order
+ * cancelled, payment failed) of held stock. A commit or release may be written
+ * before its hold, by this replica or another one; the order's outcome is recorded
+ * on its own (see {@link StockWriter}) and applied when the hold is written. A
+ * crash loses at most the unflushed holds; their units go back on sale with the
+ * replica's allocation.
+ *
+ * Holds older than order.inventory.reservation-ttl cancel their unpaid orders
+ * (see {@link ReservationExpiry}), which releases them. Final reservations and
+ * order states are purged after order.inventory.state-retention.
+ *
+ * Reconciliation, every order.inventory.reconcile-interval-ms on every replica:
+ * <ul>
+ *   <li>gives the allocations of replicas that stopped renewing them for
+ *       order.inventory.allocation-timeout back to inventory,</li>
+ *   <li>gives back this replica's allocation of products not reserved since the
+ *       last run, so idle stock is not stranded on one replica,</li>
+ *   <li>renews this replica's allocations.</li>
+ * </ul>
+ */
+@Component
+@Slf4j
+public class StockReservations {
+
+    private enum Outcome { TAKEN, UNTRACKED, INSUFFICIENT }
+
+    /**
+     * Units of a product held for an order, not yet persisted
+     */
+    public record Hold(UUID orderId, String productId, long quantity, LocalDateTime heldAt) {
+    }
+
+    /**
+     * Units taken for an order being created, per product. Either its transaction
+     * holds them or they are cancelled, whichever comes first.
+     */
+    public static final class Reservation {
+        private static final Reservation NONE = new Reservation(Map.of());
+
+        private final Map<String, Long> taken;
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Reservation(Map<String, Long> taken) {
+            this.taken = taken;
+        }
+
+        private boolean settle() {
+            return !taken.isEmpty() && settled.compareAndSet(false, true);
+        }
+    }
+
+    private final boolean enabled;
+    private final int stripes;
+    private final long allocationChunk;
+    private final int flushBatchSize;
+    private final long flushIntervalMillis;
+    private final Duration reservationTtl;
+    private final Duration allocationTimeout;
+    private final Duration stateRetention;
+    private final long reconcileIntervalNanos;
+    private final String holder;
+    private final StockWriter writer;
+    private final InventoryRepository inventoryRepository;
+    private final InventoryReservationRepository reservationRepository;
+
+    private final ConcurrentHashMap<String, StripedStock> stocks = new ConcurrentHashMap<>();
+    private final Queue<Hold> pendingHolds = new ConcurrentLinkedQueue<>();
+    private final Queue<UUID> pendingCommits = new ConcurrentLinkedQueue<>();
+    private final Queue<UUID> pendingReleases = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    private final Counter reserved;
+    private final Counter rejected;
+    private final Counter allocations;
+    private final ScheduledExecutorService flusher =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("inventory-writer-"));
+
+    public StockReservations(@Value("${order.inventory.enabled:false}") boolean enabled,
+                             @Value("${order.inventory.stripes:0}") int stripes,
+                             @Value("${order.inventory.allocation-chunk:100}") long allocationChunk,
+                             @Value("${order.inventory.flush-batch-size:1000}") int flushBatchSize,
+                             @Value("${order.inventory.flush-interval-ms:200}") long flushIntervalMillis,
+                             @Value("${order.inventory.reservation-ttl:15m}") Duration reservationTtl,
+                             @Value("${order.inventory.allocation-timeout:2m}") Duration allocationTimeout,
+                             @Value("${order.inventory.state-retention:7d}") Duration stateRetention,
+                             @Value("${order.inventory.reconcile-interval-ms:30000}") long reconcileIntervalMillis,
+                             @Value("${spring.application.name:order-service}") String applicationName,
+                             StockWriter writer,
+                             InventoryRepository inventoryRepository,
+                             InventoryReservationRepository reservationRepository,
+                             MeterRegistry registry) {
+        this.enabled = enabled;
+        this.stripes = stripes > 0 ? stripes : Runtime.getRuntime().availableProcessors();
+        this.allocationChunk = allocationChunk;
+        this.flushBatchSize = flushBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.reservationTtl = reservationTtl;
+        this.allocationTimeout = allocationTimeout;
+        this.stateRetention = stateRetention;
+        this.reconcileIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reconcileIntervalMillis);
+        this.holder = applicationName + "-" + UUID.randomUUID();
+        this.writer = writer;
+        this.inventoryRepository = inventoryRepository;
+        this.reservationRepository = reservationRepository;
+
+        this.reserved = reservationCounter(registry, "reserved");
+        this.rejected = reservationCounter(registry, "rejected");
+        this.allocations = Counter.builder("order.inventory.allocations")
+                .description("Chunks of stock allocated to this replica from the inventory table")
+                .register(registry);
+        Gauge.builder("order.inventory.allocated", this, StockReservations::allocated)
+                .description("Units allocated to this replica and not reserved yet")
+                .register(registry);
+        Gauge.builder("order.inventory.pending.writes", pendingWrites, AtomicInteger::get)
+                .description("Holds, commits and releases waiting to be written")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        flusher.scheduleWithFixedDelay(this::flushPending, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        log.atInfo().addKeyValue("holder", holder).addKeyValue("stripes", stripes).log("Inventory reservations enabled");
+    }
+
+    /**
+     * Write what is pending and give this replica's allocations back, so a clean
+     * shutdown strands no stock until the allocation timeout
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flusher.shutdown();
+        if (!enabled) {
+            return;
+        }
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        flushPending();
+        stocks.forEach(this::giveBack);
+    }
+
+    /**
+     * Take the order's quantities, all or nothing. Called before the order's
+     * transaction, which then {@link #hold}s them; {@link #cancel} them if the
+     * order is not created.
+     *
+     * @throws InsufficientStockException if a product does not have the quantity
+     */
+    public Reservation reserve(List<OrderLine> lines) {
+        if (!enabled) {
+            return Reservation.NONE;
+        }
+        Map<String, Long> quantities = new LinkedHashMap<>();
+        for (OrderLine line : lines) {
+            quantities.merge(line.getProductId(), (long) line.getQuantity(), Long::sum);
+        }
+
+        Map<String, Long> taken = new LinkedHashMap<>();
+        for (Map.Entry<String, Long> entry : quantities.entrySet()) {
+            String productId = entry.getKey();
+            long quantity = entry.getValue();
+            StripedStock stock = stocks.computeIfAbsent(productId, id -> new StripedStock(stripes));
+            if (!stock.tracked) {
+                continue;
+            }
+            Outcome outcome = stock.tryTake(quantity) ? Outcome.TAKEN : takeSlow(productId, stock, quantity);
+            if (outcome == Outcome.INSUFFICIENT) {
+                putBack(taken);
+                rejected.increment();
+                throw new InsufficientStockException(productId, quantity);
+            }
+            if (outcome == Outcome.TAKEN) {
+                taken.put(productId, quantity);
+            }
+        }
+        reserved.increment();
+        return taken.isEmpty() ? Reservation.NONE : new Reservation(taken);
+    }
+
+    /**
+     * Hold the reserved units for the order. Called inside the order's transaction:
+     * the holds are queued for writing when it commits, and the units return to
+     * the counters if it rolls back.
+     */
+    public void hold(UUID orderId, Reservation reservation) {
+        if (reservation.taken.isEmpty()) {
+            return;
+        }
+        LocalDateTime heldAt = LocalDateTime.now();
+        List<Hold> holds = new ArrayList<>(reservation.taken.size());
+        reservation.taken.forEach((productId, quantity) -> holds.add(new Hold(orderId, productId, quantity, heldAt)));
+        onCompletion(() -> {
+            if (reservation.settle()) {
+                enqueue(pendingHolds, holds);
+            }
+        }, () -> cancel(reservation));
+    }
+
+    /**
+     * Put the reserved units back on sale, unless the order's transaction already
+     * held them
+     */
+    public void cancel(Reservation reservation) {
+        if (reservation.settle()) {
+            putBack(reservation.taken);
+        }
+    }
+
+    /**
+     * The orders were paid: their held stock is sold
+     */
+    public void commit(Collection<UUID> orderIds) {
+        if (enabled && !orderIds.isEmpty()) {
+            List<UUID> ids = List.copyOf(orderIds);
+            onCompletion(() -> enqueue(pendingCommits, ids), () -> { });
+        }
+    }
+
+    /**
+     * The orders were cancelled or their payment failed: their held stock goes back
+     * on sale
+     */
+    public void release(Collection<UUID> orderIds) {
+        if (enabled && !orderIds.isEmpty()) {
+            List<UUID> ids = List.copyOf(orderIds);
+            onCompletion(() -> enqueue(pendingReleases, ids), () -> { });
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Units of the product allocated to this replica and not reserved yet
+     */
+    public long allocatedHere(String productId) {
+        StripedStock stock = stocks.get(productId);
+        return stock != null ? stock.remaining() : 0L;
+    }
+
+    @Scheduled(fixedDelayString = "${order.inventory.reconcile-interval-ms:30000}",
+            initialDelayString = "${order.inventory.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            int reclaimed = inventoryRepository.reclaimAllocations(now.minus(allocationTimeout), now);
+
+            long idleSince = System.nanoTime() - reconcileIntervalNanos;
+            stocks.forEach((productId, stock) -> {
+                if (!stock.tracked) {
+                    // Look for an inventory row again on the next reservation
+                    stock.tracked = true;
+                } else if (stock.lastTakeNanos - idleSince < 0) {
+                    giveBack(productId, stock);
+                }
+            });
+            inventoryRepository.renewAllocations(holder, now);
+
+            if (reclaimed > 0) {
+                log.atInfo()
+                        .addKeyValue("reclaimedProducts", reclaimed)
+                        .log("Inventory reconciled");
+            }
+        } catch (Exception e) {
+            log.atWarn().setCause(e).log("Inventory reconciliation failed");
+        }
+    }
+
+    /**
+     * Forget reservations and order states that have been final for longer than
+     * the retention. Payment results for them can no longer arrive, barring a
+     * replay from further back than that.
+     */
+    @Scheduled(fixedDelayString = "${order.inventory.purge-interval-ms:3600000}",
+            initialDelayString = "${order.inventory.purge-interval-ms:3600000}")
+    public void purgeFinal() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime before = LocalDateTime.now().minus(stateRetention);
+        try {
+            int reservations = reservationRepository.deleteFinalBefore(before);
+            int states = reservationRepository.deleteFinalStatesBefore(before);
+            if (reservations > 0 || states > 0) {
+                log.atInfo()
+                        .addKeyValue("reservations", reservations)
+                        .addKeyValue("orderStates", states)
+                        .log("Purged final inventory reservations");
+            }
+        } catch (Exception e) {
+            log.atWarn().setCause(e).log("Inventory purge failed");
+        }
+    }
+
+    /**
+     * Gather the product's stock across stripes, topping it up from the inventory
+     * table in chunks if that is not enough. One thread per product at a time.
+     */
+    private Outcome takeSlow(String productId, StripedStock stock, long quantity) {
+        synchronized (stock) {
+            if (stock.tryTake(quantity)) {
+                return Outcome.TAKEN;
+            }
+            long gathered = stock.drain();
+            try {
+                while (gathered < quantity) {
+                    Long allocated = writer.allocate(productId, holder, Math.max(allocationChunk, quantity - gathered));
+                    allocations.increment();
+                    if (allocated == null) {
+                        stock.tracked = false;
+                        return Outcome.UNTRACKED;
+                    }
+                    if (allocated == 0) {
+                        return Outcome.INSUFFICIENT;
+                    }
+                    gathered += allocated;
+                }
+                gathered -= quantity;
+                stock.lastTakeNanos = System.nanoTime();
+                return Outcome.TAKEN;
+            } finally {
+                stock.spread(gathered);
+            }
+        }
+    }
+
+    /**
+     * Return what this replica holds of the product to the inventory table
+     */
+    private void giveBack(String productId, StripedStock stock) {
+        synchronized (stock) {
+            long rest = stock.drain();
+            if (rest == 0) {
+                return;
+            }
+            try {
+                writer.returnAllocation(productId, holder, rest);
+            } catch (Exception e) {
+                stock.spread(rest);
+                log.atWarn().addKeyValue("productId", productId).setCause(e).log("Could not return allocation");
+            }
+        }
+    }
+
+    private void putBack(Map<String, Long> taken) {
+        taken.forEach((productId, quantity) -> stocks.get(productId).add(quantity));
+    }
+
+    private <T> void enqueue(Queue<T> queue, List<T> items) {
+        queue.addAll(items);
+        pendingWrites.addAndGet(items.size());
+    }
+
+    /**
+     * Write what is pending, batch by batch, until nothing is left or a write fails
+     */
+    void flushPending() {
+        while (flush()) {
+            // next batch
+        }
+    }
+
+    /**
+     * Write one batch of what is pending; false if there was nothing or the write
+     * failed (the batch is queued again)
+     */
+    private boolean flush() {
+        List<Hold> holds = poll(pendingHolds);
+        List<UUID> commits = poll(pendingCommits);
+        List<UUID> releases = poll(pendingReleases);
+        int batch = holds.size() + commits.size() + releases.size();
+        if (batch == 0) {
+            return false;
+        }
+        try {
+            writer.write(holder, holds, commits, releases, reservationTtl);
+            pendingWrites.addAndGet(-batch);
+            return true;
+        } catch (Exception e) {
+            pendingHolds.addAll(holds);
+            pendingCommits.addAll(commits);
+            pendingReleases.addAll(releases);
+            log.atWarn().addKeyValue("batch", batch).setCause(e).log("Inventory write failed, retrying");
+            return false;
+        }
+    }
+
+    private <T> List<T> poll(Queue<T> queue) {
+        List<T> batch = new ArrayList<>();
+        T item;
+        while (batch.size() < flushBatchSize && (item = queue.poll()) != null) {
+            batch.add(item);
+        }
+        return batch;
+    }
+
+    private long allocated() {
+        long total = 0;
+        for (StripedStock stock : stocks.values()) {
+            total += stock.remaining();
+        }
+        return total;
+    }
+
+    /**
+     * Run onCommit once the current transaction commits, onRollback if it does
+     * not; onCommit right away outside a transaction
+     */
+    private static void onCompletion(Runnable onCommit, Runnable onRollback) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            onCommit.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    onCommit.run();
+                } else {
+                    onRollback.run();
+                }
+            }
+        });
+    }
+
+    private static Counter reservationCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("order.inventory.reservations")
+                .description("Orders whose stock was reserved or rejected for lack of stock")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
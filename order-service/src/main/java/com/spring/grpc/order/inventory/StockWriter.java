@@ -0,0 +1,106 @@
+package com.spring.grpc.order.inventory;
+
+import com.spring.grpc.order.entity.InventoryReservation;
+import com.spring.grpc.order.repository.InventoryRepository;
+import com.spring.grpc.order.repository.InventoryReservationRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Database side of {@link StockReservations}: chunk allocations and the
+ * write-behind batches of holds, commits and releases
+ */
+@Component
+@RequiredArgsConstructor
+public class StockWriter {
+
+    private final InventoryRepository inventoryRepository;
+    private final InventoryReservationRepository reservationRepository;
+
+    /**
+     * Allocate up to chunk units to the holder in a transaction of its own, so the
+     * inventory row is locked for one statement. Called before the order's
+     * transaction starts, so no connection is held while waiting for this one.
+     *
+     * @return the units allocated, or null if the product is not stock-limited
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Long allocate(String productId, String holder, long chunk) {
+        return inventoryRepository.allocate(productId, holder, chunk, LocalDateTime.now());
+    }
+
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void returnAllocation(String productId, String holder, long quantity) {
+        inventoryRepository.returnAllocation(productId, holder, quantity, LocalDateTime.now());
+    }
+
+    /**
+     * Persist a batch in one transaction: the holds as reservations (one batched
+     * insert) with one allocation update per product, then the commits and
+     * releases. Holds go first, so an order held and cancelled within the same
+     * batch is released.
+     *
+     * Each order's state is recorded as well, and a hold whose order was already
+     * committed or released (in an earlier batch, or by another replica) gets that
+     * outcome as it is written. Otherwise a payment handled before the hold was
+     * written would leave it HELD, and its expiry would put sold stock back on sale.
+     */
+    @Transactional
+    public void write(String holder, List<StockReservations.Hold> holds, Collection<UUID> committed,
+                      Collection<UUID> released, Duration reservationTtl) {
+        LocalDateTime now = LocalDateTime.now();
+        if (!holds.isEmpty()) {
+            List<InventoryReservation> reservations = new ArrayList<>(holds.size());
+            Map<String, Long> heldByProduct = new HashMap<>();
+            Set<UUID> heldOrders = new TreeSet<>();
+            for (StockReservations.Hold hold : holds) {
+                heldOrders.add(hold.orderId());
+                reservations.add(InventoryReservation.builder()
+                        .orderId(hold.orderId())
+                        .productId(hold.productId())
+                        .quantity(hold.quantity())
+                        .status("HELD")
+                        .expiresAt(hold.heldAt().plus(reservationTtl))
+                        .createdAt(hold.heldAt())
+                        .updatedAt(now)
+                        .build());
+                heldByProduct.merge(hold.productId(), hold.quantity(), Long::sum);
+            }
+            // First, so it waits for a concurrent commit or release of these orders and is seen by it
+            reservationRepository.recordState(heldOrders, "HELD", now);
+            reservationRepository.saveAll(reservations);
+            heldByProduct.forEach((productId, quantity) ->
+                    inventoryRepository.deductAllocation(productId, holder, quantity, now));
+
+            List<UUID> settledCommitted = reservationRepository.findInState(heldOrders, "COMMITTED");
+            if (!settledCommitted.isEmpty()) {
+                reservationRepository.commit(settledCommitted, now);
+            }
+            List<UUID> settledReleased = reservationRepository.findInState(heldOrders, "RELEASED");
+            if (!settledReleased.isEmpty()) {
+                reservationRepository.release(settledReleased, now);
+            }
+        }
+        if (!committed.isEmpty()) {
+            reservationRepository.recordState(new TreeSet<>(committed), "COMMITTED", now);
+            reservationRepository.commit(committed, now);
+        }
+        if (!released.isEmpty()) {
+            reservationRepository.recordState(new TreeSet<>(released), "RELEASED", now);
+            reservationRepository.release(released, now);
+        }
+    }
+}
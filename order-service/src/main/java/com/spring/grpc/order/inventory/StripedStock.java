@@ -0,0 +1,91 @@
+package com.spring.grpc.order.inventory;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Stock of one product allocated to this replica, spread over stripes.
+ *
+ * A reservation CASes the stripe of its thread, falling over to the next ones,
+ * so concurrent reservations of one product mostly touch different cache lines
+ * and never lock. Gathering stock across stripes and refilling them is left to
+ * the caller, under a per-product lock.
+ */
+final class StripedStock {
+
+    // Stripes one 64-byte cache line apart, so CASes on neighbours do not false-share
+    private static final int PAD = 8;
+
+    private final AtomicLongArray cells;
+    private final int stripes;
+
+    // False once the product turned out to have no inventory row; reset by reconciliation
+    volatile boolean tracked = true;
+    volatile long lastTakeNanos = System.nanoTime();
+
+    StripedStock(int stripes) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PAD);
+    }
+
+    /**
+     * Take quantity from a single stripe; false if no stripe holds that much
+     */
+    boolean tryTake(long quantity) {
+        int home = home();
+        for (int i = 0; i < stripes; i++) {
+            int cell = ((home + i) % stripes) * PAD;
+            long current;
+            while ((current = cells.get(cell)) >= quantity) {
+                if (cells.compareAndSet(cell, current, current - quantity)) {
+                    lastTakeNanos = System.nanoTime();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Put quantity back on this thread's stripe
+     */
+    void add(long quantity) {
+        cells.addAndGet(home() * PAD, quantity);
+    }
+
+    /**
+     * Spread quantity evenly over the stripes
+     */
+    void spread(long quantity) {
+        long share = quantity / stripes;
+        long rest = quantity % stripes;
+        for (int i = 0; i < stripes; i++) {
+            long amount = share + (i < rest ? 1 : 0);
+            if (amount > 0) {
+                cells.addAndGet(i * PAD, amount);
+            }
+        }
+    }
+
+    /**
+     * Empty every stripe and return what they held
+     */
+    long drain() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.getAndSet(i * PAD, 0);
+        }
+        return total;
+    }
+
+    long remaining() {
+        long total = 0;
+        for (int i = 0; i < stripes; i++) {
+            total += cells.get(i * PAD);
+        }
+        return total;
+    }
+
+    private int home() {
+        return (int) (Thread.currentThread().getId() % stripes);
+    }
+}
@@ -0,0 +1,67 @@
+package com.spring.grpc.order.metrics;
+
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.devh.boot.grpc.server.interceptor.GrpcGlobalServerInterceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every gRPC call per method and status code.
+ *
+ * Timers are cached per method in an array indexed by status code, so recording a
+ * call costs one map lookup on the (interned) full method name and no tag building.
+ */
+@GrpcGlobalServerInterceptor
+public class GrpcServerMetricsInterceptor implements ServerInterceptor {
+
+    public static final String SERVER_TIMER = "order.grpc.server";
+
+    private static final Status.Code[] CODES = Status.Code.values();
+
+    private final MeterRegistry registry;
+    private final ConcurrentHashMap<String, Timer[]> timersByMethod = new ConcurrentHashMap<>();
+
+    public GrpcServerMetricsInterceptor(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+                                                                 Metadata headers,
+                                                                 ServerCallHandler<ReqT, RespT> next) {
+        long start = System.nanoTime();
+        String method = call.getMethodDescriptor().getFullMethodName();
+
+        ServerCall<ReqT, RespT> timedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                timer(method, status.getCode()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                super.close(status, trailers);
+            }
+        };
+        return next.startCall(timedCall, headers);
+    }
+
+    private Timer timer(String method, Status.Code code) {
+        Timer[] timers = timersByMethod.computeIfAbsent(method, m -> new Timer[CODES.length]);
+        Timer timer = timers[code.ordinal()];
+        if (timer == null) {
+            // A racing thread may register the same timer; the registry returns the same instance
+            timer = Timer.builder(SERVER_TIMER)
+                    .description("gRPC server call latency")
+                    .tag("method", method)
+                    .tag("status", code.name())
+                    .register(registry);
+            timers[code.ordinal()] = timer;
+        }
+        return timer;
+    }
+}
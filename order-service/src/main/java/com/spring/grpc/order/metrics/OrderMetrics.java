@@ -0,0 +1,150 @@
+package com.spring.grpc.order.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Per-stage latency timers for the order path.
+ *
+ * Timers are registered once up front and recorded with raw nanoTime deltas, so
+ * the hot path neither looks meters up by tag nor allocates Timer.Sample objects.
+ * SLO buckets for these meters are configured in application.yml under
+ * management.metrics.distribution.slo.
+ */
+@Component
+public class OrderMetrics {
+
+    public static final String STAGE_TIMER = "order.stage";
+    public static final String KAFKA_EVENTS = "order.kafka.events";
+    public static final String PAYMENT_RESULTS = "order.payment.results";
+    public static final String SUMMARY_EVENTS = "order.summary.events";
+
+    private final Timer dbSave;
+    private final Timer kafkaSendSuccess;
+    private final Timer kafkaSendFailure;
+    private final Counter kafkaSpilled;
+    private final Counter kafkaRetried;
+    private final Counter kafkaDropped;
+    private final Timer bulkStatusUpdate;
+    private final Counter paymentResultsApplied;
+    private final Counter paymentResultsIgnored;
+    private final Counter paymentResultsDeadLettered;
+    private final Counter paymentResultsReplayed;
+    private final Counter summaryEventsApplied;
+    private final Counter summaryEventsDuplicate;
+    private final MeterRegistry registry;
+
+    public OrderMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.dbSave = stageTimer(registry, "db.save", "success");
+        this.kafkaSendSuccess = stageTimer(registry, "kafka.send", "success");
+        this.kafkaSendFailure = stageTimer(registry, "kafka.send", "failure");
+        this.kafkaSpilled = kafkaCounter(registry, "spilled");
+        this.kafkaRetried = kafkaCounter(registry, "retried");
+        this.kafkaDropped = kafkaCounter(registry, "dropped");
+        this.bulkStatusUpdate = stageTimer(registry, "db.bulk-status-update", "success");
+        this.paymentResultsApplied = paymentResultCounter(registry, "applied");
+        this.paymentResultsIgnored = paymentResultCounter(registry, "ignored");
+        this.paymentResultsDeadLettered = paymentResultCounter(registry, "dead-lettered");
+        this.paymentResultsReplayed = paymentResultCounter(registry, "replayed");
+        this.summaryEventsApplied = summaryEventCounter(registry, "applied");
+        this.summaryEventsDuplicate = summaryEventCounter(registry, "duplicate");
+    }
+
+    public void recordDbSave(long startNanos) {
+        dbSave.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordKafkaSend(long startNanos, boolean success) {
+        (success ? kafkaSendSuccess : kafkaSendFailure)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordKafkaSpilled() {
+        kafkaSpilled.increment();
+    }
+
+    public void recordKafkaRetry() {
+        kafkaRetried.increment();
+    }
+
+    public void recordKafkaDropped() {
+        kafkaDropped.increment();
+    }
+
+    public void recordBulkStatusUpdate(long startNanos) {
+        bulkStatusUpdate.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Payment results that moved an order, and ones ignored because the order had
+     * already left PENDING (duplicates, or cancelled meanwhile)
+     */
+    public void recordPaymentResults(int applied, int ignored) {
+        paymentResultsApplied.increment(applied);
+        paymentResultsIgnored.increment(ignored);
+    }
+
+    /**
+     * Payment results written to a DLT after their batch kept failing
+     */
+    public void recordPaymentResultsDeadLettered(int count) {
+        paymentResultsDeadLettered.increment(count);
+    }
+
+    /**
+     * Dead-lettered payment results applied again by a replay
+     */
+    public void recordPaymentResultsReplayed(int count) {
+        paymentResultsReplayed.increment(count);
+    }
+
+    /**
+     * Events that changed a user summary, and redelivered or stale ones skipped
+     */
+    public void recordSummaryEvents(int applied, int duplicates) {
+        summaryEventsApplied.increment(applied);
+        summaryEventsDuplicate.increment(duplicates);
+    }
+
+    public void registerSpillBuffer(IntSupplier spilledCount) {
+        Gauge.builder("order.kafka.spill.size", spilledCount, IntSupplier::getAsInt)
+                .description("Order events waiting in the local spill buffer")
+                .register(registry);
+    }
+
+    private static Counter kafkaCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder(KAFKA_EVENTS)
+                .description("Order events that failed to send and were spilled, retried or dropped")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static Counter paymentResultCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder(PAYMENT_RESULTS)
+                .description("Payment result events applied to orders, ignored, dead-lettered or replayed")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static Counter summaryEventCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder(SUMMARY_EVENTS)
+                .description("Order and payment events applied to user summaries or skipped as duplicates")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static Timer stageTimer(MeterRegistry registry, String stage, String outcome) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Latency of individual stages on the order path")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
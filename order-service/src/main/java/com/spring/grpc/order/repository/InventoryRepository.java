@@ -0,0 +1,114 @@
+package com.spring.grpc.order.repository;
+
+import com.spring.grpc.order.entity.Inventory;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inventory Repository
+ *
+ * Also owns inventory_allocations: stock handed out of inventory.available to a
+ * running replica (holder) in chunks, which it reserves from in memory. Every
+ * method is one statement, so stock moves between the two tables atomically and
+ * an inventory row is locked only for that statement.
+ */
+@Repository
+public interface InventoryRepository extends JpaRepository<Inventory, String> {
+
+    /**
+     * Move up to chunk units of a product from inventory to the holder's allocation.
+     *
+     * @return the units allocated (0 when sold out), or null if the product has no
+     *         inventory row and is not stock-limited
+     */
+    @Transactional
+    @Query(value = "WITH taken AS (" +
+            "  UPDATE inventory i SET available = i.available - LEAST(o.available, :chunk), updated_at = :now " +
+            "  FROM (SELECT product_id, available FROM inventory WHERE product_id = :productId FOR UPDATE) o " +
+            "  WHERE i.product_id = o.product_id " +
+            "  RETURNING i.product_id, LEAST(o.available, :chunk) AS quantity), " +
+            "allocated AS (" +
+            "  INSERT INTO inventory_allocations (product_id, holder, quantity, renewed_at) " +
+            "  SELECT product_id, :holder, quantity, :now FROM taken " +
+            "  ON CONFLICT (product_id, holder) DO UPDATE " +
+            "  SET quantity = inventory_allocations.quantity + EXCLUDED.quantity, renewed_at = EXCLUDED.renewed_at) " +
+            "SELECT quantity FROM taken",
+            nativeQuery = true)
+    Long allocate(@Param("productId") String productId,
+                  @Param("holder") String holder,
+                  @Param("chunk") long chunk,
+                  @Param("now") LocalDateTime now);
+
+    /**
+     * Move units the holder no longer needs from its allocation back to inventory
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "WITH returned AS (" +
+            "  UPDATE inventory_allocations SET quantity = quantity - :quantity, renewed_at = :now " +
+            "  WHERE product_id = :productId AND holder = :holder RETURNING product_id) " +
+            "UPDATE inventory i SET available = i.available + :quantity, updated_at = :now " +
+            "FROM returned r WHERE i.product_id = r.product_id",
+            nativeQuery = true)
+    int returnAllocation(@Param("productId") String productId,
+                         @Param("holder") String holder,
+                         @Param("quantity") long quantity,
+                         @Param("now") LocalDateTime now);
+
+    /**
+     * Units of the holder's allocation that became reservations
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE inventory_allocations SET quantity = quantity - :quantity, renewed_at = :now " +
+            "WHERE product_id = :productId AND holder = :holder",
+            nativeQuery = true)
+    int deductAllocation(@Param("productId") String productId,
+                         @Param("holder") String holder,
+                         @Param("quantity") long quantity,
+                         @Param("now") LocalDateTime now);
+
+    /**
+     * Heartbeat: mark the holder's allocations as still in use
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE inventory_allocations SET renewed_at = :now WHERE holder = :holder",
+            nativeQuery = true)
+    int renewAllocations(@Param("holder") String holder, @Param("now") LocalDateTime now);
+
+    /**
+     * Give the allocations of holders that stopped renewing them (crashed replicas)
+     * back to inventory
+     *
+     * @return number of products restocked
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "WITH reclaimed AS (" +
+            "  DELETE FROM inventory_allocations WHERE renewed_at < :cutoff RETURNING product_id, quantity), " +
+            "summed AS (SELECT product_id, sum(quantity) AS quantity FROM reclaimed GROUP BY product_id) " +
+            "UPDATE inventory i SET available = i.available + s.quantity, updated_at = :now " +
+            "FROM summed s WHERE i.product_id = s.product_id",
+            nativeQuery = true)
+    int reclaimAllocations(@Param("cutoff") LocalDateTime cutoff, @Param("now") LocalDateTime now);
+
+    /**
+     * Add stock, creating the product's row (and so limiting its stock) if needed
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO inventory (product_id, available, updated_at) VALUES (:productId, :quantity, :now) " +
+            "ON CONFLICT (product_id) DO UPDATE " +
+            "SET available = inventory.available + EXCLUDED.available, updated_at = EXCLUDED.updated_at",
+            nativeQuery = true)
+    int restock(@Param("productId") String productId,
+                @Param("quantity") long quantity,
+                @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,110 @@
+package com.spring.grpc.order.repository;
+
+import com.spring.grpc.order.entity.InventoryReservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Inventory Reservation Repository
+ *
+ * Only HELD reservations change status, so a reservation is committed or
+ * released at most once whatever the number of replicas and redeliveries.
+ *
+ * inventory_order_states keeps each order's outcome apart from its reservations,
+ * so a commit or release written before the reservations is not lost.
+ */
+@Repository
+public interface InventoryReservationRepository extends JpaRepository<InventoryReservation, UUID> {
+
+    /**
+     * Record the orders' state: HELD when their reservations are written, COMMITTED
+     * or RELEASED when they are paid or cancelled. Only HELD is ever replaced, so
+     * the first outcome stands and HELD does not overwrite one.
+     *
+     * Writers of the same order lock its row in turn, so a hold and an outcome
+     * written concurrently by two replicas see each other's rows. The orderIds must
+     * be distinct, and sorted so concurrent writers lock them in the same order.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO inventory_order_states (order_id, status, updated_at) " +
+            "SELECT t.order_id, :status, :now FROM unnest(ARRAY[:orderIds]) AS t(order_id) " +
+            "ON CONFLICT (order_id) DO UPDATE SET status = EXCLUDED.status, updated_at = EXCLUDED.updated_at " +
+            "WHERE inventory_order_states.status = 'HELD' AND EXCLUDED.status <> 'HELD'",
+            nativeQuery = true)
+    int recordState(@Param("orderIds") Collection<UUID> orderIds,
+                    @Param("status") String status,
+                    @Param("now") LocalDateTime now);
+
+    /**
+     * Those of the orders that are in the given state
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT order_id FROM inventory_order_states WHERE order_id IN (:orderIds) AND status = :status",
+            nativeQuery = true)
+    List<UUID> findInState(@Param("orderIds") Collection<UUID> orderIds, @Param("status") String status);
+
+    /**
+     * Mark the held stock of paid orders as sold
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "UPDATE inventory_reservations SET status = 'COMMITTED', updated_at = :now " +
+            "WHERE order_id IN (:orderIds) AND status = 'HELD'",
+            nativeQuery = true)
+    int commit(@Param("orderIds") Collection<UUID> orderIds, @Param("now") LocalDateTime now);
+
+    /**
+     * Release the held stock of cancelled orders back to inventory
+     *
+     * @return number of products restocked
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "WITH released AS (" +
+            "  UPDATE inventory_reservations SET status = 'RELEASED', updated_at = :now " +
+            "  WHERE order_id IN (:orderIds) AND status = 'HELD' RETURNING product_id, quantity), " +
+            "summed AS (SELECT product_id, sum(quantity) AS quantity FROM released GROUP BY product_id) " +
+            "UPDATE inventory i SET available = i.available + s.quantity, updated_at = :now " +
+            "FROM summed s WHERE i.product_id = s.product_id",
+            nativeQuery = true)
+    int release(@Param("orderIds") Collection<UUID> orderIds, @Param("now") LocalDateTime now);
+
+    /**
+     * Orders with holds past their expiry (never paid nor cancelled), at most limit
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT DISTINCT order_id FROM inventory_reservations " +
+            "WHERE status = 'HELD' AND expires_at < :now LIMIT :limit",
+            nativeQuery = true)
+    List<UUID> findExpiredOrders(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Forget reservations that became final (COMMITTED or RELEASED) before the
+     * given time
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM inventory_reservations WHERE status <> 'HELD' AND updated_at < :before",
+            nativeQuery = true)
+    int deleteFinalBefore(@Param("before") LocalDateTime before);
+
+    /**
+     * Forget order states that became final (COMMITTED or RELEASED) before the
+     * given time
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "DELETE FROM inventory_order_states WHERE status <> 'HELD' AND updated_at < :before",
+            nativeQuery = true)
+    int deleteFinalStatesBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,34 @@
+package com.spring.grpc.order.repository;
+
+import com.spring.grpc.order.entity.OrderLine;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Order Line Repository
+ *
+ * The table is partitioned by created_at like orders; lines are looked up with
+ * their order's createdAt so only its partition is read.
+ */
+@Repository
+public interface OrderLineRepository extends JpaRepository<OrderLine, UUID> {
+
+    /**
+     * Lines of an order in line order
+     */
+    @Transactional(readOnly = true)
+    List<OrderLine> findByOrderIdAndCreatedAtOrderByLineNo(UUID orderId, LocalDateTime createdAt);
+
+    /**
+     * Lines of several orders created within [from, to], in line order per order
+     */
+    @Transactional(readOnly = true)
+    List<OrderLine> findByOrderIdInAndCreatedAtBetweenOrderByLineNo(Collection<UUID> orderIds,
+                                                                    LocalDateTime from, LocalDateTime to);
+}
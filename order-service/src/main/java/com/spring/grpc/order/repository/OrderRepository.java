@@ -4,33 +4,89 @@ import com.spring.grpc.order.entity.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Order Repository
+ *
+ * Read-only methods run on a read replica when replica routing is configured.
+ * The table is partitioned by created_at, so listings take a lower bound on it.
  */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, UUID> {
 
     /**
-     * Find orders by user ID with pagination
+     * Find orders created since the given time, with pagination. The bound on the
+     * partition key lets the planner skip older partitions.
      */
-    Page<Order> findByUserId(String userId, Pageable pageable);
+    @Transactional(readOnly = true)
+    Page<Order> findByCreatedAtGreaterThanEqual(LocalDateTime since, Pageable pageable);
+
+    /**
+     * Find orders of a user created since the given time, with pagination
+     */
+    @Transactional(readOnly = true)
+    Page<Order> findByUserIdAndCreatedAtGreaterThanEqual(String userId, LocalDateTime since, Pageable pageable);
+
+    /**
+     * Find orders of a user in a status created since the given time, with pagination
+     */
+    @Transactional(readOnly = true)
+    Page<Order> findByUserIdAndStatusAndCreatedAtGreaterThanEqual(String userId, String status, LocalDateTime since,
+                                                                 Pageable pageable);
+
+    /**
+     * Orders created after the given (createdAt, orderId) position, oldest first.
+     * Keyset pagination for reading a long range without OFFSET.
+     */
+    @Transactional(readOnly = true)
+    @Query("SELECT o FROM Order o WHERE o.createdAt >= :after " +
+            "AND (o.createdAt > :after OR o.orderId > :afterId) " +
+            "ORDER BY o.createdAt, o.orderId")
+    List<Order> findCreatedAfter(@Param("after") LocalDateTime after,
+                                 @Param("afterId") UUID afterId,
+                                 Pageable pageable);
 
     /**
      * Find order by order ID
      */
-    Optional<Order> findByOrderId(String orderId);
+    @Transactional(readOnly = true)
+    Optional<Order> findByOrderId(UUID orderId);
 
     /**
      * Count orders by user ID
      */
+    @Transactional(readOnly = true)
     long countByUserId(String userId);
 
     /**
-     * Find orders by status
+     * Find orders by status created since the given time, with pagination
+     */
+    @Transactional(readOnly = true)
+    Page<Order> findByStatusAndCreatedAtGreaterThanEqual(String status, LocalDateTime since, Pageable pageable);
+
+    /**
+     * Move orders to a new status, but only those currently in one of the allowed
+     * predecessor statuses. One statement: the state-machine check, the version
+     * bump and reading back the new rows all happen in the UPDATE ... RETURNING.
+     *
+     * @return the updated orders; orders not in an allowed status are absent
      */
-    Page<Order> findByStatus(String status, Pageable pageable);
+    @Transactional
+    @Query(value = "UPDATE orders SET status = :status, updated_at = :now, version = version + 1 " +
+            "WHERE order_id IN (:orderIds) AND status IN (:fromStatuses) RETURNING *",
+            nativeQuery = true)
+    List<Order> transitionStatus(@Param("orderIds") Collection<UUID> orderIds,
+                                 @Param("fromStatuses") Collection<String> fromStatuses,
+                                 @Param("status") String status,
+                                 @Param("now") LocalDateTime now);
 }
@@ -0,0 +1,24 @@
+package com.spring.grpc.order.repository;
+
+import com.spring.grpc.order.entity.Product;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Product Repository
+ */
+@Repository
+public interface ProductRepository extends JpaRepository<Product, String> {
+
+    /**
+     * Products changed since the given time, oldest change first. Not read-only, so
+     * it runs on the primary: a lagging replica could return a change only after
+     * the catalog has moved past it.
+     */
+    @Transactional
+    List<Product> findByUpdatedAtGreaterThanEqualOrderByUpdatedAt(LocalDateTime since);
+}
@@ -0,0 +1,32 @@
+package com.spring.grpc.order.repository;
+
+import com.spring.grpc.order.entity.UserOrderSummary;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * User Order Summary Repository
+ */
+@Repository
+public interface UserOrderSummaryRepository extends JpaRepository<UserOrderSummary, String> {
+
+    /**
+     * Find the summary of a user
+     */
+    @Transactional(readOnly = true)
+    Optional<UserOrderSummary> findByUserId(String userId);
+
+    /**
+     * Lock the summaries of the given users, in key order so concurrent batches
+     * do not deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<UserOrderSummary> findByUserIdInOrderByUserId(Collection<String> userIds);
+}
@@ -0,0 +1,28 @@
+package com.spring.grpc.order.repository;
+
+import com.spring.grpc.order.entity.UserSummaryOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Repository for the per-order state behind the user summaries
+ */
+@Repository
+public interface UserSummaryOrderRepository extends JpaRepository<UserSummaryOrder, UUID> {
+
+    /**
+     * Forget orders that reached a final status before the given time; events for
+     * them are no longer expected
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM UserSummaryOrder o WHERE o.status IN ('COMPLETED', 'CANCELLED') AND o.updatedAt < :before")
+    int deleteFinalBefore(@Param("before") LocalDateTime before);
+}
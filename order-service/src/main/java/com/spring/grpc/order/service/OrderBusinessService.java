@@ -1,21 +1,44 @@
 package com.spring.grpc.order.service;
 
+import com.spring.grpc.common.datasource.ReadYourWritesGuard;
+import com.spring.grpc.common.money.Money;
+import com.spring.grpc.order.catalog.ProductCatalog;
 import com.spring.grpc.order.dto.OrderEvent;
 import com.spring.grpc.order.entity.Order;
+import com.spring.grpc.order.entity.OrderLine;
+import com.spring.grpc.order.index.OrderSnapshotIndex;
+import com.spring.grpc.order.inventory.StockReservations;
+import com.spring.grpc.order.metrics.OrderMetrics;
+import com.spring.grpc.order.repository.OrderLineRepository;
 import com.spring.grpc.order.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Order Business Service
+ *
+ * Order events and the {@link OrderSnapshotIndex} are only updated once the
+ * transaction has committed, so neither ever shows a change that is rolled back.
  */
 @Service
 @RequiredArgsConstructor
@@ -23,7 +46,14 @@ import java.util.Optional;
 public class OrderBusinessService {
 
     private final OrderRepository orderRepository;
-    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OrderLineRepository orderLineRepository;
+    private final OrderEventPublisher orderEventPublisher;
+    private final OrderMetrics orderMetrics;
+    private final ReadYourWritesGuard readYourWrites;
+    private final OrderSnapshotIndex snapshotIndex;
+    private final ProductCatalog productCatalog;
+    private final StockReservations stockReservations;
+    private final TransactionTemplate transactionTemplate;
 
     @Value("${kafka.topics.order-created}")
     private String orderCreatedTopic;
@@ -31,99 +61,431 @@ public class OrderBusinessService {
     @Value("${kafka.topics.order-updated}")
     private String orderUpdatedTopic;
 
+    @Value("${datasource.partitioning.query-lookback:90d}")
+    private Duration queryLookback;
+
+    @Value("${order.money.default-currency:USD}")
+    private String defaultCurrency;
+
+    @Value("${order.max-items:100}")
+    private int maxItems;
+
     /**
-     * Create new order and publish event
+     * Validated currency of a request, or the default currency if none is given
+     *
+     * @throws IllegalArgumentException if the code is not an ISO 4217 currency
      */
-    @Transactional
-    public Order createOrder(String userId, String productId, String productName, 
-                            Integer quantity, Double price) {
-        // Calculate total amount
-        Double totalAmount = quantity * price;
+    public String currencyOf(String currency) {
+        return Money.currencyOr(currency, defaultCurrency);
+    }
 
-        // Create order entity
-        Order order = Order.builder()
-                .userId(userId)
+    /**
+     * Create new order of a single product and publish event
+     *
+     * @param priceMinor unit price in minor units of the currency
+     * @throws ArithmeticException if the total does not fit in a long
+     */
+    public Order createOrder(String userId, String productId, String productName,
+                             int quantity, long priceMinor, String currency) {
+        return createOrder(userId, List.of(OrderLine.builder()
                 .productId(productId)
                 .productName(productName)
                 .quantity(quantity)
-                .price(price)
-                .totalAmount(totalAmount)
+                .priceMinor(priceMinor)
+                .build()), currency);
+    }
+
+    /**
+     * Create new order of one or more items and publish one event for it.
+     *
+     * The order row and its lines go to the database in one flush; with JDBC
+     * batching (db-performance profile) the lines are a single multi-row INSERT.
+     * With the {@link ProductCatalog} enabled, names and prices come from it
+     * instead of the items.
+     *
+     * Stock is reserved before the transaction starts: topping up this replica's
+     * stock from the inventory table takes a connection of its own, which must not
+     * be waited for while holding the order's.
+     *
+     * @param items product, name, quantity and unit price (minor units) of each line
+     * @throws IllegalArgumentException if there are no items or more than order.max-items,
+     *                                  or an item is not in the catalog or not priced
+     * @throws ArithmeticException if the total does not fit in a long
+     * @throws com.spring.grpc.order.inventory.InsufficientStockException if a product
+     *                                  is out of stock (with order.inventory.enabled)
+     */
+    public Order createOrder(String userId, List<OrderLine> items, String currency) {
+        if (items.isEmpty() || items.size() > maxItems) {
+            throw new IllegalArgumentException("An order has 1 to " + maxItems + " items, got " + items.size());
+        }
+
+        // Line and order totals are exact, with no boxing or rounding
+        List<OrderLine> lines = new ArrayList<>(items.size());
+        long totalMinor = 0;
+        for (OrderLine item : items) {
+            OrderLine priced = priced(item, currency);
+            OrderLine line = OrderLine.builder()
+                    .lineNo(lines.size() + 1)
+                    .productId(priced.getProductId())
+                    .productName(priced.getProductName())
+                    .quantity(priced.getQuantity())
+                    .priceMinor(priced.getPriceMinor())
+                    .totalAmountMinor(Money.times(priced.getPriceMinor(), priced.getQuantity()))
+                    .build();
+            totalMinor = Math.addExact(totalMinor, line.getTotalAmountMinor());
+            lines.add(line);
+        }
+
+        // Create order entity; the product columns carry the first line
+        OrderLine first = lines.get(0);
+        Order order = Order.builder()
+                .userId(userId)
+                .productId(first.getProductId())
+                .productName(first.getProductName())
+                .quantity(first.getQuantity())
+                .priceMinor(first.getPriceMinor())
+                .totalAmountMinor(totalMinor)
+                .currency(currency)
                 .status("PENDING")
                 .build();
 
-        // Save to database
+        StockReservations.Reservation reservation = stockReservations.reserve(lines);
+        try {
+            return transactionTemplate.execute(status -> saveOrder(order, lines, reservation));
+        } finally {
+            // No-op once the order's transaction took the units
+            stockReservations.cancel(reservation);
+        }
+    }
+
+    private Order saveOrder(Order order, List<OrderLine> lines, StockReservations.Reservation reservation) {
+        // Save to database (flushed here so the inserts are timed, not deferred to commit)
+        long saveStart = System.nanoTime();
         Order savedOrder = orderRepository.save(order);
-        log.info("Order created successfully: {}", savedOrder.getOrderId());
+        for (OrderLine line : lines) {
+            line.setOrderId(savedOrder.getOrderId());
+            line.setCreatedAt(savedOrder.getCreatedAt());
+        }
+        stockReservations.hold(savedOrder.getOrderId(), reservation);
+        if (lines.size() > 1) {
+            orderLineRepository.saveAll(lines);
+        }
+        orderRepository.flush();
+        orderMetrics.recordDbSave(saveStart);
+        savedOrder.setLines(lines);
+        readYourWrites.recordWrite(savedOrder.getOrderId().toString());
+        log.debug("Order created successfully: {}", savedOrder.getOrderId());
 
-        // Publish Kafka event
-        publishOrderCreatedEvent(savedOrder);
+        afterCommit(() -> {
+            snapshotIndex.put(savedOrder);
+            publishOrderCreatedEvent(savedOrder);
+        });
 
         return savedOrder;
     }
 
     /**
-     * Get order by ID
+     * Get order by ID with its lines; read from the primary if this instance
+     * changed it recently
      */
     public Optional<Order> getOrderById(String orderId) {
-        return orderRepository.findByOrderId(orderId);
+        Optional<UUID> id = parseOrderId(orderId);
+        if (id.isEmpty()) {
+            return Optional.empty();
+        }
+        return readYourWrites.read(orderId, () -> orderRepository.findByOrderId(id.get()).map(this::withLines));
     }
 
     /**
-     * List orders with pagination
+     * List orders with pagination, newest first. Only orders created within the
+     * query lookback are listed, so only the most recent partitions are read.
      */
     public Page<Order> listOrders(int page, int size, String userId) {
-        PageRequest pageRequest = PageRequest.of(page, size);
-        
-        if (userId != null && !userId.isEmpty()) {
-            return orderRepository.findByUserId(userId, pageRequest);
+        return listOrders(page, size, userId, null, null);
+    }
+
+    /**
+     * List orders by status with pagination, newest first, within the query lookback
+     */
+    public Page<Order> listOrdersByStatus(String status, int page, int size) {
+        return listOrders(page, size, null, status, null);
+    }
+
+    /**
+     * List orders created within the given time (at most the query lookback),
+     * newest first, optionally by user and status. Served from the
+     * {@link OrderSnapshotIndex} when it covers the range, else from the database.
+     */
+    public Page<Order> listOrders(int page, int size, String userId, String status, Duration createdWithin) {
+        Duration lookback = createdWithin == null || createdWithin.compareTo(queryLookback) > 0
+                ? queryLookback : createdWithin;
+        LocalDateTime since = LocalDateTime.now().minus(lookback);
+        boolean byUser = userId != null && !userId.isEmpty();
+        boolean byStatus = status != null && !status.isEmpty();
+
+        Optional<Page<Order>> indexed = snapshotIndex.list(byUser ? userId : null, byStatus ? status : null,
+                since, page, size);
+        if (indexed.isPresent()) {
+            return indexed.get();
+        }
+
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdAt"));
+        if (byUser && byStatus) {
+            return orderRepository.findByUserIdAndStatusAndCreatedAtGreaterThanEqual(userId, status, since, pageRequest);
         }
-        
-        return orderRepository.findAll(pageRequest);
+        if (byUser) {
+            return orderRepository.findByUserIdAndCreatedAtGreaterThanEqual(userId, since, pageRequest);
+        }
+        if (byStatus) {
+            return orderRepository.findByStatusAndCreatedAtGreaterThanEqual(status, since, pageRequest);
+        }
+        return orderRepository.findByCreatedAtGreaterThanEqual(since, pageRequest);
     }
 
     /**
-     * Update order status
+     * Update order status, enforcing the {@link OrderStateMachine} transitions.
+     *
+     * The check and the write are one conditional UPDATE, so two concurrent
+     * requests cannot both move an order out of the same status.
+     *
+     * @throws IllegalArgumentException if no order may move to the new status
+     * @throws IllegalStateException if the order is not in a status it may move from
      */
     @Transactional
     public Order updateOrderStatus(String orderId, String newStatus) {
-        Optional<Order> orderOpt = orderRepository.findByOrderId(orderId);
-        
-        if (orderOpt.isEmpty()) {
-            throw new RuntimeException("Order not found: " + orderId);
+        Set<String> predecessors = OrderStateMachine.predecessorsOf(newStatus);
+        UUID id = parseOrderId(orderId).orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+        List<Order> updated = orderRepository.transitionStatus(
+                List.of(id), predecessors, newStatus, LocalDateTime.now());
+
+        if (updated.isEmpty()) {
+            Order order = orderRepository.findByOrderId(id)
+                    .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+            throw new IllegalStateException(
+                    "Cannot change order " + orderId + " from " + order.getStatus() + " to " + newStatus);
         }
 
-        Order order = orderOpt.get();
-        String oldStatus = order.getStatus();
-        order.setStatus(newStatus);
-        
-        Order updatedOrder = orderRepository.save(order);
-        log.info("Order status updated: {} -> {}", oldStatus, newStatus);
+        Order updatedOrder = withLines(updated.get(0));
+        if ("CANCELLED".equals(newStatus)) {
+            stockReservations.release(List.of(id));
+        }
+        readYourWrites.recordWrite(orderId);
+        log.debug("Order status updated: {} -> {}", orderId, newStatus);
 
-        // Publish update event
-        publishOrderUpdatedEvent(updatedOrder);
+        afterCommit(() -> {
+            snapshotIndex.put(updatedOrder);
+            publishOrderUpdatedEvent(updatedOrder);
+        });
 
         return updatedOrder;
     }
 
+    /**
+     * Apply a batch of payment results: move each still-PENDING order to its new
+     * status with one conditional UPDATE per target status. Orders that already left
+     * PENDING (e.g. cancelled meanwhile, or a duplicate result) are left alone.
+     *
+     * @param statusByOrderId new status (CONFIRMED or CANCELLED) per orderId
+     * @return number of orders updated
+     */
+    @Transactional
+    public int applyPaymentResults(Map<String, String> statusByOrderId) {
+        if (statusByOrderId.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<UUID>> orderIdsByStatus = new HashMap<>();
+        statusByOrderId.forEach((orderId, status) -> parseOrderId(orderId).ifPresent(id ->
+                orderIdsByStatus.computeIfAbsent(status, s -> new ArrayList<>()).add(id)));
+
+        LocalDateTime now = LocalDateTime.now();
+        long updateStart = System.nanoTime();
+        List<Order> updatedOrders = new ArrayList<>();
+        orderIdsByStatus.forEach((status, orderIds) ->
+                updatedOrders.addAll(orderRepository.transitionStatus(orderIds, List.of("PENDING"), status, now)));
+        orderMetrics.recordBulkStatusUpdate(updateStart);
+        orderMetrics.recordPaymentResults(updatedOrders.size(), statusByOrderId.size() - updatedOrders.size());
+
+        List<UUID> confirmed = new ArrayList<>();
+        List<UUID> cancelled = new ArrayList<>();
+        for (Order order : updatedOrders) {
+            ("CONFIRMED".equals(order.getStatus()) ? confirmed : cancelled).add(order.getOrderId());
+            readYourWrites.recordWrite(order.getOrderId().toString());
+        }
+        stockReservations.commit(confirmed);
+        stockReservations.release(cancelled);
+        // The updated events carry the lines, so consumers can attribute each order per product
+        withLines(updatedOrders);
+
+        afterCommit(() -> {
+            for (Order order : updatedOrders) {
+                snapshotIndex.put(order);
+                publishOrderUpdatedEvent(order);
+            }
+        });
+
+        return updatedOrders.size();
+    }
+
+    /**
+     * Cancel orders whose stock hold expired before they were paid, so a payment
+     * that arrives later can no longer confirm them (it is refunded instead) and
+     * their stock goes back on sale. Orders that left PENDING meanwhile keep their
+     * status; their holds are committed if they were paid and released otherwise.
+     *
+     * @return number of orders cancelled
+     */
+    @Transactional
+    public int cancelExpired(List<UUID> orderIds) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        List<Order> cancelled = orderRepository.transitionStatus(
+                orderIds, List.of("PENDING"), "CANCELLED", LocalDateTime.now());
+
+        Set<UUID> cancelledIds = new HashSet<>();
+        for (Order order : cancelled) {
+            cancelledIds.add(order.getOrderId());
+            readYourWrites.recordWrite(order.getOrderId().toString());
+        }
+        List<UUID> released = new ArrayList<>(cancelledIds);
+        List<UUID> committed = new ArrayList<>();
+        for (UUID orderId : orderIds) {
+            if (!cancelledIds.contains(orderId)) {
+                String status = orderRepository.findByOrderId(orderId).map(Order::getStatus).orElse("CANCELLED");
+                ("CANCELLED".equals(status) ? released : committed).add(orderId);
+            }
+        }
+        stockReservations.commit(committed);
+        stockReservations.release(released);
+        withLines(cancelled);
+
+        afterCommit(() -> {
+            for (Order order : cancelled) {
+                snapshotIndex.put(order);
+                publishOrderUpdatedEvent(order);
+            }
+        });
+
+        return cancelled.size();
+    }
+
+    /**
+     * The item priced from the catalog, or as sent by the client when the catalog
+     * is off
+     */
+    private OrderLine priced(OrderLine item, String currency) {
+        if (productCatalog.isEnabled()) {
+            return productCatalog.price(item, currency);
+        }
+        if (item.getProductName() == null || item.getProductName().isBlank() || item.getPriceMinor() <= 0) {
+            throw new IllegalArgumentException("Product name and a positive price are required for "
+                    + item.getProductId());
+        }
+        return item;
+    }
+
+    /**
+     * Load the order's lines; an order without stored lines is a single item,
+     * described by the order row itself
+     */
+    private Order withLines(Order order) {
+        List<OrderLine> lines = orderLineRepository.findByOrderIdAndCreatedAtOrderByLineNo(
+                order.getOrderId(), order.getCreatedAt());
+        order.setLines(lines.isEmpty() ? List.of(singleLine(order)) : lines);
+        return order;
+    }
+
+    /**
+     * Load the lines of several orders with one query, bounded by their created_at
+     * range so only those partitions are read
+     */
+    private void withLines(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        LocalDateTime from = orders.get(0).getCreatedAt();
+        LocalDateTime to = from;
+        for (Order order : orders) {
+            from = order.getCreatedAt().isBefore(from) ? order.getCreatedAt() : from;
+            to = order.getCreatedAt().isAfter(to) ? order.getCreatedAt() : to;
+        }
+        Map<UUID, List<OrderLine>> linesByOrder = new HashMap<>();
+        for (OrderLine line : orderLineRepository.findByOrderIdInAndCreatedAtBetweenOrderByLineNo(
+                orders.stream().map(Order::getOrderId).toList(), from, to)) {
+            linesByOrder.computeIfAbsent(line.getOrderId(), id -> new ArrayList<>()).add(line);
+        }
+        for (Order order : orders) {
+            order.setLines(linesByOrder.getOrDefault(order.getOrderId(), List.of(singleLine(order))));
+        }
+    }
+
+    private static OrderLine singleLine(Order order) {
+        return OrderLine.builder()
+                .orderId(order.getOrderId())
+                .lineNo(1)
+                .productId(order.getProductId())
+                .productName(order.getProductName())
+                .quantity(order.getQuantity())
+                .priceMinor(order.getPriceMinor())
+                .totalAmountMinor(order.getTotalAmountMinor())
+                .createdAt(order.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Run once the current transaction has committed, or now when there is none.
+     * Nothing runs if it rolls back.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Order IDs arrive as strings from the APIs and Kafka; anything that is not a
+     * UUID cannot match an order
+     */
+    static Optional<UUID> parseOrderId(String orderId) {
+        try {
+            return Optional.of(UUID.fromString(orderId));
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return Optional.empty();
+        }
+    }
+
     /**
      * Publish order created event to Kafka
      */
     private void publishOrderCreatedEvent(Order order) {
         OrderEvent event = OrderEvent.builder()
-                .orderId(order.getOrderId())
+                .orderId(order.getOrderId().toString())
                 .userId(order.getUserId())
                 .productId(order.getProductId())
                 .productName(order.getProductName())
                 .quantity(order.getQuantity())
                 .price(order.getPrice())
                 .totalAmount(order.getTotalAmount())
+                .priceMinor(order.getPriceMinor())
+                .totalAmountMinor(order.getTotalAmountMinor())
+                .currency(order.getCurrency())
+                .lines(eventLines(order))
                 .status(order.getStatus())
                 .createdAt(order.getCreatedAt())
+                .version(order.getVersion())
                 .eventType("CREATED")
                 .build();
 
-        kafkaTemplate.send(orderCreatedTopic, order.getOrderId(), event);
-        log.info("Published order created event to Kafka: {}", order.getOrderId());
+        orderEventPublisher.publish(orderCreatedTopic, event.getOrderId(), event);
+        log.debug("Published order created event to Kafka: {}", order.getOrderId());
     }
 
     /**
@@ -131,19 +493,38 @@ public class OrderBusinessService {
      */
     private void publishOrderUpdatedEvent(Order order) {
         OrderEvent event = OrderEvent.builder()
-                .orderId(order.getOrderId())
+                .orderId(order.getOrderId().toString())
                 .userId(order.getUserId())
                 .productId(order.getProductId())
                 .productName(order.getProductName())
                 .quantity(order.getQuantity())
                 .price(order.getPrice())
                 .totalAmount(order.getTotalAmount())
+                .priceMinor(order.getPriceMinor())
+                .totalAmountMinor(order.getTotalAmountMinor())
+                .currency(order.getCurrency())
+                .lines(eventLines(order))
                 .status(order.getStatus())
                 .createdAt(order.getCreatedAt())
+                .updatedAt(order.getUpdatedAt())
+                .version(order.getVersion())
                 .eventType("UPDATED")
                 .build();
 
-        kafkaTemplate.send(orderUpdatedTopic, order.getOrderId(), event);
-        log.info("Published order updated event to Kafka: {}", order.getOrderId());
+        orderEventPublisher.publish(orderUpdatedTopic, event.getOrderId(), event);
+        log.debug("Published order updated event to Kafka: {}", order.getOrderId());
+    }
+
+    private static List<OrderEvent.Line> eventLines(Order order) {
+        return order.getLines().stream()
+                .map(line -> OrderEvent.Line.builder()
+                        .lineNo(line.getLineNo())
+                        .productId(line.getProductId())
+                        .productName(line.getProductName())
+                        .quantity(line.getQuantity())
+                        .priceMinor(line.getPriceMinor())
+                        .totalAmountMinor(line.getTotalAmountMinor())
+                        .build())
+                .toList();
     }
 }
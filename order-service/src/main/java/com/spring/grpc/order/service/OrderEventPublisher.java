@@ -0,0 +1,275 @@
+package com.spring.grpc.order.service;
+
+import com.spring.grpc.order.dto.OrderEvent;
+import com.spring.grpc.order.metrics.OrderMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Publishes order events without blocking the caller.
+ *
+ * Completion is handled on the producer's callback. Events whose send fails after
+ * the producer's own retries, or that the producer can't accept within
+ * max.block.ms, go into a bounded local spill buffer that is re-driven on a
+ * schedule, so a broker outage delays events instead of losing them (up to the
+ * buffer capacity).
+ *
+ * The spill buffer keeps one queue per key, oldest first. While a key has events
+ * in it, new events for that key are queued behind them instead of being sent
+ * directly, and a key's events are re-sent one at a time, so consumers see each
+ * order's events in the order they were published.
+ *
+ * On shutdown the spill buffer is re-driven once more and the producer flushed,
+ * after the gRPC and HTTP servers have drained, so the events of the last
+ * requests are sent before the producer closes.
+ */
+@Component
+@Slf4j
+public class OrderEventPublisher {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final OrderMetrics orderMetrics;
+    // Spilled events per key, oldest key first; guarded by itself
+    private final Map<String, KeySpill> spilled = new LinkedHashMap<>();
+    // Sends the next event of a key once the previous one went through, off the producer's I/O thread
+    private final ExecutorService redriveExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("order-event-redrive-"));
+    private final int spillCapacity;
+    private final int maxAttempts;
+    private final int retryBatchSize;
+    private int spilledCount;
+    private boolean draining;
+
+    public OrderEventPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                               OrderMetrics orderMetrics,
+                               @Value("${kafka.producer.spill.capacity:10000}") int spillCapacity,
+                               @Value("${kafka.producer.spill.max-attempts:10}") int maxAttempts,
+                               @Value("${kafka.producer.spill.retry-batch-size:500}") int retryBatchSize) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.orderMetrics = orderMetrics;
+        this.spillCapacity = spillCapacity;
+        this.maxAttempts = maxAttempts;
+        this.retryBatchSize = retryBatchSize;
+        orderMetrics.registerSpillBuffer(this::getSpilledCount);
+    }
+
+    /**
+     * Send event; returns as soon as it is handed to the producer, or queued
+     * behind earlier spilled events of the same key
+     */
+    public void publish(String topic, String key, OrderEvent event) {
+        SpilledEvent pending = new SpilledEvent(topic, key, event, 0);
+        synchronized (spilled) {
+            KeySpill queue = spilled.get(key);
+            if (queue != null) {
+                if (spilledCount >= spillCapacity) {
+                    dropFull(pending);
+                } else {
+                    queue.events.addLast(pending);
+                    spilledCount++;
+                }
+                return;
+            }
+        }
+        send(pending);
+    }
+
+    /**
+     * Re-drive spilled events: starts sending the oldest event of up to
+     * retry-batch-size keys. Each key then continues with its next event as soon as
+     * one goes through, and stops at the first failure until the next run.
+     */
+    @Scheduled(fixedDelayString = "${kafka.producer.spill.retry-interval-ms:5000}")
+    public void retrySpilled() {
+        List<SpilledEvent> heads = new ArrayList<>();
+        synchronized (spilled) {
+            for (KeySpill queue : spilled.values()) {
+                if (heads.size() >= retryBatchSize) {
+                    break;
+                }
+                if (!queue.sending) {
+                    queue.sending = true;
+                    heads.add(queue.events.peekFirst());
+                }
+            }
+        }
+        heads.forEach(this::redrive);
+    }
+
+    @PreDestroy
+    public void drain() {
+        long start = System.nanoTime();
+        List<SpilledEvent> remaining = new ArrayList<>();
+        synchronized (spilled) {
+            draining = true;
+            for (KeySpill queue : spilled.values()) {
+                // Behind the event still being re-sent, if any; the producer keeps their order per partition
+                Iterator<SpilledEvent> events = queue.events.iterator();
+                if (queue.sending) {
+                    events.next();
+                }
+                while (events.hasNext()) {
+                    remaining.add(events.next());
+                    events.remove();
+                    spilledCount--;
+                }
+            }
+        }
+        redriveExecutor.shutdown();
+        remaining.forEach(pending -> send(pending.nextAttempt()));
+        // Blocks until every send has completed; failures land in the spill buffer again
+        kafkaTemplate.flush();
+
+        int lost = getSpilledCount();
+        if (lost > 0) {
+            log.atError().addKeyValue("events", lost).log("Order events still unsent at shutdown");
+        }
+        log.atInfo()
+                .addKeyValue("durationMs", (System.nanoTime() - start) / 1_000_000)
+                .log("Order event producer drained");
+    }
+
+    public int getSpilledCount() {
+        synchronized (spilled) {
+            return spilledCount;
+        }
+    }
+
+    private void send(SpilledEvent pending) {
+        long sendStart = System.nanoTime();
+        try {
+            kafkaTemplate.send(pending.topic(), pending.key(), pending.event())
+                    .whenComplete((result, ex) -> {
+                        orderMetrics.recordKafkaSend(sendStart, ex == null);
+                        if (ex != null) {
+                            spill(pending, ex);
+                        }
+                    });
+        } catch (Exception e) {
+            // Thrown synchronously when the producer can't accept the record within max.block.ms
+            // (no metadata for the topic, or the buffer is full)
+            orderMetrics.recordKafkaSend(sendStart, false);
+            spill(pending, e);
+        }
+    }
+
+    private void redrive(SpilledEvent head) {
+        orderMetrics.recordKafkaRetry();
+        long sendStart = System.nanoTime();
+        try {
+            kafkaTemplate.send(head.topic(), head.key(), head.event())
+                    .whenComplete((result, ex) -> {
+                        orderMetrics.recordKafkaSend(sendStart, ex == null);
+                        redriven(head, ex);
+                    });
+        } catch (Exception e) {
+            orderMetrics.recordKafkaSend(sendStart, false);
+            redriven(head, e);
+        }
+    }
+
+    private void redriven(SpilledEvent head, Throwable cause) {
+        SpilledEvent retry = cause == null ? null : head.nextAttempt();
+        boolean exhausted = retry != null && retry.attempts() >= maxAttempts;
+        SpilledEvent next = null;
+        synchronized (spilled) {
+            KeySpill queue = spilled.get(head.key());
+            queue.events.pollFirst();
+            spilledCount--;
+            if (retry != null && !exhausted) {
+                // Stays first, so newer events of the key keep waiting behind it
+                queue.events.addFirst(retry);
+                spilledCount++;
+            }
+            if (queue.events.isEmpty()) {
+                // New events of this key are sent directly again
+                spilled.remove(head.key());
+            } else if (cause == null && !draining) {
+                next = queue.events.peekFirst();
+            } else {
+                queue.sending = false;
+            }
+        }
+
+        if (exhausted) {
+            dropExhausted(retry, cause);
+        } else if (retry != null) {
+            log.atWarn()
+                    .addKeyValue("topic", head.topic())
+                    .addKeyValue("key", head.key())
+                    .addKeyValue("attempts", retry.attempts())
+                    .setCause(cause)
+                    .log("Order event re-send failed, kept for retry");
+        }
+        if (next != null) {
+            SpilledEvent following = next;
+            redriveExecutor.execute(() -> redrive(following));
+        }
+    }
+
+    private void spill(SpilledEvent pending, Throwable cause) {
+        SpilledEvent retry = pending.nextAttempt();
+        if (retry.attempts() >= maxAttempts) {
+            dropExhausted(retry, cause);
+            return;
+        }
+        synchronized (spilled) {
+            if (spilledCount >= spillCapacity) {
+                dropFull(pending);
+                return;
+            }
+            spilled.computeIfAbsent(pending.key(), key -> new KeySpill()).events.addLast(retry);
+            spilledCount++;
+        }
+        orderMetrics.recordKafkaSpilled();
+        log.atWarn()
+                .addKeyValue("topic", pending.topic())
+                .addKeyValue("key", pending.key())
+                .addKeyValue("attempts", retry.attempts())
+                .setCause(cause)
+                .log("Order event send failed, spilled for retry");
+    }
+
+    private void dropExhausted(SpilledEvent pending, Throwable cause) {
+        orderMetrics.recordKafkaDropped();
+        log.atError()
+                .addKeyValue("topic", pending.topic())
+                .addKeyValue("key", pending.key())
+                .addKeyValue("attempts", pending.attempts())
+                .setCause(cause)
+                .log("Dropping order event after repeated send failures");
+    }
+
+    private void dropFull(SpilledEvent pending) {
+        orderMetrics.recordKafkaDropped();
+        log.atError()
+                .addKeyValue("topic", pending.topic())
+                .addKeyValue("key", pending.key())
+                .log("Spill buffer full, dropping order event");
+    }
+
+    private record SpilledEvent(String topic, String key, OrderEvent event, int attempts) {
+        SpilledEvent nextAttempt() {
+            return new SpilledEvent(topic, key, event, attempts + 1);
+        }
+    }
+
+    private static final class KeySpill {
+        final ArrayDeque<SpilledEvent> events = new ArrayDeque<>();
+        boolean sending;
+    }
+}
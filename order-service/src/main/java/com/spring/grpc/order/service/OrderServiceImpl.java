@@ -1,15 +1,31 @@
 package com.spring.grpc.order.service;
 
+import com.spring.grpc.common.money.Money;
+import com.spring.grpc.order.analytics.OrderWindowStore;
+import com.spring.grpc.order.analytics.WindowSnapshot;
 import com.spring.grpc.order.entity.Order;
+import com.spring.grpc.order.entity.OrderLine;
+import com.spring.grpc.order.entity.UserOrderSummary;
+import com.spring.grpc.order.inventory.InsufficientStockException;
+import com.spring.grpc.order.watch.OrderUpdate;
+import com.spring.grpc.order.watch.OrderUpdateHub;
+import com.spring.grpc.order.watch.WatchSubscriber;
 import com.spring.grpc.proto.*;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import net.devh.boot.grpc.server.service.GrpcService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 
+import java.time.Duration;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * gRPC Service Implementation for Order Service
@@ -20,32 +36,37 @@ import java.util.Optional;
 public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
 
     private final OrderBusinessService orderBusinessService;
+    private final OrderUpdateHub orderUpdateHub;
+    private final UserSummaryService userSummaryService;
+    private final OrderWindowStore orderWindowStore;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
+    @Value("${order.watch.max-order-ids:100}")
+    private int maxWatchedOrderIds;
+
     @Override
     public void createOrder(CreateOrderRequest request, 
                            StreamObserver<CreateOrderResponse> responseObserver) {
         try {
-            log.info("Received createOrder request for user: {}", request.getUserId());
+            log.debug("Received createOrder request for user: {}", request.getUserId());
 
             // Create order
-            Order order = orderBusinessService.createOrder(
-                    request.getUserId(),
-                    request.getProductId(),
-                    request.getProductName(),
-                    request.getQuantity(),
-                    request.getPrice()
-            );
+            String currency = orderBusinessService.currencyOf(request.getCurrency());
+            Order order = orderBusinessService.createOrder(request.getUserId(), itemsOf(request, currency), currency);
 
             // Build response
             CreateOrderResponse response = CreateOrderResponse.newBuilder()
-                    .setOrderId(order.getOrderId())
+                    .setOrderId(order.getOrderId().toString())
                     .setUserId(order.getUserId())
                     .setProductId(order.getProductId())
                     .setProductName(order.getProductName())
                     .setQuantity(order.getQuantity())
                     .setPrice(order.getPrice())
                     .setTotalAmount(order.getTotalAmount())
+                    .setPriceMinor(order.getPriceMinor())
+                    .setTotalAmountMinor(order.getTotalAmountMinor())
+                    .setCurrency(order.getCurrency())
+                    .addAllLines(buildOrderLines(order))
                     .setStatus(order.getStatus())
                     .setCreatedAt(order.getCreatedAt().format(FORMATTER))
                     .setMessage("Order created successfully")
@@ -54,8 +75,20 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
             responseObserver.onNext(response);
             responseObserver.onCompleted();
 
-            log.info("Successfully created order: {}", order.getOrderId());
+            log.atInfo()
+                    .addKeyValue("rpc", "CreateOrder")
+                    .addKeyValue("orderId", order.getOrderId())
+                    .addKeyValue("userId", order.getUserId())
+                    .log("Order created");
 
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            responseObserver.onError(io.grpc.Status.INVALID_ARGUMENT
+                    .withDescription("Invalid items, price or currency: " + e.getMessage())
+                    .asRuntimeException());
+        } catch (InsufficientStockException e) {
+            responseObserver.onError(io.grpc.Status.FAILED_PRECONDITION
+                    .withDescription(e.getMessage())
+                    .asRuntimeException());
         } catch (Exception e) {
             log.error("Error creating order", e);
             responseObserver.onError(io.grpc.Status.INTERNAL
@@ -68,7 +101,7 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
     public void getOrder(GetOrderRequest request, 
                         StreamObserver<GetOrderResponse> responseObserver) {
         try {
-            log.info("Received getOrder request for orderId: {}", request.getOrderId());
+            log.debug("Received getOrder request for orderId: {}", request.getOrderId());
 
             Optional<Order> orderOpt = orderBusinessService.getOrderById(request.getOrderId());
 
@@ -85,7 +118,7 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
             responseObserver.onNext(response);
             responseObserver.onCompleted();
 
-            log.info("Successfully retrieved order: {}", order.getOrderId());
+            log.debug("Successfully retrieved order: {}", order.getOrderId());
 
         } catch (Exception e) {
             log.error("Error retrieving order", e);
@@ -99,14 +132,17 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
     public void listOrders(ListOrdersRequest request, 
                           StreamObserver<ListOrdersResponse> responseObserver) {
         try {
-            log.info("Received listOrders request - page: {}, size: {}", 
+            log.debug("Received listOrders request - page: {}, size: {}", 
                     request.getPage(), request.getSize());
 
             int page = request.getPage() > 0 ? request.getPage() : 0;
             int size = request.getSize() > 0 ? request.getSize() : 10;
             String userId = request.getUserId().isEmpty() ? null : request.getUserId();
+            String status = request.getStatus().isEmpty() ? null : request.getStatus();
+            Duration createdWithin = request.getCreatedWithinSeconds() > 0
+                    ? Duration.ofSeconds(request.getCreatedWithinSeconds()) : null;
 
-            Page<Order> ordersPage = orderBusinessService.listOrders(page, size, userId);
+            Page<Order> ordersPage = orderBusinessService.listOrders(page, size, userId, status, createdWithin);
 
             ListOrdersResponse.Builder responseBuilder = ListOrdersResponse.newBuilder()
                     .setTotalCount((int) ordersPage.getTotalElements())
@@ -119,7 +155,7 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
             responseObserver.onNext(responseBuilder.build());
             responseObserver.onCompleted();
 
-            log.info("Successfully listed {} orders", ordersPage.getContent().size());
+            log.debug("Successfully listed {} orders", ordersPage.getContent().size());
 
         } catch (Exception e) {
             log.error("Error listing orders", e);
@@ -133,7 +169,7 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
     public void updateOrderStatus(UpdateOrderStatusRequest request, 
                                   StreamObserver<UpdateOrderStatusResponse> responseObserver) {
         try {
-            log.info("Received updateOrderStatus request for orderId: {} -> {}", 
+            log.debug("Received updateOrderStatus request for orderId: {} -> {}", 
                     request.getOrderId(), request.getStatus());
 
             Order updatedOrder = orderBusinessService.updateOrderStatus(
@@ -142,7 +178,7 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
             );
 
             UpdateOrderStatusResponse response = UpdateOrderStatusResponse.newBuilder()
-                    .setOrderId(updatedOrder.getOrderId())
+                    .setOrderId(updatedOrder.getOrderId().toString())
                     .setStatus(updatedOrder.getStatus())
                     .setUpdatedAt(updatedOrder.getUpdatedAt().format(FORMATTER))
                     .setMessage("Order status updated successfully")
@@ -151,8 +187,20 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
             responseObserver.onNext(response);
             responseObserver.onCompleted();
 
-            log.info("Successfully updated order status: {}", updatedOrder.getOrderId());
+            log.atInfo()
+                    .addKeyValue("rpc", "UpdateOrderStatus")
+                    .addKeyValue("orderId", updatedOrder.getOrderId())
+                    .addKeyValue("status", updatedOrder.getStatus())
+                    .log("Order status updated");
 
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(io.grpc.Status.INVALID_ARGUMENT
+                    .withDescription(e.getMessage())
+                    .asRuntimeException());
+        } catch (IllegalStateException e) {
+            responseObserver.onError(io.grpc.Status.FAILED_PRECONDITION
+                    .withDescription(e.getMessage())
+                    .asRuntimeException());
         } catch (Exception e) {
             log.error("Error updating order status", e);
             responseObserver.onError(io.grpc.Status.INTERNAL
@@ -161,18 +209,242 @@ public class OrderServiceImpl extends OrderServiceGrpc.OrderServiceImplBase {
         }
     }
 
+    @Override
+    public void watchOrder(WatchOrderRequest request,
+                           StreamObserver<OrderStatusUpdate> responseObserver) {
+        WatchSubscriber subscriber = null;
+        try {
+            String orderId = request.getOrderId();
+            log.debug("Received watchOrder request for orderId: {}", orderId);
+
+            // Subscribe before reading the current status so no change in between is missed
+            subscriber = orderUpdateHub.subscribe(
+                    (ServerCallStreamObserver<OrderStatusUpdate>) responseObserver, null, Set.of(orderId), true);
+
+            Optional<Order> orderOpt = orderBusinessService.getOrderById(orderId);
+            if (orderOpt.isEmpty()) {
+                subscriber.close();
+                responseObserver.onError(io.grpc.Status.NOT_FOUND
+                        .withDescription("Order not found: " + orderId)
+                        .asRuntimeException());
+                return;
+            }
+            Order order = orderOpt.get();
+            subscriber.offer(new OrderUpdate(order.getOrderId().toString(), order.getUserId(), order.getStatus(),
+                    order.getUpdatedAt()));
+
+        } catch (StatusRuntimeException e) {
+            if (subscriber != null) {
+                subscriber.close();
+            }
+            responseObserver.onError(e);
+        } catch (Exception e) {
+            log.error("Error watching order", e);
+            if (subscriber != null) {
+                subscriber.close();
+            }
+            responseObserver.onError(io.grpc.Status.INTERNAL
+                    .withDescription("Error watching order: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+
+    @Override
+    public void watchOrders(WatchOrdersRequest request,
+                            StreamObserver<OrderStatusUpdate> responseObserver) {
+        log.debug("Received watchOrders request - userId: {}, orderIds: {}",
+                request.getUserId(), request.getOrderIdsCount());
+
+        if (request.getOrderIdsCount() == 0 && request.getUserId().isEmpty()) {
+            responseObserver.onError(io.grpc.Status.INVALID_ARGUMENT
+                    .withDescription("Either user_id or order_ids is required")
+                    .asRuntimeException());
+            return;
+        }
+        if (request.getOrderIdsCount() > maxWatchedOrderIds) {
+            responseObserver.onError(io.grpc.Status.INVALID_ARGUMENT
+                    .withDescription("At most " + maxWatchedOrderIds + " order_ids per stream")
+                    .asRuntimeException());
+            return;
+        }
+
+        try {
+            // Only changes from now on are streamed; there is no initial snapshot
+            Set<String> orderIds = request.getOrderIdsCount() > 0 ? Set.copyOf(request.getOrderIdsList()) : null;
+            String userId = orderIds == null ? request.getUserId() : null;
+            orderUpdateHub.subscribe((ServerCallStreamObserver<OrderStatusUpdate>) responseObserver,
+                    userId, orderIds, false);
+        } catch (StatusRuntimeException e) {
+            responseObserver.onError(e);
+        }
+    }
+
+    @Override
+    public void getUserSummary(GetUserSummaryRequest request,
+                               StreamObserver<UserSummary> responseObserver) {
+        try {
+            log.debug("Received getUserSummary request for userId: {}", request.getUserId());
+
+            Optional<UserOrderSummary> summaryOpt = userSummaryService.getSummary(request.getUserId());
+
+            if (summaryOpt.isEmpty()) {
+                responseObserver.onError(io.grpc.Status.NOT_FOUND
+                        .withDescription("No orders for user: " + request.getUserId())
+                        .asRuntimeException());
+                return;
+            }
+
+            responseObserver.onNext(buildUserSummary(summaryOpt.get()));
+            responseObserver.onCompleted();
+
+        } catch (Exception e) {
+            log.error("Error retrieving user summary", e);
+            responseObserver.onError(io.grpc.Status.INTERNAL
+                    .withDescription("Error retrieving user summary: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+
+    @Override
+    public void getOrderAnalytics(GetOrderAnalyticsRequest request,
+                                  StreamObserver<OrderAnalytics> responseObserver) {
+        long windowSeconds = request.getWindowSeconds() > 0 ? request.getWindowSeconds() : 60;
+        int topProducts = request.getTopProducts() > 0 ? request.getTopProducts() : 10;
+        Duration window = Duration.ofSeconds(windowSeconds);
+
+        WindowSnapshot snapshot;
+        try {
+            snapshot = request.getTumbling()
+                    ? orderWindowStore.tumbling(window, topProducts)
+                    : orderWindowStore.sliding(window, topProducts);
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(io.grpc.Status.INVALID_ARGUMENT
+                    .withDescription(e.getMessage())
+                    .asRuntimeException());
+            return;
+        }
+
+        OrderAnalytics.Builder builder = OrderAnalytics.newBuilder()
+                .setWindowStart(snapshot.start().toString())
+                .setWindowEnd(snapshot.end().toString())
+                .setTotals(buildWindowCounts(snapshot.totals()))
+                .setOrdersPerMinute(snapshot.ordersPerMinute())
+                .setPaymentsCompleted(snapshot.paymentsCompleted())
+                .setPaymentsFailed(snapshot.paymentsFailed())
+                .setPaymentFailureRate(snapshot.paymentFailureRate());
+        for (WindowSnapshot.ProductCounts product : snapshot.products()) {
+            builder.addProducts(ProductWindowCounts.newBuilder()
+                    .setProductId(product.productId())
+                    .setCounts(buildWindowCounts(product.counts())));
+        }
+
+        responseObserver.onNext(builder.build());
+        responseObserver.onCompleted();
+    }
+
+    private WindowCounts buildWindowCounts(WindowSnapshot.Counts counts) {
+        return WindowCounts.newBuilder()
+                .setCreated(counts.created())
+                .setConfirmed(counts.confirmed())
+                .setProcessing(counts.processing())
+                .setCompleted(counts.completed())
+                .setCancelled(counts.cancelled())
+                .setBooked(counts.booked())
+                .setRevenue(counts.revenue())
+                .setBookedMinor(counts.bookedMinor())
+                .setRevenueMinor(counts.revenueMinor())
+                .setCurrency(counts.currency())
+                .build();
+    }
+
+    private UserSummary buildUserSummary(UserOrderSummary summary) {
+        UserSummary.Builder builder = UserSummary.newBuilder()
+                .setUserId(summary.getUserId())
+                .setTotalOrders(summary.totalOrders())
+                .setPendingOrders(summary.getPendingOrders())
+                .setConfirmedOrders(summary.getConfirmedOrders())
+                .setProcessingOrders(summary.getProcessingOrders())
+                .setCompletedOrders(summary.getCompletedOrders())
+                .setCancelledOrders(summary.getCancelledOrders())
+                .setTotalSpend(Money.toMajor(summary.getTotalSpendMinor(), userSummaryService.summaryCurrency()))
+                .setTotalSpendMinor(summary.getTotalSpendMinor())
+                .setCurrency(userSummaryService.summaryCurrency())
+                .setPaymentsCompleted(summary.getPaymentsCompleted())
+                .setPaymentsFailed(summary.getPaymentsFailed())
+                .setPaymentSuccessRate(summary.paymentSuccessRate())
+                .setUpdatedAt(summary.getUpdatedAt().format(FORMATTER));
+        if (summary.getLastOrderId() != null) {
+            builder.setLastOrderId(summary.getLastOrderId().toString())
+                    .setLastOrderAt(summary.getLastOrderAt().format(FORMATTER));
+        }
+        return builder.build();
+    }
+
     private GetOrderResponse buildGetOrderResponse(Order order) {
         return GetOrderResponse.newBuilder()
-                .setOrderId(order.getOrderId())
+                .setOrderId(order.getOrderId().toString())
                 .setUserId(order.getUserId())
                 .setProductId(order.getProductId())
                 .setProductName(order.getProductName())
                 .setQuantity(order.getQuantity())
                 .setPrice(order.getPrice())
                 .setTotalAmount(order.getTotalAmount())
+                .setPriceMinor(order.getPriceMinor())
+                .setTotalAmountMinor(order.getTotalAmountMinor())
+                .setCurrency(order.getCurrency())
+                .addAllLines(buildOrderLines(order))
                 .setStatus(order.getStatus())
                 .setCreatedAt(order.getCreatedAt().format(FORMATTER))
                 .setUpdatedAt(order.getUpdatedAt().format(FORMATTER))
                 .build();
     }
+
+    private static List<com.spring.grpc.proto.OrderLine> buildOrderLines(Order order) {
+        if (order.getLines() == null) {
+            return List.of();
+        }
+        return order.getLines().stream()
+                .map(line -> com.spring.grpc.proto.OrderLine.newBuilder()
+                        .setLineNo(line.getLineNo())
+                        .setProductId(line.getProductId())
+                        .setProductName(line.getProductName())
+                        .setQuantity(line.getQuantity())
+                        .setPriceMinor(line.getPriceMinor())
+                        .setTotalAmountMinor(line.getTotalAmountMinor())
+                        .build())
+                .toList();
+    }
+
+    /**
+     * The request's items, or its single product. Clients not migrated yet send
+     * only the double price. Names and prices may be left out when the product
+     * catalog prices orders.
+     *
+     * @throws IllegalArgumentException if a product or quantity is missing
+     */
+    private static List<OrderLine> itemsOf(CreateOrderRequest request, String currency) {
+        if (request.getItemsCount() == 0) {
+            long priceMinor = request.getPriceMinor() > 0
+                    ? request.getPriceMinor()
+                    : Money.toMinor(request.getPrice(), currency);
+            return List.of(item(request.getProductId(), request.getProductName(), request.getQuantity(), priceMinor));
+        }
+        List<OrderLine> items = new ArrayList<>(request.getItemsCount());
+        for (OrderItem item : request.getItemsList()) {
+            items.add(item(item.getProductId(), item.getProductName(), item.getQuantity(), item.getPriceMinor()));
+        }
+        return items;
+    }
+
+    private static OrderLine item(String productId, String productName, int quantity, long priceMinor) {
+        if (productId.isEmpty() || quantity < 1) {
+            throw new IllegalArgumentException("product_id and a positive quantity are required");
+        }
+        return OrderLine.builder()
+                .productId(productId)
+                .productName(productName)
+                .quantity(quantity)
+                .priceMinor(priceMinor)
+                .build();
+    }
 }
@@ -0,0 +1,45 @@
+package com.spring.grpc.order.service;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Allowed order status transitions:
+ *
+ * <pre>
+ * PENDING → CONFIRMED → PROCESSING → COMPLETED
+ *    ↓          ↓            ↓
+ *    └──────→ CANCELLED ←────┘
+ * </pre>
+ *
+ * Expressed as the statuses an order may be in before moving to a given status, so
+ * a transition can be enforced by the database in the UPDATE's WHERE clause.
+ */
+public final class OrderStateMachine {
+
+    private static final Map<String, Set<String>> PREDECESSORS = Map.of(
+            "CONFIRMED", Set.of("PENDING"),
+            "PROCESSING", Set.of("CONFIRMED"),
+            "COMPLETED", Set.of("PROCESSING"),
+            "CANCELLED", Set.of("PENDING", "CONFIRMED", "PROCESSING")
+    );
+
+    private OrderStateMachine() {
+    }
+
+    /**
+     * Statuses from which an order may move to the given status
+     *
+     * @throws IllegalArgumentException if no order can move there (PENDING, or an
+     *                                  unknown status)
+     */
+    public static Set<String> predecessorsOf(String status) {
+        Set<String> predecessors = PREDECESSORS.get(status);
+        if (predecessors == null) {
+            throw new IllegalArgumentException("Orders cannot be moved to status " + status
+                    + ", only to one of " + new TreeSet<>(PREDECESSORS.keySet()));
+        }
+        return predecessors;
+    }
+}
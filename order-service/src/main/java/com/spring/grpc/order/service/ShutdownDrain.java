@@ -0,0 +1,52 @@
+package com.spring.grpc.order.service;
+
+import com.spring.grpc.order.watch.OrderUpdateHub;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * First step of a graceful shutdown, run when the context starts closing.
+ *
+ * By then the readiness state is REFUSING_TRAFFIC. Requests keep being served for
+ * order.shutdown.drain-delay, so load balancers and clients stop routing here
+ * before the servers stop accepting. The watch streams are then ended, and the
+ * lifecycle phases that follow drain the rest:
+ * <ol>
+ *   <li>the gRPC server finishes in-flight calls within grpc.server.shutdown-grace-period,</li>
+ *   <li>the HTTP server finishes in-flight requests (server.shutdown: graceful),</li>
+ *   <li>the Kafka listener containers finish their batch and commit it,</li>
+ *   <li>pending stock reservations are written and the producer is flushed.</li>
+ * </ol>
+ */
+@Component
+@Slf4j
+public class ShutdownDrain {
+
+    private final OrderUpdateHub orderUpdateHub;
+    private final Duration drainDelay;
+
+    public ShutdownDrain(OrderUpdateHub orderUpdateHub,
+                         @Value("${order.shutdown.drain-delay:0s}") Duration drainDelay) {
+        this.orderUpdateHub = orderUpdateHub;
+        this.drainDelay = drainDelay;
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onClose() {
+        if (!drainDelay.isZero()) {
+            log.atInfo().addKeyValue("delayMs", drainDelay.toMillis()).log("Refusing traffic, draining");
+            try {
+                Thread.sleep(drainDelay.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        int streams = orderUpdateHub.shutdown();
+        log.atInfo().addKeyValue("watchStreams", streams).log("Watch streams ended for shutdown");
+    }
+}
@@ -0,0 +1,260 @@
+package com.spring.grpc.order.service;
+
+import com.spring.grpc.common.money.Money;
+import com.spring.grpc.order.dto.OrderEvent;
+import com.spring.grpc.order.dto.PaymentResultEvent;
+import com.spring.grpc.order.entity.UserOrderSummary;
+import com.spring.grpc.order.entity.UserSummaryOrder;
+import com.spring.grpc.order.metrics.OrderMetrics;
+import com.spring.grpc.order.repository.UserOrderSummaryRepository;
+import com.spring.grpc.order.repository.UserSummaryOrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Per-user order summaries (CQRS read model).
+ *
+ * Summaries are maintained incrementally from order.created, order.updated and
+ * the payment results, so reading one is a single primary-key lookup instead of
+ * an aggregation over the user's orders.
+ *
+ * The last applied state of every order is kept next to the summaries. Each event
+ * removes the order's old contribution from its user's counters and adds the new
+ * one, which makes redelivered events and out-of-order topics harmless: order
+ * events only apply when their version is newer than the stored one, and an
+ * order's payment result only applies once.
+ */
+@Service
+@Slf4j
+public class UserSummaryService {
+
+    private final UserOrderSummaryRepository summaryRepository;
+    private final UserSummaryOrderRepository orderStateRepository;
+    private final OrderMetrics orderMetrics;
+    private final Duration stateRetention;
+    private final String summaryCurrency;
+
+    public UserSummaryService(UserOrderSummaryRepository summaryRepository,
+                              UserSummaryOrderRepository orderStateRepository,
+                              OrderMetrics orderMetrics,
+                              @Value("${order.summary.state-retention:7d}") Duration stateRetention,
+                              @Value("${order.money.default-currency:USD}") String summaryCurrency) {
+        this.summaryRepository = summaryRepository;
+        this.orderStateRepository = orderStateRepository;
+        this.orderMetrics = orderMetrics;
+        this.stateRetention = stateRetention;
+        this.summaryCurrency = summaryCurrency;
+    }
+
+    public String summaryCurrency() {
+        return summaryCurrency;
+    }
+
+    public Optional<UserOrderSummary> getSummary(String userId) {
+        return summaryRepository.findByUserId(userId);
+    }
+
+    /**
+     * Apply a batch of order.created / order.updated events. Returns the number of
+     * events that changed a summary.
+     */
+    @Transactional
+    public int applyOrderEvents(List<OrderEvent> events) {
+        // Keep only the newest event per order; the older ones would be superseded anyway
+        Map<UUID, OrderEvent> latest = new LinkedHashMap<>();
+        int duplicates = 0;
+        for (OrderEvent event : events) {
+            Optional<UUID> orderId = OrderBusinessService.parseOrderId(event == null ? null : event.getOrderId());
+            if (orderId.isEmpty() || event.getUserId() == null || event.getStatus() == null) {
+                continue;
+            }
+            OrderEvent previous = latest.get(orderId.get());
+            if (previous != null) {
+                duplicates++;
+                if (versionOf(previous) >= versionOf(event)) {
+                    continue;
+                }
+            }
+            latest.put(orderId.get(), event);
+        }
+
+        Map<UUID, UserSummaryOrder> states = loadStates(latest.keySet());
+        Set<String> userIds = latest.values().stream().map(OrderEvent::getUserId).collect(Collectors.toSet());
+        Map<String, UserOrderSummary> summaries = lockSummaries(userIds);
+
+        List<UserSummaryOrder> changed = new ArrayList<>();
+        for (Map.Entry<UUID, OrderEvent> entry : latest.entrySet()) {
+            OrderEvent event = entry.getValue();
+            long version = versionOf(event);
+            UserSummaryOrder state = states.get(entry.getKey());
+            if (state != null && version <= state.getOrderVersion()) {
+                duplicates++;
+                continue;
+            }
+            if (state == null) {
+                state = UserSummaryOrder.builder()
+                        .orderId(entry.getKey())
+                        .userId(event.getUserId())
+                        .orderVersion(-1L)
+                        .build();
+            }
+
+            UserOrderSummary summary = summaries.get(state.getUserId());
+            summary.apply(state, -1);
+            state.setStatus(event.getStatus());
+            state.setOrderVersion(version);
+            state.setTotalAmountMinor(spendMinor(event.getCurrency(), event.getTotalAmountMinor(), event.getTotalAmount()));
+            summary.apply(state, 1);
+            summary.recordOrder(entry.getKey(), event.getCreatedAt());
+            changed.add(state);
+        }
+
+        save(changed, summaries);
+        orderMetrics.recordSummaryEvents(changed.size(), duplicates);
+        return changed.size();
+    }
+
+    /**
+     * Apply a batch of payment results. Returns the number of results that changed
+     * a summary.
+     */
+    @Transactional
+    public int applyPaymentResults(List<PaymentResultEvent> events) {
+        // The first settled result of an order wins, as on the payment side
+        Map<UUID, PaymentResultEvent> results = new LinkedHashMap<>();
+        int duplicates = 0;
+        for (PaymentResultEvent event : events) {
+            Optional<UUID> orderId = OrderBusinessService.parseOrderId(event == null ? null : event.getOrderId());
+            if (orderId.isEmpty() || event.getUserId() == null
+                    || !("COMPLETED".equals(event.getStatus()) || "FAILED".equals(event.getStatus()))) {
+                continue;
+            }
+            if (results.putIfAbsent(orderId.get(), event) != null) {
+                duplicates++;
+            }
+        }
+
+        Map<UUID, UserSummaryOrder> states = loadStates(results.keySet());
+        Set<String> userIds = new HashSet<>();
+        results.forEach((orderId, event) -> {
+            UserSummaryOrder state = states.get(orderId);
+            userIds.add(state != null ? state.getUserId() : event.getUserId());
+        });
+        Map<String, UserOrderSummary> summaries = lockSummaries(userIds);
+
+        List<UserSummaryOrder> changed = new ArrayList<>();
+        for (Map.Entry<UUID, PaymentResultEvent> entry : results.entrySet()) {
+            PaymentResultEvent event = entry.getValue();
+            UserSummaryOrder state = states.get(entry.getKey());
+            if (state != null && state.getPaymentStatus() != null) {
+                duplicates++;
+                continue;
+            }
+            if (state == null) {
+                // The result overtook the order's own events; they fill in status and version later
+                state = UserSummaryOrder.builder()
+                        .orderId(entry.getKey())
+                        .userId(event.getUserId())
+                        .orderVersion(-1L)
+                        .totalAmountMinor(spendMinor(event.getCurrency(), event.getAmountMinor(), event.getAmount()))
+                        .build();
+            }
+
+            UserOrderSummary summary = summaries.get(state.getUserId());
+            summary.apply(state, -1);
+            state.setPaymentStatus(event.getStatus());
+            summary.apply(state, 1);
+            changed.add(state);
+        }
+
+        save(changed, summaries);
+        orderMetrics.recordSummaryEvents(changed.size(), duplicates);
+        return changed.size();
+    }
+
+    /**
+     * Forget the state of orders that have been final for longer than the
+     * retention. Their events can no longer arrive, barring a replay from further
+     * back than that.
+     */
+    @Scheduled(fixedDelayString = "${order.summary.purge-interval-ms:3600000}",
+            initialDelayString = "${order.summary.purge-interval-ms:3600000}")
+    public void purgeFinalOrderStates() {
+        int purged = orderStateRepository.deleteFinalBefore(LocalDateTime.now().minus(stateRetention));
+        if (purged > 0) {
+            log.atInfo().addKeyValue("purged", purged).log("Purged final order states of user summaries");
+        }
+    }
+
+    private Map<UUID, UserSummaryOrder> loadStates(Set<UUID> orderIds) {
+        if (orderIds.isEmpty()) {
+            return new HashMap<>();
+        }
+        return orderStateRepository.findAllById(orderIds).stream()
+                .collect(Collectors.toMap(UserSummaryOrder::getOrderId, Function.identity()));
+    }
+
+    /**
+     * Lock the users' summaries for the rest of the transaction, creating empty
+     * ones for users seen for the first time
+     */
+    private Map<String, UserOrderSummary> lockSummaries(Set<String> userIds) {
+        Map<String, UserOrderSummary> summaries = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return summaries;
+        }
+        for (UserOrderSummary summary : summaryRepository.findByUserIdInOrderByUserId(userIds)) {
+            summaries.put(summary.getUserId(), summary);
+        }
+        for (String userId : userIds) {
+            summaries.computeIfAbsent(userId, id -> UserOrderSummary.builder().userId(id).build());
+        }
+        return summaries;
+    }
+
+    private void save(List<UserSummaryOrder> changed, Map<String, UserOrderSummary> summaries) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        Set<String> touched = changed.stream().map(UserSummaryOrder::getUserId).collect(Collectors.toSet());
+        orderStateRepository.saveAll(changed);
+        summaryRepository.saveAll(summaries.values().stream()
+                .filter(summary -> touched.contains(summary.getUserId()))
+                .toList());
+    }
+
+    /**
+     * Amount counted as spend: minor units if in the summary currency, else 0.
+     * Events from before minor units carry only the double, in the default currency.
+     */
+    private long spendMinor(String currency, long amountMinor, Double legacyAmount) {
+        if (currency == null) {
+            return legacyAmount != null ? Money.toMinor(legacyAmount, summaryCurrency) : 0L;
+        }
+        return summaryCurrency.equals(currency) ? amountMinor : 0L;
+    }
+
+    /**
+     * Events published before Order.version was added to them count as version 0
+     */
+    private static long versionOf(OrderEvent event) {
+        return event.getVersion() != null ? event.getVersion() : 0L;
+    }
+}
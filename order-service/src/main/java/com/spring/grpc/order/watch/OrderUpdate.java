@@ -0,0 +1,9 @@
+package com.spring.grpc.order.watch;
+
+import java.time.LocalDateTime;
+
+/**
+ * Status change of one order as carried through the hub
+ */
+public record OrderUpdate(String orderId, String userId, String status, LocalDateTime updatedAt) {
+}
@@ -0,0 +1,166 @@
+package com.spring.grpc.order.watch;
+
+import com.spring.grpc.proto.OrderStatusUpdate;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process fan-out of order status changes to watch streams.
+ *
+ * Subscribers are indexed by orderId and by userId in concurrent maps, so
+ * publishing is two lock-free lookups plus one offer per matching stream; nothing
+ * is queried from the database. Updates come from {@link OrderUpdateListener},
+ * which reads order.updated on every replica, so a stream sees changes made
+ * through any replica.
+ *
+ * On shutdown the open streams are ended with UNAVAILABLE, before the gRPC server
+ * drains, so clients reconnect elsewhere instead of holding the drain open.
+ */
+@Component
+public class OrderUpdateHub {
+
+    public static final String WATCH_UPDATES = "order.watch.updates";
+
+    private final ConcurrentHashMap<String, Set<WatchSubscriber>> byOrderId = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<WatchSubscriber>> byUserId = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private volatile boolean shuttingDown;
+    private final int maxSubscribers;
+    private final int bufferSize;
+    private final Counter delivered;
+    private final Counter coalesced;
+    private final Counter dropped;
+
+    public OrderUpdateHub(@Value("${order.watch.max-subscribers:10000}") int maxSubscribers,
+                          @Value("${order.watch.buffer-size:64}") int bufferSize,
+                          MeterRegistry registry) {
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.delivered = updateCounter(registry, "delivered");
+        this.coalesced = updateCounter(registry, "coalesced");
+        this.dropped = updateCounter(registry, "dropped");
+        Gauge.builder("order.watchers", subscriberCount, AtomicInteger::get)
+                .description("Open WatchOrder/WatchOrders streams")
+                .register(registry);
+    }
+
+    /**
+     * Attach a stream watching either the given orders or all orders of a user.
+     * Must be called from the RPC method, before it returns.
+     *
+     * @param completeOnFinal complete the stream when an order reaches a final status
+     */
+    public WatchSubscriber subscribe(ServerCallStreamObserver<OrderStatusUpdate> call,
+                                     String userId, Set<String> orderIds, boolean completeOnFinal) {
+        if (shuttingDown) {
+            throw Status.UNAVAILABLE
+                    .withDescription("Server shutting down")
+                    .asRuntimeException();
+        }
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many open watch streams")
+                    .asRuntimeException();
+        }
+
+        WatchSubscriber subscriber = new WatchSubscriber(this, call, userId, orderIds, bufferSize, completeOnFinal);
+        call.setOnCancelHandler(subscriber::close);
+        call.setOnReadyHandler(subscriber::drain);
+        if (orderIds != null) {
+            orderIds.forEach(orderId -> add(byOrderId, orderId, subscriber));
+        } else {
+            add(byUserId, userId, subscriber);
+        }
+        return subscriber;
+    }
+
+    public void publish(OrderUpdate update) {
+        offer(byOrderId.get(update.orderId()), update);
+        if (update.userId() != null) {
+            offer(byUserId.get(update.userId()), update);
+        }
+    }
+
+    /**
+     * Refuse new streams and end the open ones with UNAVAILABLE
+     *
+     * @return number of streams ended
+     */
+    public int shutdown() {
+        shuttingDown = true;
+        Set<WatchSubscriber> open = ConcurrentHashMap.newKeySet();
+        byOrderId.values().forEach(open::addAll);
+        byUserId.values().forEach(open::addAll);
+        Status status = Status.UNAVAILABLE.withDescription("Server shutting down");
+        open.forEach(subscriber -> subscriber.terminate(status));
+        return open.size();
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    void unsubscribe(WatchSubscriber subscriber) {
+        if (subscriber.orderIds() != null) {
+            subscriber.orderIds().forEach(orderId -> remove(byOrderId, orderId, subscriber));
+        } else {
+            remove(byUserId, subscriber.userId(), subscriber);
+        }
+        subscriberCount.decrementAndGet();
+    }
+
+    void recordDelivered() {
+        delivered.increment();
+    }
+
+    void recordCoalesced() {
+        coalesced.increment();
+    }
+
+    void recordDropped() {
+        dropped.increment();
+    }
+
+    private static void offer(Set<WatchSubscriber> subscribers, OrderUpdate update) {
+        if (subscribers != null) {
+            subscribers.forEach(subscriber -> subscriber.offer(update));
+        }
+    }
+
+    private static void add(ConcurrentHashMap<String, Set<WatchSubscriber>> index, String key,
+                            WatchSubscriber subscriber) {
+        // Added inside compute so a concurrent remove can't drop the set in between
+        index.compute(key, (k, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+            }
+            set.add(subscriber);
+            return set;
+        });
+    }
+
+    private static void remove(ConcurrentHashMap<String, Set<WatchSubscriber>> index, String key,
+                               WatchSubscriber subscriber) {
+        index.computeIfPresent(key, (k, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static Counter updateCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder(WATCH_UPDATES)
+                .description("Order status updates delivered to, coalesced in, or dropped from watch streams")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
@@ -0,0 +1,38 @@
+package com.spring.grpc.order.watch;
+
+import com.spring.grpc.order.dto.OrderEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Feeds order.updated into the {@link OrderUpdateHub}.
+ *
+ * Every replica reads the whole topic under its own throwaway consumer group,
+ * starting from the latest offset and never committing, so each replica's
+ * watchers see updates made through any replica.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderUpdateListener {
+
+    private final OrderUpdateHub hub;
+
+    @KafkaListener(
+            topics = "${kafka.topics.order-updated}",
+            groupId = "${spring.application.name}-watch-${random.uuid}",
+            containerFactory = "orderUpdateListenerContainerFactory"
+    )
+    public void handleOrderUpdates(List<OrderEvent> events) {
+        for (OrderEvent event : events) {
+            if (event == null || event.getOrderId() == null || event.getStatus() == null) {
+                continue;
+            }
+            LocalDateTime updatedAt = event.getUpdatedAt() != null ? event.getUpdatedAt() : LocalDateTime.now();
+            hub.publish(new OrderUpdate(event.getOrderId(), event.getUserId(), event.getStatus(), updatedAt));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.spring.grpc.order.watch;
+
+import com.spring.grpc.proto.OrderStatusUpdate;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+
+import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One watch stream.
+ *
+ * Updates wait in a small buffer keyed by orderId, so a newer status for an order
+ * replaces a queued older one (coalesce) and the buffer never holds more than one
+ * entry per order. When it is full, the oldest order's update is dropped. The
+ * buffer is drained only while the gRPC call is ready, so a slow client costs at
+ * most {@code capacity} entries instead of an unbounded outbound queue.
+ *
+ * Draining is serialized with a work-in-progress counter: whichever thread finds
+ * it at zero (the hub's publisher or gRPC's onReady callback) drains, and the
+ * others only bump the counter. Ending the stream on shutdown goes through the
+ * same drain, so the call is never written to from two threads.
+ */
+public final class WatchSubscriber {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
+    private static final Set<String> FINAL_STATUSES = Set.of("COMPLETED", "CANCELLED");
+
+    private final OrderUpdateHub hub;
+    private final ServerCallStreamObserver<OrderStatusUpdate> call;
+    private final String userId;
+    private final Set<String> orderIds;
+    private final int capacity;
+    private final boolean completeOnFinal;
+
+    // Both guarded by this
+    private final LinkedHashMap<String, OrderUpdate> pending = new LinkedHashMap<>();
+    private final LinkedHashMap<String, OrderUpdate> lastSent;
+
+    private final AtomicInteger wip = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private volatile Status terminal;
+
+    WatchSubscriber(OrderUpdateHub hub, ServerCallStreamObserver<OrderStatusUpdate> call,
+                    String userId, Set<String> orderIds, int capacity, boolean completeOnFinal) {
+        this.hub = hub;
+        this.call = call;
+        this.userId = userId;
+        this.orderIds = orderIds;
+        this.capacity = capacity;
+        this.completeOnFinal = completeOnFinal;
+        this.lastSent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, OrderUpdate> eldest) {
+                return size() > WatchSubscriber.this.capacity;
+            }
+        };
+    }
+
+    String userId() {
+        return userId;
+    }
+
+    Set<String> orderIds() {
+        return orderIds;
+    }
+
+    /**
+     * Queue an update unless it is older than, or repeats, what this stream has
+     * already queued or sent for the order
+     */
+    public void offer(OrderUpdate update) {
+        if (closed.get()) {
+            return;
+        }
+        synchronized (this) {
+            OrderUpdate sent = lastSent.get(update.orderId());
+            if (sent != null && (sent.status().equals(update.status())
+                    || update.updatedAt().isBefore(sent.updatedAt()))) {
+                return;
+            }
+            OrderUpdate queued = pending.get(update.orderId());
+            if (queued != null) {
+                if (update.updatedAt().isBefore(queued.updatedAt()) || queued.status().equals(update.status())) {
+                    return;
+                }
+                pending.put(update.orderId(), update);
+                hub.recordCoalesced();
+            } else {
+                if (pending.size() >= capacity) {
+                    Iterator<OrderUpdate> eldest = pending.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    hub.recordDropped();
+                }
+                pending.put(update.orderId(), update);
+            }
+        }
+        drain();
+    }
+
+    void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (terminal == null && !closed.get() && call.isReady()) {
+                OrderUpdate next;
+                synchronized (this) {
+                    Iterator<OrderUpdate> it = pending.values().iterator();
+                    if (!it.hasNext()) {
+                        break;
+                    }
+                    next = it.next();
+                    it.remove();
+                    lastSent.put(next.orderId(), next);
+                }
+                send(next);
+            }
+            Status status = terminal;
+            if (status != null && closed.compareAndSet(false, true)) {
+                hub.unsubscribe(this);
+                try {
+                    call.onError(status.asRuntimeException());
+                } catch (RuntimeException e) {
+                    // Client already gone
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * End the stream with the given status, e.g. UNAVAILABLE so the client
+     * reconnects to another instance
+     */
+    void terminate(Status status) {
+        terminal = status;
+        drain();
+    }
+
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            hub.unsubscribe(this);
+        }
+    }
+
+    private void send(OrderUpdate update) {
+        try {
+            call.onNext(OrderStatusUpdate.newBuilder()
+                    .setOrderId(update.orderId())
+                    .setUserId(update.userId() != null ? update.userId() : "")
+                    .setStatus(update.status())
+                    .setUpdatedAt(update.updatedAt().format(FORMATTER))
+                    .build());
+            hub.recordDelivered();
+            if (completeOnFinal && FINAL_STATUSES.contains(update.status())) {
+                close();
+                call.onCompleted();
+            }
+        } catch (RuntimeException e) {
+            // Client went away between the readiness check and the write
+            close();
+        }
+    }
+}
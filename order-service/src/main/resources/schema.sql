@@ -0,0 +1,226 @@
+-- Orders and their lines are range-partitioned by created_at, one partition per month
+-- (orders_pYYYYMM, order_lines_pYYYYMM).
+-- PartitionMaintenance creates the partitions and archives old ones; this script only
+-- creates the parent tables and their indexes. The primary key has to include the
+-- partition key; order_id stays unique in practice as it is a generated UUID.
+--
+-- An existing unpartitioned orders table is converted once: it is renamed to the
+-- current month's partition and attached with a lower bound of MINVALUE, so all
+-- history up to now stays queryable and is archived with that month.
+--
+-- Runs as one statement (spring.sql.init.separator), so the conversion is atomic.
+
+DO $$
+DECLARE
+    legacy text := 'orders_p' || to_char(localtimestamp, 'YYYYMM');
+    pkey text;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('orders') AND relkind = 'r') THEN
+        EXECUTE format('ALTER TABLE orders RENAME TO %I', legacy);
+        SELECT conname INTO pkey FROM pg_constraint WHERE conrelid = legacy::regclass AND contype = 'p';
+        IF pkey IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', legacy, pkey);
+        END IF;
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS version bigint NOT NULL DEFAULT 0', legacy);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN order_id TYPE uuid USING order_id::uuid', legacy);
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS currency char(3) NOT NULL DEFAULT %L', legacy, 'USD');
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS price_minor numeric(19,0)', legacy);
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS total_amount_minor numeric(19,0)', legacy);
+        EXECUTE format('UPDATE %I SET price_minor = round(price::numeric * 100), '
+                || 'total_amount_minor = round(total_amount::numeric * 100) WHERE price_minor IS NULL', legacy);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN price_minor SET NOT NULL, '
+                || 'ALTER COLUMN total_amount_minor SET NOT NULL', legacy);
+    END IF;
+END $$;
+
+CREATE TABLE IF NOT EXISTS orders (
+    order_id     uuid             NOT NULL,
+    user_id      varchar(255)     NOT NULL,
+    product_id   varchar(255)     NOT NULL,
+    product_name varchar(255)     NOT NULL,
+    quantity     integer          NOT NULL,
+    price_minor        numeric(19,0)    NOT NULL,
+    total_amount_minor numeric(19,0)    NOT NULL,
+    currency           char(3)          NOT NULL DEFAULT 'USD',
+    price        double precision NOT NULL,
+    total_amount double precision NOT NULL,
+    status       varchar(255)     NOT NULL,
+    version      bigint           NOT NULL DEFAULT 0,
+    created_at   timestamp(6)     NOT NULL,
+    updated_at   timestamp(6)     NOT NULL,
+    PRIMARY KEY (order_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Ids were varchar before they became time-ordered UUIDs (uuid is 16 bytes instead of 37)
+DO $$
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_schema = current_schema() AND table_name = 'orders' AND column_name = 'order_id') <> 'uuid' THEN
+        ALTER TABLE orders ALTER COLUMN order_id TYPE uuid USING order_id::uuid;
+    END IF;
+END $$;
+
+-- Amounts were double precision before they became exact minor units (cents) plus a
+-- currency. Existing rows were all USD. The double columns are still written for old readers.
+-- The backfill scans every partition, so it only runs until the columns are NOT NULL.
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS currency char(3) NOT NULL DEFAULT 'USD';
+DO $$
+BEGIN
+    IF (SELECT count(*) FROM information_schema.columns
+        WHERE table_schema = current_schema() AND table_name = 'orders'
+          AND column_name IN ('price_minor', 'total_amount_minor') AND is_nullable = 'NO') < 2 THEN
+        ALTER TABLE orders ADD COLUMN IF NOT EXISTS price_minor numeric(19,0);
+        ALTER TABLE orders ADD COLUMN IF NOT EXISTS total_amount_minor numeric(19,0);
+        UPDATE orders SET price_minor = round(price::numeric * 100),
+                          total_amount_minor = round(total_amount::numeric * 100)
+            WHERE price_minor IS NULL OR total_amount_minor IS NULL;
+        ALTER TABLE orders ALTER COLUMN price_minor SET NOT NULL,
+                           ALTER COLUMN total_amount_minor SET NOT NULL;
+    END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS orders_created_at_idx ON orders (created_at);
+CREATE INDEX IF NOT EXISTS orders_user_id_created_at_idx ON orders (user_id, created_at);
+CREATE INDEX IF NOT EXISTS orders_status_created_at_idx ON orders (status, created_at);
+
+DO $$
+DECLARE
+    legacy text := 'orders_p' || to_char(localtimestamp, 'YYYYMM');
+BEGIN
+    IF to_regclass(legacy) IS NOT NULL
+            AND NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = legacy::regclass) THEN
+        EXECUTE format('ALTER TABLE orders ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                legacy, date_trunc('month', localtimestamp) + interval '1 month');
+    END IF;
+END $$;
+
+-- Lines of orders with more than one item, partitioned like orders. A line has its
+-- order's created_at, so both are archived in the same month and lookups by order
+-- read one partition. No foreign key: it would have to include created_at.
+CREATE TABLE IF NOT EXISTS order_lines (
+    line_id            uuid          NOT NULL,
+    order_id           uuid          NOT NULL,
+    line_no            integer       NOT NULL,
+    product_id         varchar(255)  NOT NULL,
+    product_name       varchar(255)  NOT NULL,
+    quantity           integer       NOT NULL,
+    price_minor        numeric(19,0) NOT NULL,
+    total_amount_minor numeric(19,0) NOT NULL,
+    created_at         timestamp(6)  NOT NULL,
+    PRIMARY KEY (line_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE UNIQUE INDEX IF NOT EXISTS order_lines_order_id_line_no_idx ON order_lines (order_id, line_no, created_at);
+
+-- Product catalog, held in memory by ProductCatalog and refreshed by updated_at
+CREATE TABLE IF NOT EXISTS products (
+    product_id  varchar(255)  PRIMARY KEY,
+    name        varchar(255)  NOT NULL,
+    price_minor numeric(19,0) NOT NULL,
+    currency    char(3)       NOT NULL,
+    active      boolean       NOT NULL,
+    version     bigint        NOT NULL,
+    updated_at  timestamp(6)  NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS products_updated_at_idx ON products (updated_at);
+
+-- Stock not reserved nor allocated; products without a row are not stock-limited
+CREATE TABLE IF NOT EXISTS inventory (
+    product_id varchar(255) PRIMARY KEY,
+    available  bigint       NOT NULL CHECK (available >= 0),
+    updated_at timestamp(6) NOT NULL
+);
+
+-- Stock allocated to a running replica (holder), reserved from in memory
+CREATE TABLE IF NOT EXISTS inventory_allocations (
+    product_id varchar(255) NOT NULL,
+    holder     varchar(255) NOT NULL,
+    quantity   bigint       NOT NULL CHECK (quantity >= 0),
+    renewed_at timestamp(6) NOT NULL,
+    PRIMARY KEY (product_id, holder)
+);
+
+CREATE INDEX IF NOT EXISTS inventory_allocations_renewed_at_idx ON inventory_allocations (renewed_at);
+
+-- Stock held for orders, written behind by StockReservations
+CREATE TABLE IF NOT EXISTS inventory_reservations (
+    reservation_id uuid         PRIMARY KEY,
+    order_id       uuid         NOT NULL,
+    product_id     varchar(255) NOT NULL,
+    quantity       bigint       NOT NULL,
+    status         varchar(16)  NOT NULL,
+    expires_at     timestamp(6) NOT NULL,
+    created_at     timestamp(6) NOT NULL,
+    updated_at     timestamp(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS inventory_reservations_order_id_idx ON inventory_reservations (order_id);
+CREATE INDEX IF NOT EXISTS inventory_reservations_held_expires_at_idx
+    ON inventory_reservations (expires_at) WHERE status = 'HELD';
+
+-- Stock outcome per order: HELD once its holds are written, then COMMITTED or
+-- RELEASED. A commit or release can be written before the holds, by this replica or
+-- another one; it is applied to them when they are written.
+CREATE TABLE IF NOT EXISTS inventory_order_states (
+    order_id   uuid         PRIMARY KEY,
+    status     varchar(16)  NOT NULL,
+    updated_at timestamp(6) NOT NULL
+);
+
+-- Final reservations and order states are purged after order.inventory.state-retention
+CREATE INDEX IF NOT EXISTS inventory_reservations_final_updated_at_idx
+    ON inventory_reservations (updated_at) WHERE status <> 'HELD';
+CREATE INDEX IF NOT EXISTS inventory_order_states_final_updated_at_idx
+    ON inventory_order_states (updated_at) WHERE status <> 'HELD';
+
+-- Per-user summaries (read model), maintained from Kafka by UserSummaryService
+CREATE TABLE IF NOT EXISTS user_order_summaries (
+    user_id            varchar(255)     PRIMARY KEY,
+    pending_orders     bigint           NOT NULL,
+    confirmed_orders   bigint           NOT NULL,
+    processing_orders  bigint           NOT NULL,
+    completed_orders   bigint           NOT NULL,
+    cancelled_orders   bigint           NOT NULL,
+    total_spend_minor  numeric(19,0)    NOT NULL,
+    payments_completed bigint           NOT NULL,
+    payments_failed    bigint           NOT NULL,
+    last_order_id      uuid,
+    last_order_at      timestamp(6),
+    version            bigint           NOT NULL,
+    updated_at         timestamp(6)     NOT NULL
+);
+
+-- Last state of each order applied to the summaries, to skip duplicate events and compute deltas
+CREATE TABLE IF NOT EXISTS user_summary_orders (
+    order_id       uuid             PRIMARY KEY,
+    user_id        varchar(255)     NOT NULL,
+    status         varchar(255),
+    order_version  bigint           NOT NULL,
+    total_amount_minor numeric(19,0) NOT NULL,
+    payment_status varchar(255),
+    version        bigint           NOT NULL,
+    updated_at     timestamp(6)     NOT NULL
+);
+
+-- Spend was a double before minor units; nothing but the summaries reads these tables
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema()
+               AND table_name = 'user_order_summaries' AND column_name = 'total_spend') THEN
+        ALTER TABLE user_order_summaries ADD COLUMN total_spend_minor numeric(19,0);
+        UPDATE user_order_summaries SET total_spend_minor = round(total_spend::numeric * 100);
+        ALTER TABLE user_order_summaries ALTER COLUMN total_spend_minor SET NOT NULL,
+                                         DROP COLUMN total_spend;
+    END IF;
+    IF EXISTS (SELECT 1 FROM information_schema.columns WHERE table_schema = current_schema()
+               AND table_name = 'user_summary_orders' AND column_name = 'total_amount') THEN
+        ALTER TABLE user_summary_orders ADD COLUMN total_amount_minor numeric(19,0);
+        UPDATE user_summary_orders SET total_amount_minor = round(total_amount::numeric * 100);
+        ALTER TABLE user_summary_orders ALTER COLUMN total_amount_minor SET NOT NULL,
+                                        DROP COLUMN total_amount;
+    END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS user_summary_orders_final_idx
+    ON user_summary_orders (updated_at) WHERE status IN ('COMPLETED', 'CANCELLED');
@@ -0,0 +1,147 @@
+package com.spring.grpc.order.inventory;
+
+import com.spring.grpc.order.entity.OrderLine;
+import com.spring.grpc.order.repository.InventoryRepository;
+import com.spring.grpc.order.repository.InventoryReservationRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockReservationsTest {
+
+    private static final String PRODUCT = "prod-1";
+    private static final Duration TTL = Duration.ofMinutes(15);
+
+    @Mock
+    private StockWriter writer;
+    @Mock
+    private InventoryRepository inventoryRepository;
+    @Mock
+    private InventoryReservationRepository reservationRepository;
+
+    private SimpleMeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        when(writer.allocate(eq(PRODUCT), anyString(), anyLong())).thenReturn(100L);
+    }
+
+    @Test
+    void createPayFlushWritesTheHoldAndItsCommitTogether() {
+        StockReservations reservations = reservations(1000);
+        UUID orderId = UUID.randomUUID();
+
+        // Outside a transaction, hold queues right away, as a commit of the order's transaction would
+        reservations.hold(orderId, reservations.reserve(lines(3)));
+        reservations.commit(List.of(orderId));
+        reservations.flushPending();
+
+        ArgumentCaptor<List<StockReservations.Hold>> holds = holdsCaptor();
+        ArgumentCaptor<Collection<UUID>> committed = idsCaptor();
+        verify(writer).write(anyString(), holds.capture(), committed.capture(), eq(List.of()), eq(TTL));
+        assertThat(holds.getValue()).singleElement().satisfies(hold -> {
+            assertThat(hold.orderId()).isEqualTo(orderId);
+            assertThat(hold.quantity()).isEqualTo(3);
+        });
+        assertThat(committed.getValue()).containsExactly(orderId);
+        assertThat(pendingWrites()).isZero();
+    }
+
+    @Test
+    void commitOfAHoldStillQueuedIsWrittenNotDropped() {
+        StockReservations reservations = reservations(1);
+        UUID first = UUID.randomUUID();
+        UUID paid = UUID.randomUUID();
+
+        reservations.hold(first, reservations.reserve(lines(1)));
+        reservations.hold(paid, reservations.reserve(lines(1)));
+        reservations.commit(List.of(paid));
+        reservations.flushPending();
+
+        // One item per queue per batch: the commit goes out with the first hold, before its own
+        ArgumentCaptor<List<StockReservations.Hold>> holds = holdsCaptor();
+        ArgumentCaptor<Collection<UUID>> committed = idsCaptor();
+        verify(writer, times(2)).write(anyString(), holds.capture(), committed.capture(), any(), eq(TTL));
+        assertThat(holds.getAllValues().get(0)).extracting(StockReservations.Hold::orderId).containsExactly(first);
+        assertThat(committed.getAllValues().get(0)).containsExactly(paid);
+        assertThat(holds.getAllValues().get(1)).extracting(StockReservations.Hold::orderId).containsExactly(paid);
+        assertThat(pendingWrites()).isZero();
+    }
+
+    @Test
+    void flushWritesEveryPendingBatch() {
+        StockReservations reservations = reservations(2);
+        List<UUID> orderIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            UUID orderId = UUID.randomUUID();
+            orderIds.add(orderId);
+            reservations.hold(orderId, reservations.reserve(lines(1)));
+        }
+
+        reservations.flushPending();
+
+        ArgumentCaptor<List<StockReservations.Hold>> holds = holdsCaptor();
+        verify(writer, times(3)).write(anyString(), holds.capture(), any(), any(), eq(TTL));
+        assertThat(holds.getAllValues().stream().flatMap(List::stream).map(StockReservations.Hold::orderId))
+                .containsExactlyElementsOf(orderIds);
+        assertThat(pendingWrites()).isZero();
+    }
+
+    @Test
+    void cancelReturnsUnitsUnlessHeld() {
+        StockReservations reservations = reservations(1000);
+
+        StockReservations.Reservation held = reservations.reserve(lines(10));
+        reservations.hold(UUID.randomUUID(), held);
+        reservations.cancel(held);
+        assertThat(reservations.allocatedHere(PRODUCT)).isEqualTo(90);
+
+        reservations.cancel(reservations.reserve(lines(5)));
+        assertThat(reservations.allocatedHere(PRODUCT)).isEqualTo(90);
+    }
+
+    private StockReservations reservations(int flushBatchSize) {
+        return new StockReservations(true, 2, 100, flushBatchSize, 200, TTL, Duration.ofMinutes(2),
+                Duration.ofDays(7), 30000, "order-service", writer, inventoryRepository, reservationRepository,
+                registry);
+    }
+
+    private static List<OrderLine> lines(int quantity) {
+        return List.of(OrderLine.builder().lineNo(1).productId(PRODUCT).quantity(quantity).build());
+    }
+
+    private double pendingWrites() {
+        return registry.get("order.inventory.pending.writes").gauge().value();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<StockReservations.Hold>> holdsCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<Collection<UUID>> idsCaptor() {
+        return ArgumentCaptor.forClass(Collection.class);
+    }
+}
@@ -0,0 +1,69 @@
+package com.spring.grpc.order.inventory;
+
+import com.spring.grpc.order.repository.InventoryRepository;
+import com.spring.grpc.order.repository.InventoryReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockWriterTest {
+
+    private static final Duration TTL = Duration.ofMinutes(15);
+
+    @Mock
+    private InventoryRepository inventoryRepository;
+    @Mock
+    private InventoryReservationRepository reservationRepository;
+    @InjectMocks
+    private StockWriter writer;
+
+    @Test
+    void holdOfAnOrderPaidEarlierIsCommittedAsItIsWritten() {
+        UUID orderId = UUID.randomUUID();
+        // The commit was written in an earlier batch, or by another replica
+        when(reservationRepository.findInState(Set.of(orderId), "COMMITTED")).thenReturn(List.of(orderId));
+        when(reservationRepository.findInState(Set.of(orderId), "RELEASED")).thenReturn(List.of());
+
+        writer.write("holder", List.of(hold(orderId)), List.of(), List.of(), TTL);
+
+        InOrder order = inOrder(reservationRepository);
+        order.verify(reservationRepository).recordState(eq(Set.of(orderId)), eq("HELD"), any());
+        order.verify(reservationRepository).saveAll(anyIterable());
+        order.verify(reservationRepository).commit(eq(List.of(orderId)), any());
+        verify(reservationRepository, never()).release(anyCollection(), any());
+    }
+
+    @Test
+    void commitIsRecordedEvenWithoutItsHold() {
+        UUID orderId = UUID.randomUUID();
+
+        writer.write("holder", List.of(), List.of(orderId), List.of(), TTL);
+
+        InOrder order = inOrder(reservationRepository);
+        order.verify(reservationRepository).recordState(eq(Set.of(orderId)), eq("COMMITTED"), any());
+        order.verify(reservationRepository).commit(eq(List.of(orderId)), any());
+    }
+
+    private static StockReservations.Hold hold(UUID orderId) {
+        return new StockReservations.Hold(orderId, "prod-1", 2, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,64 @@
+package com.spring.grpc.payment.config;
+
+import com.spring.grpc.common.health.HealthChecks;
+import com.spring.grpc.common.health.HealthProperties;
+import com.spring.grpc.common.health.InFlightRequests;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.kafka.core.KafkaAdmin;
+
+import javax.sql.DataSource;
+
+/**
+ * Health Configuration
+ *
+ * Cached health checks (payment.health.*); the health indicators on top of them
+ * come from the common module. Overload is measured on the HTTP API alone: a
+ * Kafka backlog keeps the payment workers busy whatever readiness says, so only
+ * HTTP requests in flight are something shedding traffic relieves.
+ */
+@Configuration
+public class HealthConfig {
+
+    @Value("${server.tomcat.threads.max:200}")
+    private int maxRequestThreads;
+
+    @Bean
+    @ConfigurationProperties("payment.health")
+    public HealthProperties healthProperties() {
+        return new HealthProperties();
+    }
+
+    @Bean
+    public InFlightRequests inFlightRequests() {
+        return new InFlightRequests(maxRequestThreads);
+    }
+
+    @Bean
+    public FilterRegistrationBean<InFlightRequests> inFlightRequestsFilter(InFlightRequests inFlightRequests) {
+        FilterRegistrationBean<InFlightRequests> registration = new FilterRegistrationBean<>(inFlightRequests);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+
+    @Bean
+    public HealthChecks healthChecks(HealthProperties healthProperties,
+                                     DataSource dataSource,
+                                     ObjectProvider<HikariDataSource> pools,
+                                     KafkaAdmin kafkaAdmin,
+                                     InFlightRequests inFlightRequests,
+                                     @Value("${spring.kafka.consumer.group-id}") String groupId,
+                                     MeterRegistry meterRegistry) {
+        // The primary pool, also behind the routing data source when replicas are set
+        return new HealthChecks("payment", healthProperties, dataSource, pools.getIfUnique(), kafkaAdmin, groupId,
+                inFlightRequests, meterRegistry);
+    }
+}
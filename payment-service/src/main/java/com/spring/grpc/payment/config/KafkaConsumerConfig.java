@@ -2,19 +2,30 @@ package com.spring.grpc.payment.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.spring.grpc.common.kafka.DeadLetterReplayer;
+import com.spring.grpc.payment.consumer.RetryTopics;
+import com.spring.grpc.payment.metrics.PaymentMetrics;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.kafka.annotation.EnableKafka;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
 import org.springframework.kafka.support.serializer.JsonDeserializer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Kafka Consumer Configuration
@@ -29,6 +40,15 @@ public class KafkaConsumerConfig {
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
 
+    @Value("${kafka.consumer.concurrency:1}")
+    private int concurrency;
+
+    @Value("${kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords;
+
+    @Value("${kafka.retry.concurrency:1}")
+    private int retryConcurrency;
+
     @Bean
     public ConsumerFactory<String, Object> consumerFactory() {
         Map<String, Object> config = new HashMap<>();
@@ -39,6 +59,8 @@ public class KafkaConsumerConfig {
         config.put(JsonDeserializer.TRUSTED_PACKAGES, "*");
         config.put(JsonDeserializer.USE_TYPE_INFO_HEADERS, false);
         config.put(JsonDeserializer.VALUE_DEFAULT_TYPE, "com.spring.grpc.payment.dto.OrderEvent");
+        config.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        config.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
         
         return new DefaultKafkaConsumerFactory<>(config);
     }
@@ -48,9 +70,52 @@ public class KafkaConsumerConfig {
         ConcurrentKafkaListenerContainerFactory<String, Object> factory = 
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory());
+        // Records are processed by key on KeyOrderedDispatcher, so a few consumer threads are enough
+        factory.setConcurrency(concurrency);
+        // Acks arrive out of order from the workers; the container only commits an offset
+        // once every earlier record in the partition has been acknowledged
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        // Continues the producer's trace (and its sampling baggage) from record headers
+        factory.getContainerProperties().setObservationEnabled(true);
+        return factory;
+    }
+
+    /**
+     * Container factory for the delayed retry topics. Batch listener; the listener
+     * commits offsets itself once the due records of a batch are done.
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, Object> retryListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(consumerFactory());
+        factory.setBatchListener(true);
+        factory.setConcurrency(retryConcurrency);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
         return factory;
     }
 
+    /**
+     * Re-drives dead-lettered order events to their original topics. Lazy, like the
+     * controller in front of it: created on the first call instead of at startup.
+     */
+    @Lazy
+    @Bean
+    public DeadLetterReplayer deadLetterReplayer(KafkaTemplate<String, Object> kafkaTemplate,
+                                                 RetryTopics retryTopics,
+                                                 PaymentMetrics paymentMetrics) {
+        return new DeadLetterReplayer(consumerFactory(), groupId, List.of(retryTopics.dltTopicNames()), records -> {
+            List<CompletableFuture<?>> sends = new ArrayList<>();
+            for (ConsumerRecord<String, Object> record : records) {
+                sends.add(kafkaTemplate.send(
+                        new ProducerRecord<>(retryTopics.originalTopic(record), record.key(), record.value())));
+            }
+            CompletableFuture.allOf(sends.toArray(CompletableFuture[]::new)).join();
+            sends.forEach(send -> paymentMetrics.recordReplayed());
+        });
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
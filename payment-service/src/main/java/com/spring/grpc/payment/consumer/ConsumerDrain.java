@@ -0,0 +1,109 @@
+package com.spring.grpc.payment.consumer;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains order event processing on shutdown, before the listener containers stop.
+ *
+ * Every container is paused, so nothing new is fetched, and the payment workers
+ * get up to kafka.consumer.drain-timeout to finish what was already dispatched.
+ * The producer is flushed, then the containers stop and commit the offsets of the
+ * acknowledged records.
+ *
+ * Work still running at the deadline is interrupted. A payment interrupted before
+ * it was charged goes back to PENDING, and its record is not acknowledged, so it is
+ * consumed again after the restart. Payments left behind by a crash are resumed by
+ * {@link PaymentRecovery}.
+ */
+@Component
+@Slf4j
+public class ConsumerDrain implements SmartLifecycle {
+
+    // Stopped before the listener containers (Integer.MAX_VALUE - 100): higher phases stop first
+    static final int PHASE = Integer.MAX_VALUE - 50;
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final KeyOrderedDispatcher dispatcher;
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final Duration drainTimeout;
+    private volatile boolean running;
+
+    public ConsumerDrain(KafkaListenerEndpointRegistry registry,
+                         KeyOrderedDispatcher dispatcher,
+                         KafkaTemplate<String, Object> kafkaTemplate,
+                         @Value("${kafka.consumer.drain-timeout:20s}") Duration drainTimeout) {
+        this.registry = registry;
+        this.dispatcher = dispatcher;
+        this.kafkaTemplate = kafkaTemplate;
+        this.drainTimeout = drainTimeout;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        long start = System.nanoTime();
+        long deadline = start + drainTimeout.toNanos();
+        // Otherwise the dispatcher resumes them once its workers catch up
+        dispatcher.stopResuming();
+        registry.getListenerContainers().forEach(MessageListenerContainer::pause);
+
+        boolean drained;
+        try {
+            drained = awaitPaused(deadline) && dispatcher.awaitIdle(deadline);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            drained = false;
+        }
+        if (!drained) {
+            log.atWarn()
+                    .addKeyValue("inFlight", dispatcher.getInFlight())
+                    .log("Payment workers did not drain in time, interrupting them");
+            dispatcher.abort();
+        }
+        kafkaTemplate.flush();
+
+        log.atInfo()
+                .addKeyValue("drained", drained)
+                .addKeyValue("durationMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .log("Order event consumers drained");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Wait until every running container has stopped fetching; a container pauses
+     * once its listener has taken all records of the current poll
+     */
+    private boolean awaitPaused(long deadlineNanos) throws InterruptedException {
+        while (registry.getListenerContainers().stream()
+                .anyMatch(container -> container.isRunning() && !container.isContainerPaused())) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+}
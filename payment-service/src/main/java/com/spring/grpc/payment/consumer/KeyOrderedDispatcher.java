@@ -0,0 +1,207 @@
+package com.spring.grpc.payment.consumer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs consumed records concurrently by key instead of by partition.
+ *
+ * Tasks for the same key (orderId) run one at a time in submission order; tasks for
+ * different keys run in parallel on a shared worker pool, so a slow payment only
+ * delays later events for the same order.
+ *
+ * Dispatching never blocks. Once max-in-flight tasks are dispatched but unfinished,
+ * the listener containers are paused, so they stop fetching after the records of
+ * the current poll while their threads keep polling (no rebalance from a missed
+ * max.poll.interval.ms). They are resumed when the workers are down to half of
+ * max-in-flight. In-flight tasks can overshoot the limit by one poll per container.
+ */
+@Component
+@Slf4j
+public class KeyOrderedDispatcher {
+
+    private final ExecutorService workers;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final int maxInFlight;
+    private final int resumeAt;
+    private final ConcurrentHashMap<String, KeyQueue> queues = new ConcurrentHashMap<>();
+    private final KafkaListenerEndpointRegistry registry;
+    private final Counter pauses;
+    private volatile boolean paused;
+    private volatile boolean resumable = true;
+
+    public KeyOrderedDispatcher(@Value("${kafka.consumer.parallel.workers:0}") int workers,
+                                @Value("${kafka.consumer.parallel.max-in-flight:1000}") int maxInFlight,
+                                KafkaListenerEndpointRegistry registry,
+                                MeterRegistry meterRegistry) {
+        int poolSize = workers > 0 ? workers : Runtime.getRuntime().availableProcessors() * 4;
+        this.workers = Executors.newFixedThreadPool(poolSize, new CustomizableThreadFactory("payment-worker-"));
+        this.maxInFlight = maxInFlight;
+        this.resumeAt = maxInFlight / 2;
+        this.registry = registry;
+
+        Gauge.builder("payment.consumer.in_flight", this, KeyOrderedDispatcher::getInFlight)
+                .description("Consumed records dispatched but not yet finished")
+                .register(meterRegistry);
+        Gauge.builder("payment.consumer.active_keys", queues, ConcurrentHashMap::size)
+                .description("Orders with records queued or running")
+                .register(meterRegistry);
+        this.pauses = Counter.builder("payment.consumer.pauses")
+                .description("Times the listeners were paused because max-in-flight records were in progress")
+                .register(meterRegistry);
+        log.info("Key-ordered dispatcher started with {} workers, max in flight {}", poolSize, maxInFlight);
+    }
+
+    /**
+     * Queue a task behind any earlier tasks for the same key. Pauses the listener
+     * containers when this reaches the in-flight limit.
+     */
+    public void dispatch(String key, Runnable task) {
+        if (inFlight.incrementAndGet() >= maxInFlight) {
+            setPaused(true);
+        }
+        Runnable tracked = () -> {
+            try {
+                task.run();
+            } finally {
+                if (inFlight.decrementAndGet() <= resumeAt) {
+                    setPaused(false);
+                }
+            }
+        };
+
+        KeyQueue[] created = new KeyQueue[1];
+        // All changes to a key's queue happen inside compute, under the map's per-bin lock
+        queues.compute(key, (k, queue) -> {
+            if (queue == null) {
+                queue = new KeyQueue(k);
+                created[0] = queue;
+            }
+            queue.pending.addLast(tracked);
+            return queue;
+        });
+        if (created[0] != null) {
+            workers.execute(created[0]);
+        }
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Stop resuming the listener containers; called on shutdown, once they have been
+     * paused for draining
+     */
+    public void stopResuming() {
+        resumable = false;
+    }
+
+    /**
+     * Wait until every dispatched task has finished, or until the deadline
+     * (System.nanoTime()); false if tasks are still in flight
+     */
+    public boolean awaitIdle(long deadlineNanos) throws InterruptedException {
+        while (getInFlight() > 0) {
+            if (System.nanoTime() - deadlineNanos >= 0) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    /**
+     * Interrupt the running tasks and drop the queued ones
+     */
+    public void abort() {
+        workers.shutdownNow();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+            log.warn("Payment workers did not finish within 30s, {} tasks in flight", getInFlight());
+            workers.shutdownNow();
+        }
+    }
+
+    private void setPaused(boolean pause) {
+        if (paused == pause) {
+            return;
+        }
+        synchronized (this) {
+            // Re-checked under the lock: tasks may have been dispatched or finished since
+            int current = inFlight.get();
+            if (paused == pause || (pause ? current < maxInFlight : current > resumeAt || !resumable)) {
+                return;
+            }
+            paused = pause;
+            for (MessageListenerContainer container : registry.getListenerContainers()) {
+                if (pause) {
+                    container.pause();
+                } else {
+                    container.resume();
+                }
+            }
+        }
+        if (pause) {
+            pauses.increment();
+        }
+        log.atDebug()
+                .addKeyValue("inFlight", inFlight.get())
+                .log(pause ? "Payment workers full, listeners paused" : "Payment workers caught up, listeners resumed");
+    }
+
+    /**
+     * Pending tasks of one key. Drained by a single worker, and removed from the map
+     * when empty so the next task for that key starts a fresh queue.
+     */
+    private final class KeyQueue implements Runnable {
+        private final String key;
+        private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+
+        KeyQueue(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Runnable[] next = new Runnable[1];
+                queues.compute(key, (k, queue) -> {
+                    next[0] = pending.pollFirst();
+                    return next[0] == null ? null : queue;
+                });
+                if (next[0] == null) {
+                    return;
+                }
+                try {
+                    next[0].run();
+                } catch (Throwable t) {
+                    log.atError().addKeyValue("key", key).setCause(t).log("Unhandled error in payment worker");
+                }
+            }
+        }
+    }
+}
@@ -1,15 +1,38 @@
 package com.spring.grpc.payment.consumer;
 
+import com.spring.grpc.common.money.Money;
 import com.spring.grpc.payment.dto.OrderEvent;
 import com.spring.grpc.payment.entity.Payment;
+import com.spring.grpc.payment.metrics.PaymentMetrics;
+import com.spring.grpc.payment.service.PaymentCancellationRegistry;
+import com.spring.grpc.payment.service.PaymentEventPublisher;
 import com.spring.grpc.payment.service.PaymentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
 /**
  * Kafka Consumer for Order Events
+ *
+ * The listener thread only hands each record to the {@link KeyOrderedDispatcher};
+ * work for one order stays in order while different orders run in parallel. Each
+ * record is acknowledged when its work finishes, and the container commits offsets
+ * only once all earlier records of the partition are acknowledged too.
+ *
+ * A record whose processing throws is not retried in place, which would hold up
+ * its partition; it is handed to {@link RetryTopicPublisher} and retried later from
+ * a delayed retry topic by {@link RetryTopicConsumer}.
+ *
+ * A CANCELLED update is registered in {@link PaymentCancellationRegistry} on the
+ * listener thread, before it queues behind the order's in-flight payment, so the
+ * worker sees it at its next stage instead of after it has finished.
  */
 @Component
 @RequiredArgsConstructor
@@ -17,6 +40,23 @@ import org.springframework.stereotype.Component;
 public class OrderEventConsumer {
 
     private final PaymentService paymentService;
+    private final PaymentMetrics paymentMetrics;
+    private final KeyOrderedDispatcher dispatcher;
+    private final RetryTopicPublisher retryTopicPublisher;
+    private final PaymentCancellationRegistry cancellationRegistry;
+    private final PaymentEventPublisher paymentEventPublisher;
+
+    @Value("${payment.money.default-currency:USD}")
+    private String defaultCurrency;
+
+    @Value("${payment.simulation.pre-process-delay-ms:2000}")
+    private long preProcessDelayMs;
+
+    @Value("${kafka.topics.order-created}")
+    private String orderCreatedTopic;
+
+    @Value("${kafka.topics.order-updated}")
+    private String orderUpdatedTopic;
 
     /**
      * Listen to order.created topic
@@ -25,80 +65,197 @@ public class OrderEventConsumer {
             topics = "${kafka.topics.order-created}",
             groupId = "${spring.kafka.consumer.group-id}"
     )
-    public void handleOrderCreated(OrderEvent orderEvent) {
+    public void handleOrderCreated(OrderEvent orderEvent, Acknowledgment ack) {
+        paymentMetrics.recordReceivedLag(orderEvent.getCreatedAt());
+        dispatcher.dispatch(orderEvent.getOrderId(), () -> {
+            try {
+                handle(orderCreatedTopic, orderEvent, 0);
+            } finally {
+                acknowledge(ack);
+            }
+        });
+    }
+
+    /**
+     * Listen to order.updated topic
+     */
+    @KafkaListener(
+            topics = "${kafka.topics.order-updated}",
+            groupId = "${spring.kafka.consumer.group-id}"
+    )
+    public void handleOrderUpdated(OrderEvent orderEvent, Acknowledgment ack) {
+        if ("CANCELLED".equals(orderEvent.getStatus())) {
+            cancellationRegistry.cancel(orderEvent.getOrderId());
+        }
+        dispatcher.dispatch(orderEvent.getOrderId(), () -> {
+            try {
+                handle(orderUpdatedTopic, orderEvent, 0);
+            } finally {
+                acknowledge(ack);
+            }
+        });
+    }
+
+    /**
+     * Process an event consumed from the given source topic (or one of its retry
+     * topics); on failure it moves on to the next retry tier. Returns once the event
+     * is processed or stored in that tier, or when interrupted by a shutdown.
+     *
+     * @param failedAttempts how many times this event has already failed
+     */
+    void handle(String sourceTopic, OrderEvent orderEvent, int failedAttempts) {
+        try {
+            if (orderCreatedTopic.equals(sourceTopic)) {
+                createAndProcessPayment(orderEvent);
+            } else {
+                applyOrderUpdate(orderEvent);
+            }
+        } catch (Exception e) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Stopped by a shutdown past its drain deadline; the record is consumed again
+                return;
+            }
+            // Gives up only when interrupted, and the interrupt keeps the record unacknowledged
+            retryTopicPublisher.publish(sourceTopic, orderEvent, failedAttempts + 1, e);
+        }
+    }
+
+    /**
+     * Finish a payment claimed by {@link PaymentRecovery}. A failure leaves it
+     * PENDING for a later sweep.
+     */
+    void resumePayment(String orderId) {
+        try {
+            processPayment(orderId, null);
+        } catch (Exception e) {
+            log.atWarn().addKeyValue("orderId", orderId).setCause(e).log("Stuck payment not recovered");
+        }
+    }
+
+    /**
+     * Acknowledge a record once its work is done. Work interrupted by a shutdown
+     * past its drain deadline is not acknowledged, so the record is consumed again
+     * after the restart instead of being lost.
+     */
+    private static void acknowledge(Acknowledgment ack) {
+        if (!Thread.currentThread().isInterrupted()) {
+            ack.acknowledge();
+        }
+    }
+
+    private void createAndProcessPayment(OrderEvent orderEvent) {
+        if (cancellationRegistry.isCancelled(orderEvent.getOrderId())) {
+            paymentMetrics.recordCancellation(PaymentMetrics.Cancellation.SKIPPED);
+            log.atInfo()
+                    .addKeyValue("orderId", orderEvent.getOrderId())
+                    .log("Order already cancelled, payment not created");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            log.info("======================================");
-            log.info("📨 Received Order Created Event");
-            log.info("Order ID: {}", orderEvent.getOrderId());
-            log.info("User ID: {}", orderEvent.getUserId());
-            log.info("Product: {}", orderEvent.getProductName());
-            log.info("Amount: ${}", orderEvent.getTotalAmount());
-            log.info("======================================");
-
-            // Create payment record
+            // Events from before minor units only carry the double amount
+            String currency = orderEvent.getCurrency() != null ? orderEvent.getCurrency() : defaultCurrency;
+            long amountMinor = orderEvent.getCurrency() != null
+                    ? orderEvent.getTotalAmountMinor()
+                    : Money.toMinor(orderEvent.getTotalAmount(), currency);
+
+            // Create payment record, one for the order total however many lines it has
             Payment payment = paymentService.createPayment(
                     orderEvent.getOrderId(),
                     orderEvent.getUserId(),
-                    orderEvent.getTotalAmount()
+                    amountMinor,
+                    currency
             );
 
-            log.info("💳 Payment record created: {}", payment.getPaymentId());
+            log.atInfo()
+                    .addKeyValue("event", "order.created")
+                    .addKeyValue("orderId", orderEvent.getOrderId())
+                    .addKeyValue("userId", orderEvent.getUserId())
+                    .addKeyValue("productName", orderEvent.getProductName())
+                    .addKeyValue("lines", orderEvent.getLines() != null ? orderEvent.getLines().size() : 1)
+                    .addKeyValue("amountMinor", amountMinor)
+                    .addKeyValue("currency", currency)
+                    .addKeyValue("paymentId", payment.getPaymentId())
+                    .log("Payment record created");
+            success = true;
 
-            // Process payment asynchronously (in real scenario, this might be in a separate thread)
-            processPaymentAsync(orderEvent.getOrderId());
-
-        } catch (Exception e) {
-            log.error("❌ Error processing order created event: {}", e.getMessage(), e);
+        } finally {
+            paymentMetrics.recordConsumeCreated(start, success);
         }
+
+        processPayment(orderEvent.getOrderId(), orderEvent.getCreatedAt());
     }
 
-    /**
-     * Listen to order.updated topic
-     */
-    @KafkaListener(
-            topics = "${kafka.topics.order-updated}",
-            groupId = "${spring.kafka.consumer.group-id}"
-    )
-    public void handleOrderUpdated(OrderEvent orderEvent) {
+    private void applyOrderUpdate(OrderEvent orderEvent) {
+        long start = System.nanoTime();
+        boolean success = false;
         try {
-            log.info("======================================");
-            log.info("🔄 Received Order Updated Event");
-            log.info("Order ID: {}", orderEvent.getOrderId());
-            log.info("Status: {}", orderEvent.getStatus());
-            log.info("======================================");
+            log.atInfo()
+                    .addKeyValue("event", "order.updated")
+                    .addKeyValue("orderId", orderEvent.getOrderId())
+                    .addKeyValue("status", orderEvent.getStatus())
+                    .log("Order updated");
 
             // Handle order status updates
             if ("CANCELLED".equals(orderEvent.getStatus())) {
-                log.info("⚠️ Order cancelled, payment processing should be halted");
-                // In real scenario: refund or cancel payment
+                paymentService.cancelPayment(orderEvent.getOrderId()).ifPresent(payment -> log.atInfo()
+                        .addKeyValue("orderId", orderEvent.getOrderId())
+                        .addKeyValue("paymentId", payment.getPaymentId())
+                        .addKeyValue("status", payment.getStatus())
+                        .log("Order cancelled, payment stopped"));
             }
+            success = true;
 
-        } catch (Exception e) {
-            log.error("❌ Error processing order updated event: {}", e.getMessage(), e);
+        } finally {
+            paymentMetrics.recordConsumeUpdated(start, success);
         }
     }
 
     /**
-     * Process payment asynchronously
+     * Process payment on the current payment worker and publish its result. Errors
+     * propagate so the event is retried; a payment that failed before being charged
+     * is back in PENDING, and a settled one has its result published again.
      */
-    private void processPaymentAsync(String orderId) {
-        // In production, this would be submitted to a thread pool or message queue
-        new Thread(() -> {
-            try {
-                Thread.sleep(2000); // Simulate delay before processing
-                Payment processedPayment = paymentService.processPayment(orderId);
-                
-                if ("COMPLETED".equals(processedPayment.getStatus())) {
-                    log.info("✅ Payment completed: {}", processedPayment.getPaymentId());
-                    log.info("   Transaction ID: {}", processedPayment.getTransactionId());
-                } else {
-                    log.error("❌ Payment failed: {}", processedPayment.getPaymentId());
-                    log.error("   Error: {}", processedPayment.getErrorMessage());
-                }
-                
-            } catch (Exception e) {
-                log.error("❌ Error in async payment processing: {}", e.getMessage());
+    private void processPayment(String orderId, LocalDateTime orderCreatedAt) {
+        try {
+            Thread.sleep(preProcessDelayMs); // Simulate delay before processing
+            long start = System.nanoTime();
+            Payment processedPayment = paymentService.processPayment(orderId);
+            boolean completed = "COMPLETED".equals(processedPayment.getStatus());
+            boolean failed = "FAILED".equals(processedPayment.getStatus());
+            if (completed || failed) {
+                paymentMetrics.recordProcess(start, completed);
+                paymentMetrics.recordSettledLag(orderCreatedAt);
+                paymentEventPublisher.publishResult(processedPayment);
             }
-        }).start();
+
+            if (completed) {
+                log.atInfo()
+                        .addKeyValue("orderId", orderId)
+                        .addKeyValue("paymentId", processedPayment.getPaymentId())
+                        .addKeyValue("transactionId", processedPayment.getTransactionId())
+                        .log("Payment completed");
+            } else if (failed) {
+                log.atError()
+                        .addKeyValue("orderId", orderId)
+                        .addKeyValue("paymentId", processedPayment.getPaymentId())
+                        .addKeyValue("error", processedPayment.getErrorMessage())
+                        .log("Payment failed");
+            } else if ("CANCELLED".equals(processedPayment.getStatus())
+                    || "REFUNDED".equals(processedPayment.getStatus())) {
+                log.atInfo()
+                        .addKeyValue("orderId", orderId)
+                        .addKeyValue("paymentId", processedPayment.getPaymentId())
+                        .addKeyValue("status", processedPayment.getStatus())
+                        .log("Payment stopped, order cancelled");
+            }
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("Failed to publish payment result for order " + orderId, e);
+        }
     }
 }
@@ -0,0 +1,114 @@
+package com.spring.grpc.payment.consumer;
+
+import com.spring.grpc.payment.repository.PaymentRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resumes payments left stuck in PENDING or PROCESSING for longer than
+ * payment.recovery.stuck-after, e.g. by an instance that crashed mid-payment.
+ *
+ * Sweeps once at startup, then every payment.recovery.interval. Claimed payments
+ * are moved back to PENDING and processed again on the payment workers, in order
+ * with any event for the same order. Every instance sweeps; a payment is claimed
+ * by one of them at a time (see {@link PaymentRepository#claimStuck}).
+ *
+ * A payment stuck in PROCESSING may have been charged before the crash. In real
+ * scenario the gateway call is idempotent on the payment ID, so charging it again
+ * returns the first charge.
+ */
+@Component
+@Slf4j
+public class PaymentRecovery implements SmartLifecycle {
+
+    private final PaymentRepository paymentRepository;
+    private final OrderEventConsumer orderEventConsumer;
+    private final KeyOrderedDispatcher dispatcher;
+    private final boolean enabled;
+    private final Duration stuckAfter;
+    private final Duration interval;
+    private final int batchSize;
+    private final Duration queryLookback;
+    private final Counter recovered;
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("payment-recovery-"));
+    private volatile boolean running;
+
+    public PaymentRecovery(PaymentRepository paymentRepository,
+                           OrderEventConsumer orderEventConsumer,
+                           KeyOrderedDispatcher dispatcher,
+                           @Value("${payment.recovery.enabled:true}") boolean enabled,
+                           @Value("${payment.recovery.stuck-after:5m}") Duration stuckAfter,
+                           @Value("${payment.recovery.interval:1m}") Duration interval,
+                           @Value("${payment.recovery.batch-size:100}") int batchSize,
+                           @Value("${datasource.partitioning.query-lookback:90d}") Duration queryLookback,
+                           MeterRegistry registry) {
+        this.paymentRepository = paymentRepository;
+        this.orderEventConsumer = orderEventConsumer;
+        this.dispatcher = dispatcher;
+        this.enabled = enabled;
+        this.stuckAfter = stuckAfter;
+        this.interval = interval;
+        this.batchSize = batchSize;
+        this.queryLookback = queryLookback;
+        this.recovered = Counter.builder("payment.recovered")
+                .description("Stuck payments claimed and processed again")
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (enabled) {
+            scheduler.scheduleWithFixedDelay(this::sweep, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop sweeping before the consumers drain, so nothing is dispatched after
+     */
+    @Override
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return ConsumerDrain.PHASE + 1;
+    }
+
+    void sweep() {
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<String> orderIds = paymentRepository.claimStuck(
+                    now.minus(stuckAfter), now.minus(queryLookback), now, batchSize);
+            for (String orderId : orderIds) {
+                dispatcher.dispatch(orderId, () -> orderEventConsumer.resumePayment(orderId));
+            }
+            if (!orderIds.isEmpty()) {
+                recovered.increment(orderIds.size());
+                log.atWarn().addKeyValue("payments", orderIds.size()).log("Resuming stuck payments");
+            }
+        } catch (Exception e) {
+            log.atError().setCause(e).log("Stuck payment sweep failed");
+        }
+    }
+}
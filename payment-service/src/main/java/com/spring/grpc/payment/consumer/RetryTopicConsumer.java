@@ -0,0 +1,161 @@
+package com.spring.grpc.payment.consumer;
+
+import com.spring.grpc.payment.dto.OrderEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consumes the delayed retry topics.
+ *
+ * Each retry topic has a single fixed delay, so its records become due in offset
+ * order. When the listener meets a record that is not due yet it seeks back to it
+ * and pauses only that partition until the record's due time; nothing sleeps on
+ * the consumer thread, and the other tiers and the main topics keep flowing.
+ *
+ * Due records go through the same {@link KeyOrderedDispatcher} and handler as the
+ * main listeners. The batch waits for them before committing, so offsets are only
+ * committed for records that were processed or moved on to the next tier.
+ */
+@Component
+@Slf4j
+public class RetryTopicConsumer {
+
+    static final String LISTENER_ID = "order-event-retry";
+
+    private final OrderEventConsumer orderEventConsumer;
+    private final KeyOrderedDispatcher dispatcher;
+    private final KafkaListenerEndpointRegistry registry;
+    private final ScheduledExecutorService resumer =
+            Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("retry-resume-"));
+
+    public RetryTopicConsumer(OrderEventConsumer orderEventConsumer,
+                              KeyOrderedDispatcher dispatcher,
+                              KafkaListenerEndpointRegistry registry) {
+        this.orderEventConsumer = orderEventConsumer;
+        this.dispatcher = dispatcher;
+        this.registry = registry;
+    }
+
+    @KafkaListener(
+            id = LISTENER_ID,
+            topics = "#{@retryTopics.retryTopicNames()}",
+            groupId = "${spring.kafka.consumer.group-id}",
+            containerFactory = "retryListenerContainerFactory",
+            properties = "max.poll.records=${kafka.retry.max-poll-records:100}"
+    )
+    public void handleRetries(List<ConsumerRecord<String, OrderEvent>> records, Consumer<?, ?> consumer) {
+        Map<TopicPartition, List<ConsumerRecord<String, OrderEvent>>> byPartition = new LinkedHashMap<>();
+        for (ConsumerRecord<String, OrderEvent> record : records) {
+            byPartition.computeIfAbsent(new TopicPartition(record.topic(), record.partition()), tp -> new ArrayList<>())
+                    .add(record);
+        }
+
+        long now = System.currentTimeMillis();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+
+        for (Map.Entry<TopicPartition, List<ConsumerRecord<String, OrderEvent>>> entry : byPartition.entrySet()) {
+            TopicPartition partition = entry.getKey();
+            for (ConsumerRecord<String, OrderEvent> record : entry.getValue()) {
+                long dueAt = longHeader(record, RetryTopics.HEADER_DUE_AT, 0L);
+                if (dueAt > now) {
+                    // Later records in this partition are due even later
+                    consumer.seek(partition, record.offset());
+                    pauseUntil(partition, dueAt - now);
+                    break;
+                }
+                pending.add(dispatch(record));
+                offsets.put(partition, new OffsetAndMetadata(record.offset() + 1));
+            }
+        }
+
+        if (!pending.isEmpty()) {
+            CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new)).join();
+        }
+        if (!offsets.isEmpty()) {
+            consumer.commitSync(offsets);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        resumer.shutdownNow();
+    }
+
+    private CompletableFuture<Void> dispatch(ConsumerRecord<String, OrderEvent> record) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        OrderEvent event = record.value();
+        String sourceTopic = stringHeader(record, RetryTopics.HEADER_ORIGINAL_TOPIC);
+        if (event == null || sourceTopic == null) {
+            log.atError()
+                    .addKeyValue("topic", record.topic())
+                    .addKeyValue("offset", record.offset())
+                    .log("Skipping retry record without payload or original topic");
+            done.complete(null);
+            return done;
+        }
+
+        int failedAttempts = (int) longHeader(record, RetryTopics.HEADER_ATTEMPT, 1L);
+        dispatcher.dispatch(event.getOrderId(), () -> {
+            try {
+                orderEventConsumer.handle(sourceTopic, event, failedAttempts);
+            } finally {
+                if (Thread.currentThread().isInterrupted()) {
+                    // Stopped by a shutdown: fail the batch so its offsets are not committed
+                    done.completeExceptionally(new CancellationException("Interrupted by shutdown"));
+                } else {
+                    done.complete(null);
+                }
+            }
+        });
+        return done;
+    }
+
+    private void pauseUntil(TopicPartition partition, long delayMs) {
+        MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return;
+        }
+        container.pausePartition(partition);
+        resumer.schedule(() -> container.resumePartition(partition), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static String stringHeader(ConsumerRecord<?, ?> record, String name) {
+        Header header = record.headers().lastHeader(name);
+        return header == null ? null : new String(header.value(), StandardCharsets.UTF_8);
+    }
+
+    private static long longHeader(ConsumerRecord<?, ?> record, String name, long defaultValue) {
+        String value = stringHeader(record, name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.spring.grpc.payment.consumer;
+
+import com.spring.grpc.payment.dto.OrderEvent;
+import com.spring.grpc.payment.metrics.PaymentMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves an order event that failed processing to its next retry tier, or to the
+ * DLT once every tier has been tried.
+ *
+ * The send is awaited, and repeated every kafka.retry.send-backoff-ms until it
+ * succeeds, so the caller only acknowledges the source record once its retry copy
+ * is stored. While the broker is unreachable this holds the payment worker, and
+ * the listeners pause once every worker is held.
+ */
+@Component
+@Slf4j
+public class RetryTopicPublisher {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final RetryTopics retryTopics;
+    private final PaymentMetrics paymentMetrics;
+    private final long sendTimeoutMs;
+    private final long sendBackoffMs;
+
+    public RetryTopicPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                               RetryTopics retryTopics,
+                               PaymentMetrics paymentMetrics,
+                               @Value("${kafka.retry.send-timeout-ms:10000}") long sendTimeoutMs,
+                               @Value("${kafka.retry.send-backoff-ms:1000}") long sendBackoffMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.retryTopics = retryTopics;
+        this.paymentMetrics = paymentMetrics;
+        this.sendTimeoutMs = sendTimeoutMs;
+        this.sendBackoffMs = sendBackoffMs;
+    }
+
+    /**
+     * @param sourceTopic    topic the event was originally consumed from
+     * @param failedAttempts number of times the event has failed, including this one
+     * @return true once the event is stored in its next topic; false only if the
+     *         thread was interrupted first, in which case the source record must not
+     *         be acknowledged
+     */
+    public boolean publish(String sourceTopic, OrderEvent event, int failedAttempts, Exception cause) {
+        String target = retryTopics.nextTopic(sourceTopic, failedAttempts);
+        long dueAt = System.currentTimeMillis() + retryTopics.delayAfter(failedAttempts).toMillis();
+        boolean deadLettered = target.equals(retryTopics.dltTopic(sourceTopic));
+
+        ProducerRecord<String, Object> record = new ProducerRecord<>(target, event.getOrderId(), event);
+        Headers headers = record.headers();
+        addHeader(headers, RetryTopics.HEADER_ORIGINAL_TOPIC, sourceTopic);
+        addHeader(headers, RetryTopics.HEADER_ATTEMPT, Integer.toString(failedAttempts));
+        addHeader(headers, RetryTopics.HEADER_DUE_AT, Long.toString(dueAt));
+        addHeader(headers, RetryTopics.HEADER_EXCEPTION, describe(cause));
+
+        while (!send(record, failedAttempts)) {
+            try {
+                Thread.sleep(sendBackoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        paymentMetrics.recordRedelivery(deadLettered);
+        (deadLettered ? log.atError() : log.atWarn())
+                .addKeyValue("orderId", event.getOrderId())
+                .addKeyValue("topic", target)
+                .addKeyValue("attempts", failedAttempts)
+                .setCause(cause)
+                .log(deadLettered ? "Order event dead-lettered" : "Order event scheduled for retry");
+        return true;
+    }
+
+    private boolean send(ProducerRecord<String, Object> record, int failedAttempts) {
+        try {
+            kafkaTemplate.send(record).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            // Left set, so the backoff sleep returns at once
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            paymentMetrics.recordRedeliveryPublishFailed();
+            log.atError()
+                    .addKeyValue("orderId", record.key())
+                    .addKeyValue("topic", record.topic())
+                    .addKeyValue("attempts", failedAttempts)
+                    .setCause(e)
+                    .log("Could not publish failed order event for redelivery, retrying");
+            return false;
+        }
+    }
+
+    private static void addHeader(Headers headers, String name, String value) {
+        headers.add(name, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String describe(Exception cause) {
+        String text = cause.getClass().getName() + ": " + cause.getMessage();
+        return text.length() > MAX_ERROR_LENGTH ? text.substring(0, MAX_ERROR_LENGTH) : text;
+    }
+}
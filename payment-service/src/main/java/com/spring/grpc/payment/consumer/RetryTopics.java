@@ -0,0 +1,106 @@
+package com.spring.grpc.payment.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Names and delays of the retry tiers.
+ *
+ * For a source topic such as order.created and delays [1s, 30s] the tiers are
+ * order.created.retry-1s, order.created.retry-30s and finally order.created.DLT.
+ */
+@Component
+public class RetryTopics {
+
+    public static final String HEADER_ORIGINAL_TOPIC = "x-original-topic";
+    public static final String HEADER_ATTEMPT = "x-retry-attempt";
+    public static final String HEADER_DUE_AT = "x-retry-due-at";
+    public static final String HEADER_EXCEPTION = "x-exception";
+
+    private static final String DLT_SUFFIX = ".DLT";
+
+    private final List<String> sourceTopics;
+    private final List<Duration> delays;
+
+    public RetryTopics(@Value("${kafka.topics.order-created}") String orderCreatedTopic,
+                       @Value("${kafka.topics.order-updated}") String orderUpdatedTopic,
+                       @Value("${kafka.retry.delays:1s,30s}") List<Duration> delays) {
+        this.sourceTopics = List.of(orderCreatedTopic, orderUpdatedTopic);
+        this.delays = List.copyOf(delays);
+    }
+
+    /**
+     * Topic a record goes to after failing {@code failedAttempts} times (1-based)
+     */
+    public String nextTopic(String sourceTopic, int failedAttempts) {
+        int tier = failedAttempts - 1;
+        return tier < delays.size() ? retryTopic(sourceTopic, delays.get(tier)) : dltTopic(sourceTopic);
+    }
+
+    /**
+     * Delay before the given failed attempt (1-based) is retried; zero for the DLT
+     */
+    public Duration delayAfter(int failedAttempts) {
+        int tier = failedAttempts - 1;
+        return tier < delays.size() ? delays.get(tier) : Duration.ZERO;
+    }
+
+    public String dltTopic(String sourceTopic) {
+        return sourceTopic + DLT_SUFFIX;
+    }
+
+    /**
+     * Source topic of a retry or DLT record: its x-original-topic header, or the
+     * topic its DLT belongs to
+     */
+    public String originalTopic(ConsumerRecord<?, ?> record) {
+        Header header = record.headers().lastHeader(HEADER_ORIGINAL_TOPIC);
+        if (header != null) {
+            return new String(header.value(), StandardCharsets.UTF_8);
+        }
+        return sourceTopics.stream()
+                .filter(source -> dltTopic(source).equals(record.topic()))
+                .findFirst()
+                .orElseThrow(() -> new IllegalStateException("Unknown DLT topic " + record.topic()));
+    }
+
+    public List<String> sourceTopics() {
+        return sourceTopics;
+    }
+
+    public String[] retryTopicNames() {
+        List<String> names = new ArrayList<>();
+        for (String source : sourceTopics) {
+            for (Duration delay : delays) {
+                names.add(retryTopic(source, delay));
+            }
+        }
+        return names.toArray(String[]::new);
+    }
+
+    public String[] dltTopicNames() {
+        return sourceTopics.stream().map(this::dltTopic).toArray(String[]::new);
+    }
+
+    private static String retryTopic(String sourceTopic, Duration delay) {
+        return sourceTopic + ".retry-" + format(delay);
+    }
+
+    private static String format(Duration delay) {
+        long millis = delay.toMillis();
+        if (millis % 60_000 == 0) {
+            return millis / 60_000 + "m";
+        }
+        if (millis % 1000 == 0) {
+            return millis / 1000 + "s";
+        }
+        return millis + "ms";
+    }
+}
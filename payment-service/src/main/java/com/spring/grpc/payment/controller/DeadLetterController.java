@@ -0,0 +1,78 @@
+package com.spring.grpc.payment.controller;
+
+import com.spring.grpc.common.kafka.DeadLetterReplayer;
+import com.spring.grpc.common.kafka.DeadLetterReplayer.ReplayStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dead-letter topic REST API Controller
+ *
+ * Lazy, with the {@link DeadLetterReplayer} behind it: both are created on the
+ * first call instead of at startup.
+ */
+@Lazy
+@RestController
+@RequestMapping("/api/payments/dlt")
+@RequiredArgsConstructor
+public class DeadLetterController {
+
+    private final DeadLetterReplayer deadLetterReplayer;
+
+    @Value("${kafka.retry.replay.default-rate:50}")
+    private int defaultRate;
+
+    @Value("${kafka.retry.replay.max-rate:1000}")
+    private int maxRate;
+
+    /**
+     * Replay dead-lettered order events back to their original topics
+     */
+    @PostMapping("/replay")
+    public ResponseEntity<?> replay(@RequestParam(defaultValue = "1000") int maxRecords,
+                                    @RequestParam(required = false) Integer ratePerSecond) {
+        int rate = ratePerSecond != null ? ratePerSecond : defaultRate;
+        if (maxRecords <= 0 || rate <= 0 || rate > maxRate) {
+            return error(400, "maxRecords must be positive and ratePerSecond between 1 and " + maxRate);
+        }
+
+        try {
+            return ResponseEntity.accepted().body(deadLetterReplayer.start(maxRecords, rate));
+        } catch (IllegalStateException e) {
+            return error(409, e.getMessage());
+        }
+    }
+
+    /**
+     * Get status of the running or most recent replay
+     */
+    @GetMapping("/replay")
+    public ResponseEntity<?> getReplayStatus() {
+        ReplayStatus status = deadLetterReplayer.status();
+        if (status == null) {
+            return error(404, "No DLT replay has run");
+        }
+        return ResponseEntity.ok(status);
+    }
+
+    /**
+     * Stop the running replay after its current batch
+     */
+    @DeleteMapping("/replay")
+    public ResponseEntity<?> stopReplay() {
+        deadLetterReplayer.stop();
+        return getReplayStatus();
+    }
+
+    private static ResponseEntity<Map<String, String>> error(int status, String message) {
+        Map<String, String> error = new HashMap<>();
+        error.put("error", message);
+        return ResponseEntity.status(status).body(error);
+    }
+}
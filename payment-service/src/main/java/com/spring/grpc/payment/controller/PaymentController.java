@@ -1,8 +1,10 @@
 package com.spring.grpc.payment.controller;
 
+import com.spring.grpc.common.money.Money;
 import com.spring.grpc.payment.entity.Payment;
 import com.spring.grpc.payment.service.PaymentService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,6 +23,9 @@ public class PaymentController {
 
     private final PaymentService paymentService;
 
+    @Value("${payment.money.default-currency:USD}")
+    private String defaultCurrency;
+
     /**
      * Get payment by order ID
      */
@@ -61,25 +66,37 @@ public class PaymentController {
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getPaymentStats() {
         List<Payment> allPayments = paymentService.getAllPayments();
-        
+
+        // One pass; completed amounts are summed exactly per currency in minor units
+        long completed = 0, failed = 0, pending = 0, processing = 0;
+        Map<String, long[]> processedMinor = new HashMap<>();
+        for (Payment payment : allPayments) {
+            switch (payment.getStatus()) {
+                case "COMPLETED" -> {
+                    completed++;
+                    processedMinor.computeIfAbsent(payment.getCurrency(), c -> new long[1])[0] += payment.getAmountMinor();
+                }
+                case "FAILED" -> failed++;
+                case "PENDING" -> pending++;
+                case "PROCESSING" -> processing++;
+                default -> { }
+            }
+        }
         long total = allPayments.size();
-        long completed = allPayments.stream().filter(p -> "COMPLETED".equals(p.getStatus())).count();
-        long failed = allPayments.stream().filter(p -> "FAILED".equals(p.getStatus())).count();
-        long pending = allPayments.stream().filter(p -> "PENDING".equals(p.getStatus())).count();
-        long processing = allPayments.stream().filter(p -> "PROCESSING".equals(p.getStatus())).count();
-        
-        double totalAmount = allPayments.stream()
-                .filter(p -> "COMPLETED".equals(p.getStatus()))
-                .mapToDouble(Payment::getAmount)
-                .sum();
-        
+
+        Map<String, Long> totalsByCurrency = new HashMap<>();
+        processedMinor.forEach((currency, sum) -> totalsByCurrency.put(currency, sum[0]));
+        long defaultTotal = totalsByCurrency.getOrDefault(defaultCurrency, 0L);
+
         Map<String, Object> stats = new HashMap<>();
         stats.put("totalPayments", total);
         stats.put("completed", completed);
         stats.put("failed", failed);
         stats.put("pending", pending);
         stats.put("processing", processing);
-        stats.put("totalAmountProcessed", totalAmount);
+        stats.put("totalAmountProcessedMinor", totalsByCurrency);
+        // Legacy field: the default currency only, in major units
+        stats.put("totalAmountProcessed", Money.toMajor(defaultTotal, defaultCurrency));
         stats.put("successRate", total > 0 ? (double) completed / total * 100 : 0);
         
         return ResponseEntity.ok(stats);
@@ -9,6 +9,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * Order Event DTO (consumed from Kafka)
@@ -23,8 +24,12 @@ public class OrderEvent {
     private String productId;
     private String productName;
     private Integer quantity;
-    private Double price;
-    private Double totalAmount;
+    private Double price;       // legacy, major units
+    private Double totalAmount; // legacy, major units
+    private long priceMinor;
+    private long totalAmountMinor;
+    private String currency;    // null on events from before minor units
+    private List<Line> lines;   // order.created only; the product fields above are the first line
     private String status;
     
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
@@ -32,4 +37,20 @@ public class OrderEvent {
     private LocalDateTime createdAt;
     
     private String eventType; // CREATED, UPDATED, CANCELLED
+
+    /**
+     * One line of the order, in minor units of the order's currency
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Line {
+        private int lineNo;
+        private String productId;
+        private String productName;
+        private int quantity;
+        private long priceMinor;
+        private long totalAmountMinor;
+    }
 }
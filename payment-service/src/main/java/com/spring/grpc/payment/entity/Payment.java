@@ -1,5 +1,7 @@
 package com.spring.grpc.payment.entity;
 
+import com.spring.grpc.common.id.UuidV7;
+import com.spring.grpc.common.money.Money;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -7,6 +9,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.UUID;
 
 /**
  * Payment Entity
@@ -20,20 +23,29 @@ import java.time.LocalDateTime;
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    private String paymentId;
+    @UuidV7
+    private UUID paymentId;
 
-    @Column(nullable = false, unique = true)
+    // Indexed, not unique: the partitioned table cannot enforce it (see schema.sql)
+    @Column(nullable = false)
     private String orderId;
 
     @Column(nullable = false)
     private String userId;
 
+    // Minor units (cents for USD) of currency; numeric in the table so SQL sums cannot overflow
+    @Column(nullable = false, precision = 19)
+    private long amountMinor;
+
+    @Column(nullable = false, length = 3)
+    private String currency; // ISO 4217
+
+    // Legacy double column, derived from amountMinor and still written for old readers
     @Column(nullable = false)
-    private Double amount;
+    private double amount;
 
     @Column(nullable = false)
-    private String status; // PENDING, PROCESSING, COMPLETED, FAILED
+    private String status; // PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED, REFUNDED
 
     @Column
     private String paymentMethod; // CREDIT_CARD, DEBIT_CARD, PAYPAL, etc.
@@ -52,6 +64,7 @@ public class Payment {
 
     @PrePersist
     protected void onCreate() {
+        amount = Money.toMajor(amountMinor, currency);
         createdAt = LocalDateTime.now();
         updatedAt = LocalDateTime.now();
         if (status == null) {
@@ -0,0 +1,163 @@
+package com.spring.grpc.payment.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage latency timers for the payment path, plus end-to-end lag measured
+ * from the order's createdAt.
+ *
+ * Timers are registered once up front and recorded with raw nanoTime deltas, so
+ * the hot path neither looks meters up by tag nor allocates Timer.Sample objects.
+ * SLO buckets for these meters are configured in application.yml under
+ * management.metrics.distribution.slo.
+ */
+@Component
+public class PaymentMetrics {
+
+    public static final String STAGE_TIMER = "payment.stage";
+    public static final String LAG_TIMER = "order.payment.lag";
+    public static final String REDELIVERY_COUNTER = "payment.events.redelivery";
+    public static final String CANCELLATION_COUNTER = "payment.cancellations";
+
+    /**
+     * How a cancellation caught the payment
+     */
+    public enum Cancellation {
+        /** order cancelled before its payment was created */
+        SKIPPED,
+        /** open payment cancelled before it was charged */
+        HALTED,
+        /** payment charged, then refunded */
+        REFUNDED
+    }
+
+    private final Timer consumeCreatedSuccess;
+    private final Timer consumeCreatedFailure;
+    private final Timer consumeUpdatedSuccess;
+    private final Timer consumeUpdatedFailure;
+    private final Timer processCompleted;
+    private final Timer processFailed;
+    private final Timer lagReceived;
+    private final Timer lagSettled;
+    private final Counter redeliveryRetry;
+    private final Counter redeliveryDeadLetter;
+    private final Counter redeliveryPublishFailed;
+    private final Counter redeliveryReplayed;
+    private final Map<Cancellation, Counter> cancellations = new EnumMap<>(Cancellation.class);
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    public PaymentMetrics(MeterRegistry registry) {
+        this.consumeCreatedSuccess = stageTimer(registry, "consume.order-created", "success");
+        this.consumeCreatedFailure = stageTimer(registry, "consume.order-created", "failure");
+        this.consumeUpdatedSuccess = stageTimer(registry, "consume.order-updated", "success");
+        this.consumeUpdatedFailure = stageTimer(registry, "consume.order-updated", "failure");
+        this.processCompleted = stageTimer(registry, "payment.process", "completed");
+        this.processFailed = stageTimer(registry, "payment.process", "failed");
+        this.lagReceived = lagTimer(registry, "received");
+        this.lagSettled = lagTimer(registry, "settled");
+        this.redeliveryRetry = redeliveryCounter(registry, "retry");
+        this.redeliveryDeadLetter = redeliveryCounter(registry, "dead-letter");
+        this.redeliveryPublishFailed = redeliveryCounter(registry, "publish-failed");
+        this.redeliveryReplayed = redeliveryCounter(registry, "replayed");
+        for (Cancellation outcome : Cancellation.values()) {
+            cancellations.put(outcome, Counter.builder(CANCELLATION_COUNTER)
+                    .description("Payments stopped or refunded because their order was cancelled")
+                    .tag("outcome", outcome.name().toLowerCase())
+                    .register(registry));
+        }
+    }
+
+    public void recordConsumeCreated(long startNanos, boolean success) {
+        (success ? consumeCreatedSuccess : consumeCreatedFailure)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordConsumeUpdated(long startNanos, boolean success) {
+        (success ? consumeUpdatedSuccess : consumeUpdatedFailure)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordProcess(long startNanos, boolean completed) {
+        (completed ? processCompleted : processFailed)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Lag from order creation until payment-service received the event
+     */
+    public void recordReceivedLag(LocalDateTime orderCreatedAt) {
+        recordLag(lagReceived, orderCreatedAt);
+    }
+
+    /**
+     * Lag from order creation until the payment reached a final status
+     */
+    public void recordSettledLag(LocalDateTime orderCreatedAt) {
+        recordLag(lagSettled, orderCreatedAt);
+    }
+
+    /**
+     * A failed event was moved to a retry topic, or to the DLT once retries ran out
+     */
+    public void recordRedelivery(boolean deadLettered) {
+        (deadLettered ? redeliveryDeadLetter : redeliveryRetry).increment();
+    }
+
+    /**
+     * A failed event could not be written to its retry or dead-letter topic; the
+     * write is retried
+     */
+    public void recordRedeliveryPublishFailed() {
+        redeliveryPublishFailed.increment();
+    }
+
+    public void recordReplayed() {
+        redeliveryReplayed.increment();
+    }
+
+    public void recordCancellation(Cancellation outcome) {
+        cancellations.get(outcome).increment();
+    }
+
+    private void recordLag(Timer timer, LocalDateTime orderCreatedAt) {
+        if (orderCreatedAt == null) {
+            return;
+        }
+        long createdMillis = orderCreatedAt.atZone(zone).toInstant().toEpochMilli();
+        long lagMillis = System.currentTimeMillis() - createdMillis;
+        if (lagMillis >= 0) {
+            timer.record(lagMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static Timer stageTimer(MeterRegistry registry, String stage, String outcome) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Latency of individual stages on the payment path")
+                .tag("stage", stage)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static Counter redeliveryCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder(REDELIVERY_COUNTER)
+                .description("Failed order events moved to retry or dead-letter topics, or replayed from the DLT")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static Timer lagTimer(MeterRegistry registry, String phase) {
+        return Timer.builder(LAG_TIMER)
+                .description("End-to-end lag from order creation to payment")
+                .tag("phase", phase)
+                .register(registry);
+    }
+}
@@ -2,34 +2,127 @@ package com.spring.grpc.payment.repository;
 
 import com.spring.grpc.payment.entity.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Payment Repository
+ *
+ * Read-only methods run on a read replica when replica routing is configured.
+ * The table is partitioned by created_at, so listings take a lower bound on it.
  */
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, String> {
+public interface PaymentRepository extends JpaRepository<Payment, UUID> {
 
     /**
      * Find payment by order ID
      */
+    @Transactional(readOnly = true)
     Optional<Payment> findByOrderId(String orderId);
 
     /**
-     * Find payments by user ID
+     * Find payments created since the given time. The bound on the partition key
+     * lets the planner skip older partitions.
      */
-    List<Payment> findByUserId(String userId);
+    @Transactional(readOnly = true)
+    List<Payment> findByCreatedAtGreaterThanEqual(LocalDateTime since);
 
     /**
-     * Find payments by status
+     * Find payments by user ID created since the given time
      */
-    List<Payment> findByStatus(String status);
+    @Transactional(readOnly = true)
+    List<Payment> findByUserIdAndCreatedAtGreaterThanEqual(String userId, LocalDateTime since);
+
+    /**
+     * Find payments by status created since the given time
+     */
+    @Transactional(readOnly = true)
+    List<Payment> findByStatusAndCreatedAtGreaterThanEqual(String status, LocalDateTime since);
 
     /**
      * Check if payment exists for order
      */
+    @Transactional(readOnly = true)
     boolean existsByOrderId(String orderId);
+
+    /**
+     * Claim the order for a new payment in payment_orders. Returns 1 if this call
+     * claimed it, 0 if a payment was already created for the order; a concurrent
+     * claim blocks until the other transaction ends. Must run in the transaction
+     * that inserts the payment, so a rolled back insert releases the claim.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO payment_orders (order_id, created_at) VALUES (:orderId, :now) " +
+            "ON CONFLICT DO NOTHING", nativeQuery = true)
+    int claimOrder(@Param("orderId") String orderId, @Param("now") LocalDateTime now);
+
+    /**
+     * Move payment from one status to another only if it is still in the expected
+     * status. Returns the number of rows changed (0 or 1).
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :to, p.updatedAt = :now " +
+            "WHERE p.orderId = :orderId AND p.status = :from")
+    int transitionStatus(@Param("orderId") String orderId,
+                         @Param("from") String from,
+                         @Param("to") String to,
+                         @Param("now") LocalDateTime now);
+
+    /**
+     * Compare-and-set to a final status, recording the transaction ID or error
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = :to, p.transactionId = :transactionId, " +
+            "p.errorMessage = :errorMessage, p.updatedAt = :now " +
+            "WHERE p.orderId = :orderId AND p.status = :from")
+    int settle(@Param("orderId") String orderId,
+               @Param("from") String from,
+               @Param("to") String to,
+               @Param("transactionId") String transactionId,
+               @Param("errorMessage") String errorMessage,
+               @Param("now") LocalDateTime now);
+
+    /**
+     * Cancel payment if it has not reached a final status yet
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Payment p SET p.status = 'CANCELLED', p.errorMessage = :reason, p.updatedAt = :now " +
+            "WHERE p.orderId = :orderId AND p.status IN ('PENDING', 'PROCESSING')")
+    int cancelIfOpen(@Param("orderId") String orderId,
+                     @Param("reason") String reason,
+                     @Param("now") LocalDateTime now);
+
+    /**
+     * Claim up to limit payments left PENDING or PROCESSING for longer than the
+     * cutoff (their worker died, or their record was lost), moving them back to
+     * PENDING. Touching updated_at keeps other instances off them until the next
+     * cutoff; SKIP LOCKED keeps concurrent sweeps from waiting on each other.
+     *
+     * @return the order IDs of the claimed payments
+     */
+    @Transactional
+    @Query(value = "WITH stuck AS (" +
+            "  SELECT payment_id, created_at FROM payments " +
+            "  WHERE status IN ('PENDING', 'PROCESSING') AND updated_at < :cutoff AND created_at >= :since " +
+            "  ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED) " +
+            "UPDATE payments p SET status = 'PENDING', updated_at = :now FROM stuck s " +
+            "WHERE p.payment_id = s.payment_id AND p.created_at = s.created_at " +
+            "RETURNING p.order_id",
+            nativeQuery = true)
+    List<String> claimStuck(@Param("cutoff") LocalDateTime cutoff,
+                            @Param("since") LocalDateTime since,
+                            @Param("now") LocalDateTime now,
+                            @Param("limit") int limit);
 }
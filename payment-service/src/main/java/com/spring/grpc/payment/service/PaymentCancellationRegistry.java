@@ -0,0 +1,41 @@
+package com.spring.grpc.payment.service;
+
+import com.spring.grpc.common.cache.ExpiringKeys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Orders known to be cancelled, keyed by orderId.
+ *
+ * Filled from the consumer thread as soon as a CANCELLED update is polled, ahead of
+ * any work still queued for that order, and checked by payment workers between
+ * stages. It only saves work: the status transitions in {@link PaymentService}
+ * are what guarantee a cancelled payment is never completed.
+ *
+ * Entries expire after a TTL, and the oldest are dropped beyond max-entries, both
+ * without scanning the registry (see {@link ExpiringKeys}).
+ */
+@Component
+public class PaymentCancellationRegistry {
+
+    private final ExpiringKeys<String> cancelled;
+
+    public PaymentCancellationRegistry(@Value("${payment.cancellation.ttl:10m}") Duration ttl,
+                                       @Value("${payment.cancellation.max-entries:100000}") int maxEntries) {
+        this.cancelled = new ExpiringKeys<>(ttl.toMillis(), maxEntries);
+    }
+
+    public void cancel(String orderId) {
+        cancelled.add(orderId);
+    }
+
+    public boolean isCancelled(String orderId) {
+        return cancelled.contains(orderId);
+    }
+
+    public int size() {
+        return cancelled.size();
+    }
+}
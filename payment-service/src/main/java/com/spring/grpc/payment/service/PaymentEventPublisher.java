@@ -0,0 +1,62 @@
+package com.spring.grpc.payment.service;
+
+import com.spring.grpc.payment.dto.PaymentResultEvent;
+import com.spring.grpc.payment.entity.Payment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes final payment results (payment.completed / payment.failed) for
+ * order-service.
+ *
+ * The send is awaited and a failure is thrown back to the worker, which moves the
+ * order event to the retry topics; the retry finds the payment already settled
+ * and publishes its result again. Consumers must therefore accept duplicates.
+ */
+@Component
+@Slf4j
+public class PaymentEventPublisher {
+
+    private final KafkaTemplate<String, Object> kafkaTemplate;
+    private final String paymentCompletedTopic;
+    private final String paymentFailedTopic;
+    private final long sendTimeoutMs;
+
+    public PaymentEventPublisher(KafkaTemplate<String, Object> kafkaTemplate,
+                                 @Value("${kafka.topics.payment-completed}") String paymentCompletedTopic,
+                                 @Value("${kafka.topics.payment-failed}") String paymentFailedTopic,
+                                 @Value("${kafka.retry.send-timeout-ms:10000}") long sendTimeoutMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.paymentCompletedTopic = paymentCompletedTopic;
+        this.paymentFailedTopic = paymentFailedTopic;
+        this.sendTimeoutMs = sendTimeoutMs;
+    }
+
+    /**
+     * Publish the result of a COMPLETED or FAILED payment
+     */
+    public void publishResult(Payment payment) throws InterruptedException, ExecutionException, TimeoutException {
+        String topic = "COMPLETED".equals(payment.getStatus()) ? paymentCompletedTopic : paymentFailedTopic;
+        PaymentResultEvent event = PaymentResultEvent.builder()
+                .paymentId(payment.getPaymentId().toString())
+                .orderId(payment.getOrderId())
+                .userId(payment.getUserId())
+                .amount(payment.getAmount())
+                .amountMinor(payment.getAmountMinor())
+                .currency(payment.getCurrency())
+                .status(payment.getStatus())
+                .transactionId(payment.getTransactionId())
+                .errorMessage(payment.getErrorMessage())
+                .processedAt(payment.getUpdatedAt())
+                .build();
+
+        kafkaTemplate.send(topic, payment.getOrderId(), event).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        log.debug("Published payment result to {}: {}", topic, payment.getOrderId());
+    }
+}
@@ -1,12 +1,18 @@
 package com.spring.grpc.payment.service;
 
+import com.spring.grpc.common.datasource.DataSourceRouting;
+import com.spring.grpc.common.datasource.ReadYourWritesGuard;
 import com.spring.grpc.payment.entity.Payment;
+import com.spring.grpc.payment.metrics.PaymentMetrics;
 import com.spring.grpc.payment.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -20,102 +26,181 @@ import java.util.UUID;
 public class PaymentService {
 
     private final PaymentRepository paymentRepository;
+    private final PaymentCancellationRegistry cancellationRegistry;
+    private final PaymentMetrics paymentMetrics;
+    private final ReadYourWritesGuard readYourWrites;
+
+    @Value("${datasource.partitioning.query-lookback:90d}")
+    private Duration queryLookback;
 
     /**
      * Create payment for order
      */
     @Transactional
-    public Payment createPayment(String orderId, String userId, Double amount) {
-        // Check if payment already exists
-        if (paymentRepository.existsByOrderId(orderId)) {
+    public Payment createPayment(String orderId, String userId, long amountMinor, String currency) {
+        // payments can't have a unique order_id (it's partitioned), so claim the order first:
+        // of two concurrent deliveries, the second waits here and then sees the claim taken
+        if (paymentRepository.claimOrder(orderId, LocalDateTime.now()) == 0) {
             log.warn("Payment already exists for order: {}", orderId);
-            return paymentRepository.findByOrderId(orderId).orElseThrow();
+            return paymentRepository.findByOrderId(orderId).orElseThrow(() ->
+                    new IllegalStateException("Payment for order " + orderId + " was already created and archived"));
         }
 
         // Create payment entity
         Payment payment = Payment.builder()
                 .orderId(orderId)
                 .userId(userId)
-                .amount(amount)
+                .amountMinor(amountMinor)
+                .currency(currency)
                 .status("PENDING")
                 .paymentMethod("AUTO")
                 .build();
 
         Payment savedPayment = paymentRepository.save(payment);
-        log.info("Payment created: {} for order: {}", savedPayment.getPaymentId(), orderId);
+        readYourWrites.recordWrite(orderId);
+        log.debug("Payment created: {} for order: {}", savedPayment.getPaymentId(), orderId);
 
         return savedPayment;
     }
 
     /**
      * Process payment (simulate payment processing)
+     *
+     * Each step is a compare-and-set on the payment status instead of one long
+     * transaction, so no connection is held across the gateway call and a
+     * concurrent cancellation always wins: a cancelled payment is never completed,
+     * and a charge that lands after the cancellation is refunded.
      */
-    @Transactional
     public Payment processPayment(String orderId) {
-        Optional<Payment> paymentOpt = paymentRepository.findByOrderId(orderId);
-        
-        if (paymentOpt.isEmpty()) {
-            throw new RuntimeException("Payment not found for order: " + orderId);
-        }
-
-        Payment payment = paymentOpt.get();
-        
-        if (!"PENDING".equals(payment.getStatus())) {
+        if (paymentRepository.transitionStatus(orderId, "PENDING", "PROCESSING", LocalDateTime.now()) == 0) {
+            Payment payment = reload(orderId);
             log.warn("Payment already processed: {}", payment.getPaymentId());
             return payment;
         }
+        log.debug("Payment processing started for order: {}", orderId);
 
-        // Update status to PROCESSING
-        payment.setStatus("PROCESSING");
-        paymentRepository.save(payment);
-        log.info("Payment processing started: {}", payment.getPaymentId());
+        if (cancellationRegistry.isCancelled(orderId)) {
+            paymentRepository.cancelIfOpen(orderId, "Order cancelled", LocalDateTime.now());
+            paymentMetrics.recordCancellation(PaymentMetrics.Cancellation.HALTED);
+            log.debug("Payment halted before gateway call, order cancelled: {}", orderId);
+            return reload(orderId);
+        }
 
-        // Simulate payment processing
+        String transactionId;
         try {
-            // In real scenario, this would call payment gateway API
-            Thread.sleep(1000); // Simulate processing time
-            
-            // Success scenario (90% success rate simulation)
-            if (Math.random() > 0.1) {
-                payment.setStatus("COMPLETED");
-                payment.setTransactionId("TXN-" + UUID.randomUUID().toString().substring(0, 8));
-                log.info("Payment completed successfully: {}", payment.getPaymentId());
-            } else {
-                // Failure scenario
-                payment.setStatus("FAILED");
-                payment.setErrorMessage("Insufficient funds or payment gateway error");
-                log.error("Payment failed: {}", payment.getPaymentId());
-            }
-            
-            return paymentRepository.save(payment);
-            
+            transactionId = chargeGateway();
         } catch (Exception e) {
-            payment.setStatus("FAILED");
-            payment.setErrorMessage(e.getMessage());
-            paymentRepository.save(payment);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            // Nothing was charged; release the claim so a retry can process it again
+            paymentRepository.transitionStatus(orderId, "PROCESSING", "PENDING", LocalDateTime.now());
             log.error("Payment processing error: {}", e.getMessage());
             throw new RuntimeException("Payment processing failed", e);
         }
+
+        if (transactionId == null) {
+            paymentRepository.settle(orderId, "PROCESSING", "FAILED", null,
+                    "Insufficient funds or payment gateway error", LocalDateTime.now());
+            log.debug("Payment failed for order: {}", orderId);
+            return reload(orderId);
+        }
+
+        boolean completed = !cancellationRegistry.isCancelled(orderId)
+                && paymentRepository.settle(orderId, "PROCESSING", "COMPLETED", transactionId, null,
+                LocalDateTime.now()) == 1;
+        if (!completed) {
+            // Cancelled while the gateway call was in flight
+            refund(orderId, "PROCESSING", transactionId, "Refunded: order cancelled during processing");
+        } else {
+            log.debug("Payment completed successfully for order: {}", orderId);
+        }
+        return reload(orderId);
+    }
+
+    /**
+     * Cancel the payment of a cancelled order. An open payment is cancelled, a
+     * completed one is refunded, and a failed one is left as is.
+     */
+    public Optional<Payment> cancelPayment(String orderId) {
+        if (paymentRepository.cancelIfOpen(orderId, "Order cancelled", LocalDateTime.now()) == 1) {
+            paymentMetrics.recordCancellation(PaymentMetrics.Cancellation.HALTED);
+            return findOnPrimary(orderId);
+        }
+
+        Optional<Payment> payment = findOnPrimary(orderId);
+        if (payment.isPresent() && "COMPLETED".equals(payment.get().getStatus())) {
+            refund(orderId, "COMPLETED", payment.get().getTransactionId(), "Refunded: order cancelled after payment");
+            return findOnPrimary(orderId);
+        }
+        return payment;
+    }
+
+    /**
+     * Refund a charge and mark the payment REFUNDED. Starting from PROCESSING, the
+     * payment may already have been moved to CANCELLED by cancelPayment.
+     */
+    private void refund(String orderId, String fromStatus, String transactionId, String reason) {
+        // In real scenario: call the payment gateway refund API with the transaction ID
+        LocalDateTime now = LocalDateTime.now();
+        int updated = paymentRepository.settle(orderId, fromStatus, "REFUNDED", transactionId, reason, now);
+        if (updated == 0 && "PROCESSING".equals(fromStatus)) {
+            updated = paymentRepository.settle(orderId, "CANCELLED", "REFUNDED", transactionId, reason, now);
+        }
+        if (updated == 1) {
+            paymentMetrics.recordCancellation(PaymentMetrics.Cancellation.REFUNDED);
+            log.debug("Payment refunded for order: {}", orderId);
+        }
+    }
+
+    /**
+     * Simulated payment gateway call. Returns the transaction ID, or null if declined.
+     */
+    private String chargeGateway() throws InterruptedException {
+        // In real scenario, this would call payment gateway API
+        Thread.sleep(1000); // Simulate processing time
+
+        // Success scenario (90% success rate simulation)
+        if (Math.random() > 0.1) {
+            return "TXN-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        return null;
+    }
+
+    private Payment reload(String orderId) {
+        return findOnPrimary(orderId)
+                .orElseThrow(() -> new RuntimeException("Payment not found for order: " + orderId));
+    }
+
+    /**
+     * Read back a payment this flow may just have changed. Also starts the
+     * read-your-writes window for it, so API reads see the new status too.
+     */
+    private Optional<Payment> findOnPrimary(String orderId) {
+        readYourWrites.recordWrite(orderId);
+        return DataSourceRouting.onPrimary(() -> paymentRepository.findByOrderId(orderId));
     }
 
     /**
-     * Get payment by order ID
+     * Get payment by order ID; read from the primary if this instance changed it recently
      */
     public Optional<Payment> getPaymentByOrderId(String orderId) {
-        return paymentRepository.findByOrderId(orderId);
+        return readYourWrites.read(orderId, () -> paymentRepository.findByOrderId(orderId));
     }
 
     /**
-     * Get payments by user ID
+     * Get payments by user ID created within the query lookback
      */
     public List<Payment> getPaymentsByUserId(String userId) {
-        return paymentRepository.findByUserId(userId);
+        return paymentRepository.findByUserIdAndCreatedAtGreaterThanEqual(
+                userId, LocalDateTime.now().minus(queryLookback));
     }
 
     /**
-     * Get all payments
+     * Get all payments created within the query lookback, so only the most
+     * recent partitions are read
      */
     public List<Payment> getAllPayments() {
-        return paymentRepository.findAll();
+        return paymentRepository.findByCreatedAtGreaterThanEqual(LocalDateTime.now().minus(queryLookback));
     }
 }
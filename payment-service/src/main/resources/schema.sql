@@ -0,0 +1,102 @@
+-- Payments are range-partitioned by created_at, one partition per month (payments_pYYYYMM).
+-- PartitionMaintenance creates the partitions and archives old ones; this script only
+-- creates the parent table and its indexes. Unique constraints have to include the
+-- partition key, so order_id is indexed but not unique on payments; one payment per
+-- order is enforced by payment_orders instead, an unpartitioned table keyed by
+-- order_id that createPayment claims in the same transaction as the insert.
+--
+-- An existing unpartitioned payments table is converted once: it is renamed to the
+-- current month's partition and attached with a lower bound of MINVALUE, so all
+-- history up to now stays queryable and is archived with that month.
+--
+-- Runs as one statement (spring.sql.init.separator), so the conversion is atomic.
+
+DO $$
+DECLARE
+    legacy text := 'payments_p' || to_char(localtimestamp, 'YYYYMM');
+    pkey text;
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass('payments') AND relkind = 'r') THEN
+        EXECUTE format('ALTER TABLE payments RENAME TO %I', legacy);
+        SELECT conname INTO pkey FROM pg_constraint WHERE conrelid = legacy::regclass AND contype = 'p';
+        IF pkey IS NOT NULL THEN
+            EXECUTE format('ALTER TABLE %I DROP CONSTRAINT %I', legacy, pkey);
+        END IF;
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN payment_id TYPE uuid USING payment_id::uuid', legacy);
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS currency char(3) NOT NULL DEFAULT %L', legacy, 'USD');
+        EXECUTE format('ALTER TABLE %I ADD COLUMN IF NOT EXISTS amount_minor numeric(19,0)', legacy);
+        EXECUTE format('UPDATE %I SET amount_minor = round(amount::numeric * 100) WHERE amount_minor IS NULL', legacy);
+        EXECUTE format('ALTER TABLE %I ALTER COLUMN amount_minor SET NOT NULL', legacy);
+    END IF;
+END $$;
+
+CREATE TABLE IF NOT EXISTS payments (
+    payment_id     uuid             NOT NULL,
+    order_id       varchar(255)     NOT NULL,
+    user_id        varchar(255)     NOT NULL,
+    amount_minor   numeric(19,0)    NOT NULL,
+    currency       char(3)          NOT NULL DEFAULT 'USD',
+    amount         double precision NOT NULL,
+    status         varchar(255)     NOT NULL,
+    payment_method varchar(255),
+    transaction_id varchar(255),
+    error_message  varchar(1000),
+    created_at     timestamp(6)     NOT NULL,
+    updated_at     timestamp(6)     NOT NULL,
+    PRIMARY KEY (payment_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- Ids were varchar before they became time-ordered UUIDs (uuid is 16 bytes instead of 37)
+DO $$
+BEGIN
+    IF (SELECT data_type FROM information_schema.columns
+        WHERE table_schema = current_schema() AND table_name = 'payments' AND column_name = 'payment_id') <> 'uuid' THEN
+        ALTER TABLE payments ALTER COLUMN payment_id TYPE uuid USING payment_id::uuid;
+    END IF;
+END $$;
+
+-- Amounts were double precision before they became exact minor units (cents) plus a
+-- currency. Existing rows were all USD. The double column is still written for old readers.
+-- The backfill scans every partition, so it only runs until the column is NOT NULL.
+ALTER TABLE payments ADD COLUMN IF NOT EXISTS currency char(3) NOT NULL DEFAULT 'USD';
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM information_schema.columns
+                   WHERE table_schema = current_schema() AND table_name = 'payments'
+                     AND column_name = 'amount_minor' AND is_nullable = 'NO') THEN
+        ALTER TABLE payments ADD COLUMN IF NOT EXISTS amount_minor numeric(19,0);
+        UPDATE payments SET amount_minor = round(amount::numeric * 100) WHERE amount_minor IS NULL;
+        ALTER TABLE payments ALTER COLUMN amount_minor SET NOT NULL;
+    END IF;
+END $$;
+
+CREATE INDEX IF NOT EXISTS payments_order_id_idx ON payments (order_id);
+CREATE INDEX IF NOT EXISTS payments_created_at_idx ON payments (created_at);
+CREATE INDEX IF NOT EXISTS payments_user_id_created_at_idx ON payments (user_id, created_at);
+CREATE INDEX IF NOT EXISTS payments_status_created_at_idx ON payments (status, created_at);
+
+DO $$
+DECLARE
+    legacy text := 'payments_p' || to_char(localtimestamp, 'YYYYMM');
+BEGIN
+    IF to_regclass(legacy) IS NOT NULL
+            AND NOT EXISTS (SELECT 1 FROM pg_inherits WHERE inhrelid = legacy::regclass) THEN
+        EXECUTE format('ALTER TABLE payments ATTACH PARTITION %I FOR VALUES FROM (MINVALUE) TO (%L)',
+                legacy, date_trunc('month', localtimestamp) + interval '1 month');
+    END IF;
+END $$;
+
+-- Claimed by createPayment with INSERT ... ON CONFLICT DO NOTHING. Rows are kept when
+-- the payment is archived, so a late redelivery of an old order is not charged again.
+-- Backfilled once, when the table is created.
+DO $$
+BEGIN
+    IF to_regclass('payment_orders') IS NULL THEN
+        CREATE TABLE payment_orders (
+            order_id   varchar(255) PRIMARY KEY,
+            created_at timestamp(6) NOT NULL
+        );
+        INSERT INTO payment_orders (order_id, created_at)
+        SELECT order_id, min(created_at) FROM payments GROUP BY order_id;
+    END IF;
+END $$;